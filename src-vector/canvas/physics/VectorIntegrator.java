@@ -0,0 +1,75 @@
+package canvas.physics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Integrator using the incubating Vector API
+ * Built and run with --add-modules jdk.incubator.vector, loaded reflectively by Integrator.create().
+ * Gives the same results as ScalarIntegrator, lane for lane.
+ */
+class VectorIntegrator implements Integrator
+{
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	
+	/**
+	 * See Integrator
+	 */
+	@Override
+	public boolean integrate(double[] x, double[] y, double[] vx, double[] vy, double[] friction, boolean[] suspended, int count) {
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+		DoubleVector restSpeed = DoubleVector.broadcast(SPECIES, REST_SPEED);
+		boolean moving = false;
+		int i = 0;
+		
+		for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+			VectorMask<Double> active = VectorMask.fromArray(SPECIES, suspended, i).not();
+			DoubleVector velX = DoubleVector.fromArray(SPECIES, vx, i);
+			DoubleVector velY = DoubleVector.fromArray(SPECIES, vy, i);
+			
+			DoubleVector.fromArray(SPECIES, x, i).add(velX, active).intoArray(x, i);
+			DoubleVector.fromArray(SPECIES, y, i).add(velY, active).intoArray(y, i);
+			
+			DoubleVector speed = velX.mul(velX).add(velY.mul(velY)).lanewise(VectorOperators.SQRT);
+			VectorMask<Double> keepMoving = speed.compare(VectorOperators.GT, restSpeed).and(active);
+			DoubleVector f = DoubleVector.fromArray(SPECIES, friction, i);
+			
+			zero.blend(velX.mul(f), keepMoving).intoArray(vx, i);
+			zero.blend(velY.mul(f), keepMoving).intoArray(vy, i);
+			moving |= keepMoving.anyTrue();
+		}
+		
+		// remainder
+		for (; i < count; i++) {
+			if (suspended[i]) {
+				vx[i] = 0;
+				vy[i] = 0;
+				continue;
+			}
+			
+			x[i] += vx[i];
+			y[i] += vy[i];
+			
+			if (Math.sqrt((vx[i] * vx[i]) + (vy[i] * vy[i])) > REST_SPEED) {
+				vx[i] *= friction[i];
+				vy[i] *= friction[i];
+				moving = true;
+			} else {
+				vx[i] = 0;
+				vy[i] = 0;
+			}
+		}
+		
+		return moving;
+	}
+	
+	/**
+	 * See Integrator
+	 */
+	@Override
+	public String getName() {
+		return String.format("vector (%d lanes)", SPECIES.length());
+	}
+}
@@ -7,10 +7,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 
 import javax.swing.JComponent;
-import javax.swing.Timer;
 import javax.vecmath.Tuple2i;
 
 /**
@@ -21,12 +19,15 @@ import javax.vecmath.Tuple2i;
 @SuppressWarnings("serial")
 public class Canvas extends JComponent
 {
-	protected TreeSet<CanvasObject> objects;
+	protected CanvasObjectRegistry objects;
 	protected CanvasProcessor processor;
 	protected Rectangle canvasBounds;
 	protected Map<Integer, Set<Tuple2i>> canvasHoles;
-	private Timer animationTimer;
-	private int animationDelay;
+	private GameLoop gameLoop;
+	private RenderGovernor renderGovernor;
+	private Runnable updateTask;
+	
+	public static final int DEFAULT_ANIMATION_DELAY = 30;
 	
 	// Used for wall collisions
 	public final static String canvasObjectType = "Wall";
@@ -46,10 +47,13 @@ public class Canvas extends JComponent
 	 * Constructor
 	 */
 	public Canvas(CanvasProcessor proc) {
-		objects = new TreeSet<CanvasObject>();
+		objects = new CanvasObjectRegistry();
 		processor = proc;
 		canvasBounds = getBounds();
 		canvasHoles = new HashMap<Integer, Set<Tuple2i>>();
+		gameLoop = new GameLoop(DEFAULT_ANIMATION_DELAY);
+		renderGovernor = new RenderGovernor(RenderGovernor.DEFAULT_BUDGET_MILLIS);
+		updateTask = () -> update();
 	}
 		
 	/**
@@ -60,8 +64,18 @@ public class Canvas extends JComponent
 		return objects;
 	}
 	
+	/**
+	 * Get object by id
+	 * @param id CanvasObject id (see CanvasObject.getId())
+	 * @return CanvasObject, or null if not in canvas
+	 */
+	public CanvasObject getObject(int id) {
+		return objects.get(id);
+	}
+	
 	/**
 	 * Add object to canvas
+	 * Assigns the object's id
 	 * @param o CanvasObject to add
 	 */
 	public void add(CanvasObject o) {
@@ -88,8 +102,7 @@ public class Canvas extends JComponent
 	 * Removes all active CanvasObjects and halts animation
 	 */
 	public void clear() {
-		if (animationTimer.isRunning())
-			animationTimer.stop();
+		stop();
 		
 		objects.clear();
 		repaint(canvasBounds);
@@ -142,42 +155,85 @@ public class Canvas extends JComponent
 	}
 	
 	/**
-	 * Set animation delay
+	 * Set animation delay, the fixed timestep of each update
 	 * @param delay (ms)
 	 */
 	public void setAnimationDelay(int delay) {
-		animationDelay = delay;
-		
-		if (animationTimer != null) {
-			animationTimer.setDelay(animationDelay);
-		} else {
-			animationTimer = new Timer(animationDelay, ae -> update());
-		}
+		gameLoop.setTickInterval(delay);
+	}
+	
+	/**
+	 * Clock driving update(), which other animated state (e.g. UI effects) should also tick from
+	 * @return GameLoop
+	 */
+	public GameLoop getGameLoop() {
+		return gameLoop;
+	}
+	
+	/**
+	 * Governor choosing the rendering quality from the cost of each paint
+	 * @return RenderGovernor
+	 */
+	public RenderGovernor getRenderGovernor() {
+		return renderGovernor;
 	}
 	
 	/**
 	 * Start animating
 	 */
 	public void start() {
-		if (!animationTimer.isRunning())
-			animationTimer.start();
+		gameLoop.add(updateTask);
 	}
 	
 	/**
 	 * Stop animating
 	 */
 	public void stop() {
-		if (animationTimer.isRunning())
-			animationTimer.stop();
+		gameLoop.remove(updateTask);
 	}
 	
 	/**
 	 * @return Animation currently running (T/F)
 	 */
 	public boolean isRunning() {
-		return animationTimer.isRunning();
+		return gameLoop.isActive(updateTask);
 	}
 		
+	/**
+	 * Paint the canvas at the quality chosen by the RenderGovernor, which is given the cost of the paint
+	 * Records a Flight Recorder event for the dirty region while it is enabled (see PaintEvent)
+	 */
+	@Override
+	public void paint(Graphics g) {
+		PaintEvent event = PaintEvent.PROBE.isEnabled() ? new PaintEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		
+		RenderQuality quality = renderGovernor.getQuality();
+		((Graphics2D) g).setRenderingHint(RenderQuality.KEY, quality);
+		
+		long start = System.nanoTime();
+		super.paint(g);
+		renderGovernor.recordPaint(System.nanoTime() - start);
+		
+		if (event != null && event.shouldCommit()) {
+			Rectangle clip = g.getClipBounds();
+			if (clip == null) {
+				clip = new Rectangle(0, 0, getWidth(), getHeight());
+			}
+			
+			event.canvas = getClass().getSimpleName();
+			event.x = clip.x;
+			event.y = clip.y;
+			event.width = clip.width;
+			event.height = clip.height;
+			event.area = (long)clip.width * clip.height;
+			event.quality = quality.name();
+			event.commit();
+		}
+	}
+	
 	/**
 	 * Draw canvas and render all objects
 	 */
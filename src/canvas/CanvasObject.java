@@ -21,6 +21,9 @@ public abstract class CanvasObject implements Comparable<CanvasObject>
 	protected boolean suspended;
 	protected int canvasOrder; 	// sort order for Canvas collection
 							   	// allows ordered rendering where necessary
+	private int id;				// dense id assigned by Canvas (see CanvasObjectRegistry)
+	
+	public static final int NO_ID = -1;
 	
 	/**
 	 * Default constructor
@@ -31,6 +34,7 @@ public abstract class CanvasObject implements Comparable<CanvasObject>
 		mass = 1;
 		color = Color.BLACK;
 		canvasOrder = 0;
+		id = NO_ID;
 	}
 	
 	/**
@@ -43,6 +47,7 @@ public abstract class CanvasObject implements Comparable<CanvasObject>
 		setColor(src.getColor());
 		setMass(src.getMass());
 		setCanvasOrder(src.getCanvasOrder());
+		id = NO_ID;
 	}
 	
 	/**
@@ -198,6 +203,20 @@ public abstract class CanvasObject implements Comparable<CanvasObject>
 		return new Area(getNextBounds());
 	}
 			
+	/**
+	 * Is a collision with another object pending, i.e. do the collision areas
+	 * of both objects intersect after the next move
+	 * Defaults to intersecting getAreaForCollision() of both objects
+	 * @param o CanvasObject to check
+	 * @return Boolean
+	 */
+	public boolean isCollisionPending(CanvasObject o) {
+		Area intersection = getAreaForCollision();
+		intersection.intersect(o.getAreaForCollision());
+		
+		return !intersection.isEmpty();
+	}
+	
 	/**
 	 * Check for intersection with other object in canvas
 	 * Default uses bounding rectangle of both objects
@@ -209,6 +228,16 @@ public abstract class CanvasObject implements Comparable<CanvasObject>
 		overlap.intersect(o.getArea());
 		return overlap;
 	}
+	
+	/**
+	 * Quick test before getOverlapWith(), which builds Areas
+	 * Defaults to true; override with a cheaper test where the shape allows
+	 * @param o CanvasObject to check
+	 * @return False only if getOverlapWith() would be empty
+	 */
+	public boolean mayOverlap(CanvasObject o) {
+		return true;
+	}
 			
 	/**
 	 * Incrementally update position based on movement vector
@@ -254,11 +283,32 @@ public abstract class CanvasObject implements Comparable<CanvasObject>
 		canvasOrder = order;
 	}
 	
+	/**
+	 * Id assigned when the object was added to a Canvas
+	 * Stable while the object remains in the canvas, NO_ID otherwise
+	 * @return int
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/*
+	 * Assigned by CanvasObjectRegistry
+	 */
+	void setId(int value) {
+		id = value;
+	}
+	
 	/**
 	 * Comparable implementation
+	 * Orders by canvasOrder, then id, so objects sharing a canvasOrder are all kept
 	 */
 	public int compareTo(CanvasObject o) {
-		return canvasOrder - o.canvasOrder;
+		if (canvasOrder != o.canvasOrder) {
+			return Integer.compare(canvasOrder, o.canvasOrder);
+		}
+		
+		return Integer.compare(id, o.id);
 	}
 	
 	/**
@@ -266,6 +316,6 @@ public abstract class CanvasObject implements Comparable<CanvasObject>
 	 */
 	@Override
 	public String toString() {
-		return String.format("CanvasObject(%d)", hashCode());
+		return String.format("CanvasObject(%d)", id);
 	}
 }
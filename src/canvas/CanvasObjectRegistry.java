@@ -0,0 +1,229 @@
+package canvas;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * Collection of CanvasObjects managed by a Canvas
+ * Assigns each object a dense, stable integer id and keeps an id-indexed registry
+ * alongside the render ordering (canvasOrder, then id)
+ *
+ * Ids are stable for as long as an object is registered. Ids of removed objects are reused,
+ * so the highest id stays close to the number of live objects.
+ */
+public class CanvasObjectRegistry extends AbstractCollection<CanvasObject>
+{
+	private CanvasObject[] registry;
+	private TreeSet<CanvasObject> renderOrder;
+	private CanvasObject[] ordered;		// renderOrder as an array, see getInRenderOrder()
+	private boolean orderChanged;
+	private int[] freeIds;
+	private int freeCount;
+	private int nextId;
+	
+	private static final int DEFAULT_CAPACITY = 32;
+	
+	/**
+	 * Constructor
+	 */
+	public CanvasObjectRegistry() {
+		registry = new CanvasObject[DEFAULT_CAPACITY];
+		renderOrder = new TreeSet<CanvasObject>();
+		ordered = new CanvasObject[0];
+		orderChanged = false;
+		freeIds = new int[DEFAULT_CAPACITY];
+		freeCount = 0;
+		nextId = 0;
+	}
+	
+	/**
+	 * Register an object, assigning its id
+	 * @param o CanvasObject to add
+	 * @return true if added, false if already registered here
+	 */
+	@Override
+	public boolean add(CanvasObject o) {
+		if (contains(o)) {
+			return false;
+		}
+		
+		if (o.getId() != CanvasObject.NO_ID) {
+			throw new IllegalArgumentException(String.format("%s is already registered with another canvas", o));
+		}
+		
+		int id;
+		if (freeCount > 0) {
+			id = freeIds[--freeCount];
+		} else {
+			id = nextId++;
+			if (id >= registry.length) {
+				registry = Arrays.copyOf(registry, registry.length * 2);
+			}
+		}
+		
+		o.setId(id);
+		registry[id] = o;
+		renderOrder.add(o);
+		orderChanged = true;
+		return true;
+	}
+	
+	/**
+	 * Unregister an object, releasing its id
+	 * @param o CanvasObject to remove
+	 * @return true if removed
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if (!contains(o)) {
+			return false;
+		}
+		
+		CanvasObject obj = (CanvasObject) o;
+		renderOrder.remove(obj);
+		orderChanged = true;
+		release(obj);
+		return true;
+	}
+	
+	/**
+	 * Is the object registered here?
+	 * @param o Object
+	 * @return T/F
+	 */
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof CanvasObject)) {
+			return false;
+		}
+		
+		int id = ((CanvasObject) o).getId();
+		return id >= 0 && id < nextId && registry[id] == o;
+	}
+	
+	/**
+	 * Remove all objects and reset id assignment
+	 */
+	@Override
+	public void clear() {
+		for (int i = 0; i < nextId; i++) {
+			if (registry[i] != null) {
+				registry[i].setId(CanvasObject.NO_ID);
+				registry[i] = null;
+			}
+		}
+		
+		renderOrder.clear();
+		orderChanged = true;
+		freeCount = 0;
+		nextId = 0;
+	}
+	
+	/**
+	 * @return Number of registered objects
+	 */
+	@Override
+	public int size() {
+		return renderOrder.size();
+	}
+	
+	/**
+	 * Iterates objects in render order
+	 */
+	@Override
+	public Iterator<CanvasObject> iterator() {
+		Iterator<CanvasObject> it = renderOrder.iterator();
+		
+		return new Iterator<CanvasObject>() {
+			private CanvasObject current;
+			
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+			
+			public CanvasObject next() {
+				current = it.next();
+				return current;
+			}
+			
+			public void remove() {
+				it.remove();
+				orderChanged = true;
+				release(current);
+			}
+		};
+	}
+	
+	/**
+	 * Get object by id
+	 * @param id CanvasObject id
+	 * @return CanvasObject, or null if no object currently has this id
+	 */
+	public CanvasObject get(int id) {
+		if (id < 0 || id >= nextId) {
+			return null;
+		}
+		
+		return registry[id];
+	}
+	
+	/**
+	 * Get object by position in render order, without allocating an iterator
+	 * Suitable for walking every object each update; the order is rebuilt after objects are added or removed
+	 * @param index Position, 0 to size() - 1
+	 * @return CanvasObject
+	 */
+	public CanvasObject getInRenderOrder(int index) {
+		if (orderChanged) {
+			rebuildOrdered();
+			orderChanged = false;
+		}
+		
+		if (index < 0 || index >= renderOrder.size()) {
+			throw new IndexOutOfBoundsException(String.format("Render order index %d, size %d", index, renderOrder.size()));
+		}
+		
+		return ordered[index];
+	}
+	
+	/**
+	 * Upper bound (exclusive) of ids currently assigned
+	 * Suitable for sizing arrays indexed by id
+	 * @return int
+	 */
+	public int getCapacity() {
+		return nextId;
+	}
+	
+	/*
+	 * Copy renderOrder into ordered, walking it with higher() rather than an iterator, so nothing is allocated
+	 * unless the array must grow
+	 */
+	private void rebuildOrdered() {
+		if (ordered.length < renderOrder.size()) {
+			ordered = new CanvasObject[Math.max(renderOrder.size(), ordered.length * 2)];
+		}
+		
+		int i = 0;
+		for (CanvasObject o = renderOrder.isEmpty() ? null : renderOrder.first(); o != null; o = renderOrder.higher(o)) {
+			ordered[i++] = o;
+		}
+		Arrays.fill(ordered, i, ordered.length, null);
+	}
+	
+	/*
+	 * Release id of an object removed from render ordering
+	 */
+	private void release(CanvasObject o) {
+		int id = o.getId();
+		registry[id] = null;
+		o.setId(CanvasObject.NO_ID);
+		
+		if (freeCount == freeIds.length) {
+			freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+		}
+		freeIds[freeCount++] = id;
+	}
+}
@@ -0,0 +1,261 @@
+package canvas;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Fixed timestep animation clock
+ * A single thread paces ticks with System.nanoTime() and runs every active task once per tick on the
+ * event dispatch thread. Real time is accumulated, so when painting or other work on the event dispatch
+ * thread delays a frame, the ticks owed are run together in the next one: animation runs at the same
+ * speed regardless of paint load, up to MAX_TICKS_PER_FRAME ticks per frame.
+ * The thread only runs while there are active tasks. If a task throws, the loop stops: every task is removed
+ * and the exception is rethrown on the clock thread.
+ *
+ * Frame statistics (time between frames, and ticks run to catch up) are kept for reporting jitter.
+ */
+public class GameLoop
+{
+	private CopyOnWriteArrayList<Runnable> tasks;
+	private volatile long tickNanos;
+	private Thread thread;
+	private final Object lock = new Object();
+	
+	// frame statistics, only updated on the event dispatch thread
+	private long lastFrameStart;
+	private long frameCount;
+	private double frameMillisSum;
+	private double frameMillisSquaredSum;
+	private double maxFrameMillis;
+	private long catchUpTicks;
+	
+	// beyond this many ticks behind, time is dropped rather than caught up
+	public static final int MAX_TICKS_PER_FRAME = 5;
+	
+	/**
+	 * Constructor
+	 * @param tickMillis Fixed timestep, ms
+	 */
+	public GameLoop(int tickMillis) {
+		tasks = new CopyOnWriteArrayList<Runnable>();
+		setTickInterval(tickMillis);
+	}
+	
+	/**
+	 * Set the fixed timestep
+	 * @param tickMillis Timestep, ms
+	 */
+	public void setTickInterval(int tickMillis) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException(String.format("Tick interval must be positive: %d", tickMillis));
+		}
+		
+		tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+	}
+	
+	/**
+	 * @return Fixed timestep, ms
+	 */
+	public double getTickMillis() {
+		return tickNanos / 1e6;
+	}
+	
+	/**
+	 * Run a task every tick, after the tasks already active
+	 * @param task Task, run on the event dispatch thread
+	 */
+	public void add(Runnable task) {
+		synchronized (lock) {
+			if (tasks.addIfAbsent(task)) {
+				if (thread == null) {
+					thread = new Thread(() -> run(), "game-loop");
+					thread.setDaemon(true);
+					thread.start();
+				}
+				lock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Stop running a task, takes effect from the next tick
+	 * @param task Task
+	 */
+	public void remove(Runnable task) {
+		tasks.remove(task);
+	}
+	
+	/**
+	 * @param task Task
+	 * @return Is the task run every tick? (T/F)
+	 */
+	public boolean isActive(Runnable task) {
+		return tasks.contains(task);
+	}
+	
+	/**
+	 * @return Number of frames since the statistics were reset
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * @return Mean time between frames, ms
+	 */
+	public double getMeanFrameMillis() {
+		return frameCount > 0 ? frameMillisSum / frameCount : 0;
+	}
+	
+	/**
+	 * @return Standard deviation of the time between frames, ms
+	 */
+	public double getJitterMillis() {
+		if (frameCount < 2) {
+			return 0;
+		}
+		
+		double mean = getMeanFrameMillis();
+		return Math.sqrt(Math.max(0, (frameMillisSquaredSum / frameCount) - (mean * mean)));
+	}
+	
+	/**
+	 * @return Longest time between frames, ms
+	 */
+	public double getMaxFrameMillis() {
+		return maxFrameMillis;
+	}
+	
+	/**
+	 * @return Ticks run in addition to one per frame, to catch up after late frames
+	 */
+	public long getCatchUpTicks() {
+		return catchUpTicks;
+	}
+	
+	/**
+	 * Reset frame statistics
+	 */
+	public void resetStatistics() {
+		lastFrameStart = 0;
+		frameCount = 0;
+		frameMillisSum = 0;
+		frameMillisSquaredSum = 0;
+		maxFrameMillis = 0;
+		catchUpTicks = 0;
+	}
+	
+	/**
+	 * toString() override, frame statistics
+	 */
+	@Override
+	public String toString() {
+		return String.format("GameLoop(%.1f ms tick, %d frames, mean %.2f ms, jitter %.2f ms, max %.2f ms, %d catch-up ticks)", 
+				getTickMillis(), frameCount, getMeanFrameMillis(), getJitterMillis(), maxFrameMillis, catchUpTicks);
+	}
+	
+	/*
+	 * Clock thread: accumulate real time, hand whole ticks to the event dispatch thread, sleep until the next tick
+	 */
+	private void run() {
+		try {
+			while (true) {
+				waitForTasks();
+				
+				long previous = System.nanoTime();
+				long accumulator = tickNanos;	// first tick runs immediately
+				boolean resumed = true;			// first frame after idling is not timed against the last one
+				
+				while (!tasks.isEmpty()) {
+					long now = System.nanoTime();
+					accumulator += now - previous;
+					previous = now;
+					
+					long tick = tickNanos;
+					int ticks = (int)Math.min(accumulator / tick, MAX_TICKS_PER_FRAME);
+					accumulator = (ticks == MAX_TICKS_PER_FRAME) ? accumulator % tick : accumulator - (ticks * tick);
+					
+					if (ticks > 0) {
+						runFrame(ticks, resumed);
+						resumed = false;
+					}
+					
+					LockSupport.parkNanos(tick - accumulator - (System.nanoTime() - previous));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// stopped by a task failure: drop the tasks, and a later add() starts a new clock thread
+			synchronized (lock) {
+				tasks.clear();
+				thread = null;
+			}
+		}
+	}
+	
+	/*
+	 * Block until there is at least one task
+	 */
+	private void waitForTasks() throws InterruptedException {
+		synchronized (lock) {
+			while (tasks.isEmpty()) {
+				lock.wait();
+			}
+		}
+	}
+	
+	/*
+	 * Run the tasks for a number of ticks on the event dispatch thread, and wait for them
+	 * A task failure is rethrown, which stops the loop
+	 */
+	private void runFrame(int ticks, boolean resumed) throws InterruptedException {
+		try {
+			SwingUtilities.invokeAndWait(() -> {
+				if (resumed) {
+					lastFrameStart = 0;
+				}
+				recordFrame(ticks);
+				
+				for (int i = 0; i < ticks; i++) {
+					for (Runnable task : tasks) {
+						// a task may stop itself or another during the tick
+						if (tasks.contains(task)) {
+							task.run();
+						}
+					}
+				}
+			});
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Animation tick failed", cause);
+		}
+	}
+	
+	/*
+	 * Update frame statistics
+	 */
+	private void recordFrame(int ticks) {
+		long start = System.nanoTime();
+		
+		if (lastFrameStart != 0) {
+			double millis = (start - lastFrameStart) / 1e6;
+			frameCount++;
+			frameMillisSum += millis;
+			frameMillisSquaredSum += millis * millis;
+			maxFrameMillis = Math.max(maxFrameMillis, millis);
+			catchUpTicks += ticks - 1;
+		}
+		
+		lastFrameStart = start;
+	}
+}
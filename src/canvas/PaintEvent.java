@@ -0,0 +1,43 @@
+package canvas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one paint of a Canvas, on the event dispatch thread
+ */
+@Name("canvas.Paint")
+@Label("Canvas Paint")
+@Category({ "Eightball", "Rendering" })
+@Description("Painting the dirty region of a canvas")
+@StackTrace(false)
+class PaintEvent extends jdk.jfr.Event {
+	// never committed, only asked isEnabled(), so paints allocate an event only while it is being recorded
+	static final PaintEvent PROBE = new PaintEvent();
+	
+	@Label("Canvas")
+	String canvas;
+	
+	@Label("Dirty X")
+	int x;
+	
+	@Label("Dirty Y")
+	int y;
+	
+	@Label("Dirty Width")
+	int width;
+	
+	@Label("Dirty Height")
+	int height;
+	
+	@Label("Dirty Area")
+	@Description("Pixels painted")
+	long area;
+	
+	@Label("Render Quality")
+	@Description("Tier chosen by the RenderGovernor")
+	String quality;
+}
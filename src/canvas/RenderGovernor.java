@@ -0,0 +1,196 @@
+package canvas;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame time governor for rendering quality
+ * Canvas reports the cost of every paint; a smoothed paint time over budget for DEGRADE_FRAMES paints in a
+ * row lowers the quality one tier, and one under RESTORE_FRACTION of the budget for RESTORE_FRAMES paints
+ * in a row raises it again. The gap between the two thresholds, and the longer wait to restore, keep the
+ * tier from flickering when paint time hovers around the budget.
+ *
+ * Statistics (paint times and tier changes) are kept for reporting; only used on the event dispatch thread.
+ */
+public class RenderGovernor
+{
+	private long budgetNanos;
+	private boolean adaptive;
+	private RenderQuality quality;
+	private double smoothedNanos;
+	private int framesOver;
+	private int framesUnder;
+	
+	// statistics
+	private long paintCount;
+	private double maxPaintMillis;
+	private long lowered;
+	private long raised;
+	private long[] paintsAtQuality;
+	
+	public static final double DEFAULT_BUDGET_MILLIS = 8;
+	public static final int DEGRADE_FRAMES = 5;
+	public static final int RESTORE_FRAMES = 60;
+	public static final double RESTORE_FRACTION = 0.5;
+	
+	// weight of the latest paint in the smoothed paint time
+	private static final double SMOOTHING = 0.2;
+	
+	/**
+	 * Constructor
+	 * @param budgetMillis Paint time budget, ms
+	 */
+	public RenderGovernor(double budgetMillis) {
+		setBudget(budgetMillis);
+		adaptive = true;
+		quality = RenderQuality.FULL;
+		paintsAtQuality = new long[RenderQuality.values().length];
+	}
+	
+	/**
+	 * Set the paint time budget
+	 * @param budgetMillis Budget, ms
+	 */
+	public void setBudget(double budgetMillis) {
+		if (budgetMillis <= 0) {
+			throw new IllegalArgumentException(String.format("Paint budget must be positive: %s", budgetMillis));
+		}
+		
+		budgetNanos = (long)(budgetMillis * TimeUnit.MILLISECONDS.toNanos(1));
+	}
+	
+	/**
+	 * @return Paint time budget, ms
+	 */
+	public double getBudgetMillis() {
+		return budgetNanos / 1e6;
+	}
+	
+	/**
+	 * Change tiers with paint time, or hold the current tier
+	 * @param enabled T/F
+	 */
+	public void setAdaptive(boolean enabled) {
+		adaptive = enabled;
+		framesOver = 0;
+		framesUnder = 0;
+	}
+	
+	/**
+	 * @return Tiers change with paint time (T/F)
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+	
+	/**
+	 * Set the tier, e.g. to hold one with setAdaptive(false)
+	 * @param q RenderQuality
+	 */
+	public void setQuality(RenderQuality q) {
+		quality = q;
+		framesOver = 0;
+		framesUnder = 0;
+	}
+	
+	/**
+	 * @return Tier for the next paint
+	 */
+	public RenderQuality getQuality() {
+		return quality;
+	}
+	
+	/**
+	 * Record the cost of a paint, changing tiers if needed
+	 * @param nanos Time spent painting, ns
+	 */
+	public void recordPaint(long nanos) {
+		paintCount++;
+		paintsAtQuality[quality.ordinal()]++;
+		maxPaintMillis = Math.max(maxPaintMillis, nanos / 1e6);
+		smoothedNanos = (paintCount == 1) ? nanos : smoothedNanos + (SMOOTHING * (nanos - smoothedNanos));
+		
+		if (!adaptive) {
+			return;
+		}
+		
+		framesOver = (smoothedNanos > budgetNanos) ? framesOver + 1 : 0;
+		framesUnder = (smoothedNanos < budgetNanos * RESTORE_FRACTION) ? framesUnder + 1 : 0;
+		
+		if (framesOver >= DEGRADE_FRAMES && quality != quality.lower()) {
+			setQuality(quality.lower());
+			lowered++;
+		} else if (framesUnder >= RESTORE_FRAMES && quality != quality.higher()) {
+			setQuality(quality.higher());
+			raised++;
+		}
+	}
+	
+	/**
+	 * @return Number of paints since the statistics were reset
+	 */
+	public long getPaintCount() {
+		return paintCount;
+	}
+	
+	/**
+	 * @return Smoothed paint time, ms
+	 */
+	public double getSmoothedPaintMillis() {
+		return smoothedNanos / 1e6;
+	}
+	
+	/**
+	 * @return Longest paint, ms
+	 */
+	public double getMaxPaintMillis() {
+		return maxPaintMillis;
+	}
+	
+	/**
+	 * @return Number of times the tier was lowered
+	 */
+	public long getLoweredCount() {
+		return lowered;
+	}
+	
+	/**
+	 * @return Number of times the tier was raised
+	 */
+	public long getRaisedCount() {
+		return raised;
+	}
+	
+	/**
+	 * @param q RenderQuality
+	 * @return Number of paints at a tier
+	 */
+	public long getPaintCount(RenderQuality q) {
+		return paintsAtQuality[q.ordinal()];
+	}
+	
+	/**
+	 * Reset statistics, keeping the current tier
+	 */
+	public void resetStatistics() {
+		paintCount = 0;
+		maxPaintMillis = 0;
+		smoothedNanos = 0;
+		lowered = 0;
+		raised = 0;
+		paintsAtQuality = new long[RenderQuality.values().length];
+	}
+	
+	/**
+	 * toString() override, paint statistics
+	 */
+	@Override
+	public String toString() {
+		StringBuilder tiers = new StringBuilder();
+		for (RenderQuality q : RenderQuality.values()) {
+			tiers.append(String.format(", %s %d", q, paintsAtQuality[q.ordinal()]));
+		}
+		
+		return String.format("RenderGovernor(%.1f ms budget, %s, %d paints, smoothed %.2f ms, max %.2f ms, lowered %d, raised %d%s)", 
+				getBudgetMillis(), quality, paintCount, getSmoothedPaintMillis(), maxPaintMillis, lowered, raised, tiers);
+	}
+}
@@ -0,0 +1,49 @@
+package canvas;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+/**
+ * Rendering quality tiers, chosen per paint by a RenderGovernor
+ * Canvas passes the tier to CanvasObject.draw() and other renderers as a rendering hint on the Graphics2D,
+ * see of(); each renderer decides what to leave out at the lower tiers.
+ */
+public enum RenderQuality {
+	FULL,		// everything
+	REDUCED,	// no text antialiasing, solid instead of dashed guide lines
+	MINIMAL;	// also less detail in objects
+	
+	/**
+	 * Rendering hint carrying the tier
+	 */
+	public static final RenderingHints.Key KEY = new RenderingHints.Key(0) {
+		@Override
+		public boolean isCompatibleValue(Object val) {
+			return val instanceof RenderQuality;
+		}
+	};
+	
+	/**
+	 * Tier to render at
+	 * @param g Graphics, as passed to a paint or draw method
+	 * @return Tier set by the Canvas, or FULL if none
+	 */
+	public static RenderQuality of(Graphics2D g) {
+		Object quality = g.getRenderingHint(KEY);
+		return (quality instanceof RenderQuality) ? (RenderQuality) quality : FULL;
+	}
+	
+	/**
+	 * @return Next lower tier, or this if already the lowest
+	 */
+	public RenderQuality lower() {
+		return (ordinal() < values().length - 1) ? values()[ordinal() + 1] : this;
+	}
+	
+	/**
+	 * @return Next higher tier, or this if already the highest
+	 */
+	public RenderQuality higher() {
+		return (ordinal() > 0) ? values()[ordinal() - 1] : this;
+	}
+}
@@ -3,13 +3,18 @@ package canvas.physics;
 import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
-import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Set;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.vecmath.Tuple2i;
 import javax.vecmath.Vector2d;
@@ -18,7 +23,11 @@ import canvas.*;
 
 /**
  * Movement and Collision Processing using basic physics engine for CanvasObjects in Canvas
- * Configured using BasicPhysicsModel
+ * Configured using a FrozenPhysicsModel, see BasicPhysicsModel
+ * Objects are indexed by CanvasObject.getId(); if some object in an update has no id (it was not added
+ * through a Canvas), every object is numbered by its position in that update instead
+ * Objects are moved by an Integrator over arrays, except objects whose class overrides move(), getNextBounds(),
+ * getBounds() or getMovementVector(), which are moved through move()
  */
 @SuppressWarnings("serial")
 public class BasicPhysicsCanvasProcessor implements CanvasProcessor
@@ -33,15 +42,117 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 	private Dimension objectSize;
 	private int expectedObjectCount;
 	private CollisionNode[] nodes;
-	private HashMap<CanvasObject, Integer> lastCollision;
-	private BasicPhysicsModel model;
+	private CanvasObject[] bodies;		// objects in current update, indexed by id, see bodyId()
+	private CanvasObject[] ordered;		// objects in current update, in iteration order, see gatherObjects()
+	private boolean useLocalIds;		// some object in current update has no canvas id, see indexBodies()
+	private Map<CanvasObject, Integer> localIds;
+	private int[] dynamicIds;			// ids of non-static objects in current update, in collection order
+	private int dynamicCount;
+	private CanvasObject[] statics;		// static objects found in current update
+	private int staticCount;
+	private StaticBodyIndex staticIndex;
+	private WallSegmentTree wallTree;
+	private double hitNormalX;			// contact normal from last sweep against a wall segment
+	private double hitNormalY;
+	private int[] lastCollision;		// last collision partner per body id (id, or -wall)
+	private int[] lastCollisionStamp;	// update in which lastCollision was set, per body id
+	private int updateStamp;
+	private int bodyCapacity;
+	private CollisionPairSet pairs;
+	private LongAdder collisionCount;	// bounces processed, object<-->object and object-->wall
+	private int[] castStamp;			// last cast which tested each body id
+	private int currentCast;
+	private boolean castGridValid;		// grid holds the objects of the last cast, until the next update, see castCircle()
+	private CanvasObject[] castObjects;	// objects of the last cast, in iteration order
+	private double[] castNextX;			// location after the next move of each, as added to the grid
+	private double[] castNextY;
+	private boolean[] castSuspended;
+	private int castObjectCount;
+	private Integrator integrator;
+	private int[] integratedIds;		// dynamic bodies gathered for integration, in dynamicIds order
+	private double[] positionX;
+	private double[] positionY;
+	private double[] velocityX;
+	private double[] velocityY;
+	private double[] friction;
+	private boolean[] suspended;
+	private ForkJoinPool parallelPool;	// parallel narrowphase, see setParallelNarrowphase()
+	private int parallelMinBodies;
+	private boolean parallelByIslands;	// parallel narrowphase over islands rather than checkerboard regions
+	private boolean parallelUpdate;		// use the parallel narrowphase in this update
+	private boolean trackBodyCells;		// record bodyCells while building the grid in this update
+	private int[] bodyCells;			// grid regions per body id, MAX_BODY_CELLS per body
+	private int[] bodyCellCount;
+	private int[][] colorRegions;		// regions of each checkerboard color, in region order
+	private int[] colorRegionCount;
+	private boolean[] colorConflict;	// a body is in two regions of this color in the current pass
+	private IslandSet islands;
+	private boolean autoResizeGrid;
+	private int gridResizeCount;
+	private LongAdder pairsTested;		// candidate pairs checked, object<-->object and object<-->static
+	private boolean[] callerIsland;		// island has custom collisions, so is resolved on the calling thread
+	private FrozenPhysicsModel model;
+	private AtomicReference<FrozenPhysicsModel> pendingModel;	// applied once every object is at rest, see setModel()
+	private boolean atRest;				// last update left every object at rest
+	private int wallType;				// type number of Canvas.canvasObjectType in model
+	private int[] bodyType;				// model type number per body id, in current update
+	
+	// classes which leave movement to CanvasObject, so the integrator may move their objects in place:
+	// overriding any of these methods means the object is moved through move() instead
+	private static final String[] MOVEMENT_METHODS = { "move", "getNextBounds", "getBounds", "getMovementVector" };
+	private static final ClassValue<Boolean> DEFAULT_MOVEMENT = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			for (String name : MOVEMENT_METHODS) {
+				try {
+					if (type.getMethod(name).getDeclaringClass() != CanvasObject.class) {
+						return false;
+					}
+				} catch (NoSuchMethodException e) {
+					throw new IllegalStateException(String.format("CanvasObject has no method %s", name), e);
+				}
+			}
+			
+			return true;
+		}
+	};
+	
+	private static final int NO_COLLISION = Integer.MIN_VALUE;
+	private static final int WALL_SEGMENT_COLLISION = -Canvas.WALL_WEST - 1;	// last collision for segment n is this - n
+	
+	// 2x2 checkerboard: regions of one color are never adjacent, so with bodies no larger than a region
+	// no body is in two regions of the same color
+	private static final int REGION_COLORS = 4;
+	private static final int MAX_BODY_CELLS = 4;		// a body is added to the grid at four edge points
+	private static final int REGIONS_PER_TASK = 8;
+	private static final int PAIRS_PER_TASK = 64;
+	
+	// the grid is resized when the number of moving objects is this factor above or below the expected count,
+	// once either is at least GRID_RESIZE_MIN_OBJECTS
+	private static final int GRID_RESIZE_FACTOR = 4;
+	private static final int GRID_RESIZE_MIN_OBJECTS = 256;
 	
 	/**
 	 * Constructor
 	 * @param physicsModel Physics model to use in processing
 	 */
 	public BasicPhysicsCanvasProcessor(BasicPhysicsModel physicsModel) {
-		model = physicsModel;
+		this(physicsModel.freeze());
+	}
+	
+	/**
+	 * Constructor
+	 * @param physicsModel Frozen physics model to use in processing
+	 */
+	public BasicPhysicsCanvasProcessor(FrozenPhysicsModel physicsModel) {
+		pendingModel = new AtomicReference<FrozenPhysicsModel>();
+		applyModel(physicsModel);
+		atRest = true;
+		integrator = Integrator.create();
+		collisionCount = new LongAdder();
+		pairsTested = new LongAdder();
+		autoResizeGrid = true;
+		parallelMinBodies = Integer.MAX_VALUE;
 	}
 	
 	/**
@@ -58,10 +169,345 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 		return true;
 	}
 	
+	/**
+	 * Use wall segments instead of the canvas walls and holes for wall collisions
+	 * Segments are indexed in a bounding volume hierarchy; objects are swept against them as circles
+	 * @param walls Wall segments, or null to use the canvas walls and holes again
+	 */
+	public void setWallSegments(List<WallSegment> walls) {
+		wallTree = (walls == null) ? null : new WallSegmentTree(walls);
+	}
+	
+	/**
+	 * Replace the physics model between shots
+	 * The model is swapped at the start of the first update after one that left every object at rest,
+	 * so a shot in progress always finishes with the model it began with. May be called from any thread;
+	 * if called again before the swap, the latest model wins.
+	 * @param physicsModel Frozen physics model
+	 */
+	public void setModel(FrozenPhysicsModel physicsModel) {
+		if (physicsModel == null) {
+			throw new IllegalArgumentException("Physics model must not be null");
+		}
+		
+		pendingModel.set(physicsModel);
+	}
+	
+	/**
+	 * Replace the physics model from the next update, discarding any model passed to setModel()
+	 * Unlike setModel(), does not wait for objects to come to rest; call from the thread running updates,
+	 * e.g. between shots in a headless simulation
+	 * @param physicsModel Frozen physics model
+	 */
+	public void replaceModel(FrozenPhysicsModel physicsModel) {
+		if (physicsModel == null) {
+			throw new IllegalArgumentException("Physics model must not be null");
+		}
+		
+		pendingModel.set(null);
+		applyModel(physicsModel);
+	}
+	
+	/**
+	 * @return Physics model in use, a model passed to setModel() is not in use until the next shot
+	 */
+	public FrozenPhysicsModel getModel() {
+		return model;
+	}
+	
+	/**
+	 * Use the scalar integrator even when the vector integrator is available, e.g. to compare them
+	 * @param scalar T/F, false for the fastest available (see -Dcanvas.physics.scalar)
+	 */
+	public void setScalarIntegration(boolean scalar) {
+		integrator = scalar ? new ScalarIntegrator() : Integrator.create();
+	}
+	
+	/**
+	 * @return Name of the integration implementation in use, scalar or vector
+	 */
+	public String getIntegratorName() {
+		return integrator.getName();
+	}
+	
+	/**
+	 * Number of bounces processed since the processor was created
+	 * Counts object<-->object and object-->wall collisions; custom collisions are not counted
+	 * @return Collision count
+	 */
+	public long getCollisionCount() {
+		return collisionCount.sum();
+	}
+	
+	/**
+	 * Number of candidate pairs checked since the processor was created
+	 * Counts object<-->object pairs from the grid and object<-->static pairs from the static index
+	 * @return Pair count
+	 */
+	public long getPairsTested() {
+		return pairsTested.sum();
+	}
+	
+	/**
+	 * Resize the collision grid when the number of moving objects drifts far from the count given to initialize()
+	 * On by default; only applies to scenes of a few hundred objects or more
+	 * @param enabled T/F
+	 */
+	public void setAutoResizeGrid(boolean enabled) {
+		autoResizeGrid = enabled;
+	}
+	
+	/**
+	 * @return Number of times the collision grid was resized, see setAutoResizeGrid()
+	 */
+	public int getGridResizeCount() {
+		return gridResizeCount;
+	}
+	
+	/**
+	 * @return Number of collision grid regions
+	 */
+	public int getGridRegionCount() {
+		return maxRegions;
+	}
+	
+	/**
+	 * Check object<-->object pairs in parallel when there are many moving objects
+	 * Grid regions are colored as a 2x2 checkerboard; the regions of one color share no bodies, so they are
+	 * processed concurrently, one color after another. Each pair is checked once, in the first region
+	 * (by color, then region) containing both bodies, and pairs within a region in grid order, so results
+	 * are deterministic and do not depend on the number of threads, though they differ from the sequential
+	 * order. Custom collision listeners are never called concurrently: their pairs are deferred until the
+	 * color is complete, then run in region order. A color with a body in two of its regions (a body larger
+	 * than a region) is processed sequentially, in the same order.
+	 * @param minBodies Use the parallel narrowphase from this many moving objects
+	 * @param pool ForkJoinPool to run on, or null to always check pairs sequentially
+	 */
+	public void setParallelNarrowphase(int minBodies, ForkJoinPool pool) {
+		parallelPool = pool;
+		parallelMinBodies = (pool == null) ? Integer.MAX_VALUE : minBodies;
+	}
+	
+	/**
+	 * Split the parallel narrowphase by islands instead of checkerboard regions
+	 * Candidate pairs are grouped with union-find into islands, groups of bodies linked through pairs,
+	 * and islands are resolved concurrently, each in the sequential pair order. Islands share no bodies,
+	 * so results are the same as the sequential narrowphase. Islands with custom collisions are resolved
+	 * on the calling thread, so custom collision listeners are never called concurrently.
+	 * @param byIslands T/F, see setParallelNarrowphase() for when the parallel narrowphase is used
+	 */
+	public void setParallelByIslands(boolean byIslands) {
+		parallelByIslands = byIslands;
+	}
+	
+	/**
+	 * Sweep a circle along a ray and find the first moving object or wall it touches
+	 * Objects are found through the collision grid, walking it in steps along the ray and stopping once
+	 * the nearest hit so far is behind the current step; walls through the wall segment tree, or the canvas
+	 * walls (ignoring holes) when no segments are set. Static objects, e.g. pockets, are not hit.
+	 * Uses the processor's grid, so call between updates, not from another thread. The grid is kept between
+	 * casts, e.g. while aiming, and only rebuilt after an update or when an object was added, removed or moved.
+	 * @param objects Objects on the canvas
+	 * @param ignore Object not to hit, normally the one being cast, may be null
+	 * @param cx X coordinate of circle center
+	 * @param cy Y coordinate of circle center
+	 * @param dirX Ray direction, x
+	 * @param dirY Ray direction, y
+	 * @param radius Circle radius, 0 for a thin ray
+	 * @param maxDistance Length of ray
+	 * @return First hit, or null if nothing is hit within maxDistance
+	 * @throws IllegalArgumentException if the direction is zero
+	 */
+	public RayHit castCircle(Collection<CanvasObject> objects, CanvasObject ignore, double cx, double cy, 
+			double dirX, double dirY, double radius, double maxDistance) {
+		double length = Math.sqrt((dirX * dirX) + (dirY * dirY));
+		if (length == 0) {
+			throw new IllegalArgumentException("Ray direction must be non-zero");
+		}
+		
+		double ux = dirX / length;
+		double uy = dirY / length;
+		double dx = ux * maxDistance;
+		double dy = uy * maxDistance;
+		
+		double earliest = maxDistance;
+		double normalX = 0;
+		double normalY = 0;
+		CanvasObject hit = null;
+		boolean haveHit = false;
+		
+		// walls
+		if (wallTree != null) {
+			int count = wallTree.query(Math.min(cx, cx + dx) - radius, Math.min(cy, cy + dy) - radius, 
+									   Math.max(cx, cx + dx) + radius, Math.max(cy, cy + dy) + radius);
+			
+			for (int i = 0; i < count; i++) {
+				double t = sweepCircleAgainstSegment(cx, cy, dx, dy, radius, wallTree.getResult(i));
+				if (t != Double.MAX_VALUE && t * maxDistance < earliest) {
+					earliest = t * maxDistance;
+					normalX = hitNormalX;
+					normalY = hitNormalY;
+					haveHit = true;
+				}
+			}
+		} else {
+			double[] wall = castAgainstCanvasWalls(cx, cy, ux, uy, radius);
+			if (wall[0] < earliest) {
+				earliest = wall[0];
+				normalX = wall[1];
+				normalY = wall[2];
+				haveHit = true;
+			}
+		}
+		
+		// objects, through the collision grid
+		if (!isCastGridCurrent(objects)) {
+			buildCastGrid(objects);
+		}
+		
+		currentCast++;
+		double step = Math.min(regionWidth, regionHeight);
+		double margin = radius + Math.max(objectSize.width, objectSize.height);
+		
+		for (double from = 0; from < earliest; from += step) {
+			double to = Math.min(from + step, earliest);
+			double x0 = cx + (ux * from), y0 = cy + (uy * from);
+			double x1 = cx + (ux * to), y1 = cy + (uy * to);
+			
+			int minCol = getGridColumn(Math.min(x0, x1) - margin);
+			int maxCol = getGridColumn(Math.max(x0, x1) + margin);
+			int minRow = getGridRow(Math.min(y0, y1) - margin);
+			int maxRow = getGridRow(Math.max(y0, y1) + margin);
+			
+			for (int row = minRow; row <= maxRow; row++) {
+				for (int col = minCol; col <= maxCol; col++) {
+					CollisionNode node = nodes[(row * numCols) + col];
+					
+					for (int n = 0, size = node.size(); n < size; n++) {
+						int id = node.ids[n];
+						if (castStamp[id] == currentCast) {
+							continue;
+						}
+						castStamp[id] = currentCast;
+						
+						CanvasObject o = bodies[id];
+						if (o == ignore || o.getSuspended()) {
+							continue;
+						}
+						
+						Rectangle2D b = o.getBounds();
+						double reach = radius + (Math.min(b.getWidth(), b.getHeight()) / 2);
+						double t = sweepCircleAgainstPoint(cx, cy, dx, dy, reach, b.getCenterX(), b.getCenterY());
+						if (t != Double.MAX_VALUE && t * maxDistance < earliest) {
+							earliest = t * maxDistance;
+							normalX = hitNormalX;
+							normalY = hitNormalY;
+							hit = o;
+							haveHit = true;
+						}
+					}
+				}
+			}
+		}
+		
+		if (!haveHit) {
+			return null;
+		}
+		
+		return new RayHit(earliest, cx + (ux * earliest), cy + (uy * earliest), normalX, normalY, hit);
+	}
+	
+	/*
+	 * Build the collision grid for a cast, and remember the objects in it, see isCastGridCurrent()
+	 */
+	private void buildCastGrid(Collection<CanvasObject> objects) {
+		int count = gatherObjects(objects);
+		if (count > castObjects.length) {
+			int capacity = Math.max(count, castObjects.length * 2);
+			castObjects = new CanvasObject[capacity];
+			castNextX = new double[capacity];
+			castNextY = new double[capacity];
+			castSuspended = new boolean[capacity];
+		}
+		
+		for (int i = 0; i < count; i++) {
+			CanvasObject o = ordered[i];
+			castObjects[i] = o;
+			castNextX[i] = o.getBounds().x + o.getMovementVector().x;
+			castNextY[i] = o.getBounds().y + o.getMovementVector().y;
+			castSuspended[i] = o.getSuspended();
+		}
+		if (castObjectCount > count) {
+			Arrays.fill(castObjects, count, castObjectCount, null);
+		}
+		castObjectCount = count;
+		
+		indexBodies(objects);
+		clearCollisionNodes();
+		for (int i = 0; i < dynamicCount; i++) {
+			addObjectToCollisionGrid(bodies[dynamicIds[i]]);
+		}
+		
+		castGridValid = true;
+	}
+	
+	/*
+	 * Does the grid still hold the objects of the last cast, in the same order, each where it was added?
+	 */
+	private boolean isCastGridCurrent(Collection<CanvasObject> objects) {
+		if (!castGridValid || objects.size() != castObjectCount) {
+			return false;
+		}
+		
+		int count = gatherObjects(objects);
+		boolean current = true;
+		for (int i = 0; current && i < count; i++) {
+			CanvasObject o = ordered[i];
+			current = (o == castObjects[i]) && 
+					(o.getBounds().x + o.getMovementVector().x) == castNextX[i] && 
+					(o.getBounds().y + o.getMovementVector().y) == castNextY[i] && 
+					o.getSuspended() == castSuspended[i];
+		}
+		Arrays.fill(ordered, 0, count, null);
+		
+		return current;
+	}
+	
 	/*
 	 * Determine grid for collision management
 	 */
 	private void initializeCollisionGrid() {
+		bodyCapacity = Math.max(expectedObjectCount, 1);
+		bodies = new CanvasObject[bodyCapacity];
+		lastCollision = new int[bodyCapacity];
+		lastCollisionStamp = new int[bodyCapacity];
+		dynamicIds = new int[bodyCapacity];
+		castStamp = new int[bodyCapacity];
+		bodyType = new int[bodyCapacity];
+		bodyCells = new int[bodyCapacity * MAX_BODY_CELLS];
+		bodyCellCount = new int[bodyCapacity];
+		allocateIntegrationArrays();
+		ordered = new CanvasObject[bodyCapacity];
+		localIds = new IdentityHashMap<CanvasObject, Integer>();
+		statics = new CanvasObject[4];
+		staticIndex = new StaticBodyIndex();
+		pairs = new CollisionPairSet();
+		islands = new IslandSet();
+		callerIsland = new boolean[16];
+		castGridValid = false;
+		castObjects = new CanvasObject[0];
+		castNextX = new double[0];
+		castNextY = new double[0];
+		castSuspended = new boolean[0];
+		castObjectCount = 0;
+		
+		buildCollisionGrid();
+	}
+	
+	/*
+	 * Size the grid regions for the expected number of objects
+	 */
+	private void buildCollisionGrid() {
 		double canvasArea = canvas.getHeight() * canvas.getWidth();
 		double objectArea = objectSize.height * objectSize.width;
 		int canvasDensityFactor = (int)Math.floor(Math.sqrt(canvasArea / (objectArea *expectedObjectCount))) + 1;
@@ -77,7 +523,9 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 		regionHeight = canvas.getHeight() / numRows;
 		
 		nodes = new CollisionNode[maxRegions];
-		lastCollision = new HashMap<CanvasObject, Integer>(100);
+		colorRegions = new int[REGION_COLORS][maxRegions];
+		colorRegionCount = new int[REGION_COLORS];
+		colorConflict = new boolean[REGION_COLORS];
 
 		int nextRegion = 0;
 		for (int i = 0; i < numRows; i++) {
@@ -86,6 +534,8 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 				double regionY = canvas.y + (regionHeight * i);	
 		
 				Rectangle2D rect = new Rectangle2D.Double(regionX, regionY, regionWidth, regionHeight);
+				int color = getRegionColor(nextRegion);
+				colorRegions[color][colorRegionCount[color]++] = nextRegion;
 				nodes[nextRegion++] = new CollisionNode(rect);
 			}
 		}
@@ -96,10 +546,30 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 	 * See CanvasProcessor
 	 */
 	public boolean update(Collection<CanvasObject> objects) {
+		castGridValid = false;
+		
+		PhysicsStepEvent event = PhysicsStepEvent.PROBE.isEnabled() ? new PhysicsStepEvent() : null;
+		long pairsBefore = 0;
+		long collisionsBefore = 0;
+		if (event != null) {
+			event.begin();
+			pairsBefore = pairsTested.sum();
+			collisionsBefore = collisionCount.sum();
+		}
+		
 		int pass = 0;
-		boolean inMotion = false;
-		boolean haveCollision = false;		
-		lastCollision.clear();
+		boolean haveCollision = false;
+		if (atRest) {
+			FrozenPhysicsModel next = pendingModel.getAndSet(null);
+			if (next != null) {
+				applyModel(next);
+			}
+		}
+		
+		indexBodies(objects);
+		resizeCollisionGrid();
+		parallelUpdate = (dynamicCount >= parallelMinBodies);
+		trackBodyCells = parallelUpdate && !parallelByIslands;
 		
 		// iterate processor based on PhysicsModel
 		// as the last pass found a collision.
@@ -110,146 +580,778 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 			
 			// CanvasObject collisions
 			// first, add to collision grid...
-			objects.forEach(o -> addObjectToCollisionGrid(o));
+			for (int i = 0; i < dynamicCount; i++) {
+				addObjectToCollisionGrid(bodies[dynamicIds[i]]);
+			}
 
-			// second, check collisions within each grid cell
-			for (int i = 0; i < maxRegions; i++) {
-				CollisionNode node = nodes[i];
-				int size = node.size();
-				
-				if (size > 1) {
-					CanvasObject[] objectArray = new CanvasObject[size];
-					node.toArray(objectArray);
-					
-					for (int a = 0; a < size; a++) {
-						for (int b = a+1; b < size; b++) {
-							if (checkAndProcessCollision(objectArray[a], objectArray[b])) {
-								haveCollision = true;
-							};
-						}
-					}
-				}
+			// second, check each pair within a grid cell once, in parallel for large scenes
+			boolean found;
+			if (!parallelUpdate) {
+				found = checkRegionPairs();
+			} else if (parallelByIslands) {
+				found = checkIslandsInParallel();
+			} else {
+				found = checkRegionsInParallel();
+			}
+			if (found) {
+				haveCollision = true;
+			}
+			
+			// Check moving objects against nearby static objects
+			if (staticIndex.size() > 0 && checkStaticCollisions()) {
+				haveCollision = true;
 			}
 				
 			// Check for wall collisions
-			for (CanvasObject o : objects) {
+			for (int i = 0; i < dynamicCount; i++) {
+				CanvasObject o = bodies[dynamicIds[i]];
+				
 				// Only collide if type allows for it and this object is not suspended
-				CanvasObjectConfiguration config = model.getTypeConfig(o.getType());
-				if (o.getSuspended() || config.getCollisionType(Canvas.canvasObjectType) != CollisionType.BOUNCE) {
+				if (o.getSuspended() || model.getCollisionType(bodyType[bodyId(o)], wallType) != CollisionType.BOUNCE) {
 					continue;
 				}
 				
-				Point2D desired = o.getNextLocation();
-				Dimension size = o.getSize();
-				
-				int maxWidth = canvas.x + canvas.width - 1;
-				int maxHeight = canvas.y + canvas.height - 1;
-
-				// check for wall collisions
-				if (desired.getX() > maxWidth - size.width && !movingThroughCanvasHole(Canvas.WALL_EAST, desired, size)) {
-					collide(o, Canvas.WALL_EAST);
-					lastCollision.put(o, Canvas.WALL_EAST);
-					haveCollision = true;
-				} else if (desired.getX() < canvas.x && !movingThroughCanvasHole(Canvas.WALL_WEST, desired, size)) {
-					collide(o, Canvas.WALL_WEST);
-					lastCollision.put(o, Canvas.WALL_WEST);
+				boolean hitWall = (wallTree != null) ? collideWithWallSegments(o) : collideWithCanvasWalls(o);
+				if (hitWall) {
 					haveCollision = true;
 				}
+			}			
+		} while (haveCollision && pass < model.getMaxCollisionPasses());
+		
+		// move each object and apply friction, see Integrator
+		// objects which override their movement (see DEFAULT_MOVEMENT) are moved through CanvasObject.move() instead
+		boolean inMotion = false;
+		int integrated = 0;
+		for (int i = 0; i < dynamicCount; i++) {
+			CanvasObject o = bodies[dynamicIds[i]];
+			double frictionCoefficient = model.getFriction(bodyType[dynamicIds[i]]);
+			if (!DEFAULT_MOVEMENT.get(o.getClass())) {
+				if (moveObject(o, frictionCoefficient)) {
+					inMotion = true;
+				}
+				continue;
+			}
+			
+			Rectangle2D.Double b = o.getBounds();
+			Vector2d mv = o.getMovementVector();
+			
+			integratedIds[integrated] = dynamicIds[i];
+			positionX[integrated] = b.x;
+			positionY[integrated] = b.y;
+			velocityX[integrated] = mv.x;
+			velocityY[integrated] = mv.y;
+			friction[integrated] = frictionCoefficient;
+			suspended[integrated] = o.getSuspended();
+			integrated++;
+		}
+		
+		if (integrator.integrate(positionX, positionY, velocityX, velocityY, friction, suspended, integrated)) {
+			inMotion = true;
+		}
+		
+		for (int i = 0; i < integrated; i++) {
+			CanvasObject o = bodies[integratedIds[i]];
+			Rectangle2D.Double b = o.getBounds();
+			Vector2d mv = o.getMovementVector();
+			
+			b.x = positionX[i];
+			b.y = positionY[i];
+			mv.x = velocityX[i];
+			mv.y = velocityY[i];
+		}
+		
+		atRest = !inMotion;
+		
+		if (event != null && event.shouldCommit()) {
+			event.passes = pass;
+			event.bodies = dynamicCount;
+			event.pairs = pairsTested.sum() - pairsBefore;
+			event.collisions = collisionCount.sum() - collisionsBefore;
+			event.inMotion = inMotion;
+			event.commit();
+		}
+		
+		return inMotion;
+	}	
+	
+	/*
+	 * Move an object which overrides its movement, then apply friction, as the integrator does for other objects
+	 * Returns true if the object is still moving
+	 */
+	private boolean moveObject(CanvasObject o, double frictionCoefficient) {
+		o.move();
+		
+		Vector2d mv = o.getMovementVector();
+		if (!o.getSuspended() && mv.length() > Integrator.REST_SPEED) {
+			mv.scale(frictionCoefficient);
+			return true;
+		}
+		
+		o.setMovementVector(new Vector2d(0, 0));
+		return false;
+	}
+	
+	/*
+	 * Use a physics model from the next update
+	 */
+	private void applyModel(FrozenPhysicsModel physicsModel) {
+		model = physicsModel;
+		wallType = model.getTypeIndex(Canvas.canvasObjectType);
+		castGridValid = false;		// which objects are static may have changed
+	}
+	
+	/*
+	 * Size the integration arrays to the body capacity
+	 */
+	private void allocateIntegrationArrays() {
+		integratedIds = new int[bodyCapacity];
+		positionX = new double[bodyCapacity];
+		positionY = new double[bodyCapacity];
+		velocityX = new double[bodyCapacity];
+		velocityY = new double[bodyCapacity];
+		friction = new double[bodyCapacity];
+		suspended = new boolean[bodyCapacity];
+	}
+	
+	/*
+	 * Rebuild the grid when the number of moving objects has drifted far from the expected count
+	 */
+	private void resizeCollisionGrid() {
+		if (!autoResizeGrid || Math.max(dynamicCount, expectedObjectCount) < GRID_RESIZE_MIN_OBJECTS) {
+			return;
+		}
+		
+		if (dynamicCount > expectedObjectCount * GRID_RESIZE_FACTOR || dynamicCount * GRID_RESIZE_FACTOR < expectedObjectCount) {
+			expectedObjectCount = Math.max(dynamicCount, 1);
+			buildCollisionGrid();
+			gridResizeCount++;
+		}
+	}
+	
+	/*
+	 * Build id-indexed view of the objects for this update and reset per-update collision state
+	 */
+	private void indexBodies(Collection<CanvasObject> objects) {
+		int count = gatherObjects(objects);
+		
+		int maxId = -1;
+		useLocalIds = false;
+		for (int i = 0; i < count; i++) {
+			int id = ordered[i].getId();
+			if (id == CanvasObject.NO_ID) {
+				useLocalIds = true;
+				break;
+			}
+			
+			if (id > maxId) maxId = id;
+		}
+		
+		// objects not added through a Canvas have no id, so number every object by its position in this update
+		if (useLocalIds) {
+			localIds.clear();
+			for (int i = 0; i < count; i++) {
+				localIds.put(ordered[i], i);
+			}
+			maxId = count - 1;
+		}
+		
+		if (maxId >= bodyCapacity) {
+			bodyCapacity = Math.max(maxId + 1, bodyCapacity * 2);
+			bodies = new CanvasObject[bodyCapacity];
+			lastCollision = new int[bodyCapacity];
+			lastCollisionStamp = new int[bodyCapacity];
+			dynamicIds = new int[bodyCapacity];
+			castStamp = new int[bodyCapacity];
+			bodyType = new int[bodyCapacity];
+			bodyCells = new int[bodyCapacity * MAX_BODY_CELLS];
+			bodyCellCount = new int[bodyCapacity];
+			allocateIntegrationArrays();
+		} else {
+			Arrays.fill(bodies, null);
+		}
+		
+		dynamicCount = 0;
+		staticCount = 0;
+		for (int i = 0; i < count; i++) {
+			CanvasObject o = ordered[i];
+			int type = model.getTypeIndex(o.getType());
+			if (type == FrozenPhysicsModel.NO_TYPE || !model.isConfigured(type)) {
+				throw new IllegalStateException(String.format("%s has type %s, which is not in the physics model", o, o.getType()));
+			}
+			
+			int id = bodyId(o);
+			bodies[id] = o;
+			bodyType[id] = type;
+			
+			if (model.isStatic(type)) {
+				if (staticCount == statics.length) {
+					statics = Arrays.copyOf(statics, staticCount * 2);
+				}
+				statics[staticCount++] = o;
+			} else {
+				dynamicIds[dynamicCount++] = id;
+			}
+		}
+		
+		// static objects are only re-indexed when the set of them changes
+		if (!staticIndex.matches(statics, staticCount)) {
+			staticIndex.build(statics, staticCount, 2 * Math.max(objectSize.width, objectSize.height));
+		}
+		Arrays.fill(statics, 0, staticCount, null);
+		Arrays.fill(ordered, 0, count, null);
+		
+		// invalidates lastCollision for every body without clearing it
+		updateStamp++;
+	}
+	
+	/*
+	 * Copy the objects of an update into ordered, in iteration order, returns the number of objects
+	 * A CanvasObjectRegistry is walked by index, so no iterator is allocated
+	 */
+	private int gatherObjects(Collection<CanvasObject> objects) {
+		int count = objects.size();
+		if (count > ordered.length) {
+			ordered = new CanvasObject[Math.max(count, ordered.length * 2)];
+		}
+		
+		if (objects instanceof CanvasObjectRegistry) {
+			CanvasObjectRegistry registry = (CanvasObjectRegistry) objects;
+			for (int i = 0; i < count; i++) {
+				ordered[i] = registry.getInRenderOrder(i);
+			}
+		} else {
+			int i = 0;
+			for (CanvasObject o : objects) {
+				ordered[i++] = o;
+			}
+		}
+		
+		return count;
+	}
+	
+	/*
+	 * Collect unique pairs within each grid cell, and check each pair once
+	 */
+	private boolean checkRegionPairs() {
+		boolean haveCollision = false;
+		collectRegionPairs();
+		
+		for (int i = 0, count = pairs.size(); i < count; i++) {
+			if (checkAndProcessCollision(bodies[pairs.getFirst(i)], bodies[pairs.getSecond(i)])) {
+				haveCollision = true;
+			}
+		}
+		
+		return haveCollision;
+	}
+	
+	/*
+	 * Collect unique pairs within each grid cell
+	 */
+	private void collectRegionPairs() {
+		pairs.reset(bodyCapacity);
+		for (int i = 0; i < maxRegions; i++) {
+			CollisionNode node = nodes[i];
+			int size = node.size();
+			
+			if (size > 1) {
+				int[] ids = node.ids;
 				
-				if (desired.getY() > maxHeight - size.height && !movingThroughCanvasHole(Canvas.WALL_SOUTH, desired, size)) {
-					collide(o, Canvas.WALL_SOUTH);
-					lastCollision.put(o, Canvas.WALL_SOUTH);
+				for (int a = 0; a < size; a++) {
+					for (int b = a+1; b < size; b++) {
+						pairs.add(ids[a], ids[b]);
+					}
+				}
+			}
+		}
+		pairs.finish();
+	}
+	
+	/*
+	 * Group pairs into islands and resolve them concurrently, see setParallelByIslands()
+	 */
+	private boolean checkIslandsInParallel() {
+		collectRegionPairs();
+		islands.build(pairs, bodyCapacity);
+		
+		int islandCount = islands.size();
+		if (callerIsland.length < islandCount) {
+			callerIsland = new boolean[Math.max(islandCount, callerIsland.length * 2)];
+		}
+		
+		for (int island = 0; island < islandCount; island++) {
+			callerIsland[island] = false;
+			
+			for (int k = islands.getStart(island), end = islands.getEnd(island); k < end; k++) {
+				int pair = islands.getPair(k);
+				if (model.getCollisionType(bodyType[pairs.getFirst(pair)], bodyType[pairs.getSecond(pair)]) == CollisionType.CUSTOM) {
+					callerIsland[island] = true;
+					break;
+				}
+			}
+		}
+		
+		ForkJoinTask<Boolean> parallel = parallelPool.submit(new IslandTask(0, islandCount));
+		
+		boolean haveCollision = false;
+		for (int island = 0; island < islandCount; island++) {
+			if (callerIsland[island] && checkIsland(island)) {
+				haveCollision = true;
+			}
+		}
+		
+		return parallel.join() | haveCollision;
+	}
+	
+	/*
+	 * Check the pairs of one island, in pair order
+	 */
+	private boolean checkIsland(int island) {
+		boolean haveCollision = false;
+		
+		for (int k = islands.getStart(island), end = islands.getEnd(island); k < end; k++) {
+			int pair = islands.getPair(k);
+			if (checkAndProcessCollision(bodies[pairs.getFirst(pair)], bodies[pairs.getSecond(pair)])) {
+				haveCollision = true;
+			}
+		}
+		
+		return haveCollision;
+	}
+	
+	/*
+	 * Check pairs within grid regions one checkerboard color at a time, see setParallelNarrowphase()
+	 */
+	private boolean checkRegionsInParallel() {
+		boolean haveCollision = false;
+		
+		for (int color = 0; color < REGION_COLORS; color++) {
+			int count = colorRegionCount[color];
+			
+			if (colorConflict[color]) {
+				if (new RegionTask(colorRegions[color], 0, count).compute()) {
 					haveCollision = true;
-				} else if (desired.getY() < canvas.y && !movingThroughCanvasHole(Canvas.WALL_NORTH, desired, size)) {
-					collide(o, Canvas.WALL_NORTH);
-					lastCollision.put(o, Canvas.WALL_NORTH);
+				}
+			} else if (parallelPool.invoke(new RegionTask(colorRegions[color], 0, count))) {
+				haveCollision = true;
+			}
+			
+			// deferred custom collisions, in region order
+			for (int i = 0; i < count; i++) {
+				CollisionNode node = nodes[colorRegions[color][i]];
+				
+				for (int d = 0; d < node.deferredCount; d++) {
+					long pair = node.deferred[d];
+					if (checkAndProcessCollision(bodies[(int)(pair >>> 32)], bodies[(int)pair])) {
+						haveCollision = true;
+					}
+				}
+			}
+		}
+		
+		return haveCollision;
+	}
+	
+	/*
+	 * Check pairs owned by one grid region (see isPairOwner()), deferring custom collisions
+	 * Only touches bodies in the region, so regions of one color may be checked concurrently
+	 */
+	private boolean checkRegion(int region) {
+		CollisionNode node = nodes[region];
+		int size = node.size();
+		int[] ids = node.ids;
+		boolean haveCollision = false;
+		node.deferredCount = 0;
+		
+		for (int i = 0; i < size; i++) {
+			for (int j = i + 1; j < size; j++) {
+				int lo = Math.min(ids[i], ids[j]);
+				int hi = Math.max(ids[i], ids[j]);
+				if (!isPairOwner(region, lo, hi)) {
+					continue;
+				}
+				
+				if (model.getCollisionType(bodyType[lo], bodyType[hi]) == CollisionType.CUSTOM) {
+					node.defer(lo, hi);
+				} else if (checkAndProcessCollision(bodies[lo], bodies[hi])) {
 					haveCollision = true;
 				}
-			}			
-		} while (haveCollision && pass < model.maxCollisionPasses);
+			}
+		}
+		
+		return haveCollision;
+	}
+	
+	/*
+	 * Is this region the first, by color then region, containing both bodies?
+	 */
+	private boolean isPairOwner(int region, int a, int b) {
+		int order = getRegionOrder(region);
+		
+		for (int i = 0, aCount = bodyCellCount[a]; i < aCount; i++) {
+			int candidate = bodyCells[(a * MAX_BODY_CELLS) + i];
+			if (getRegionOrder(candidate) >= order) {
+				continue;
+			}
+			
+			for (int j = 0, bCount = bodyCellCount[b]; j < bCount; j++) {
+				if (bodyCells[(b * MAX_BODY_CELLS) + j] == candidate) {
+					return false;
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	/*
+	 * Record a grid region containing a body, flagging its color if the body is already in another region of it
+	 */
+	private void addBodyCell(int id, int region) {
+		int first = id * MAX_BODY_CELLS;
+		int count = bodyCellCount[id];
+		int color = getRegionColor(region);
+		
+		for (int i = 0; i < count; i++) {
+			int existing = bodyCells[first + i];
+			if (existing == region) {
+				return;
+			}
+			
+			if (getRegionColor(existing) == color) {
+				colorConflict[color] = true;
+			}
+		}
+		
+		bodyCells[first + count] = region;
+		bodyCellCount[id] = count + 1;
+	}
+	
+	/*
+	 * Checkerboard color of a grid region
+	 */
+	private int getRegionColor(int region) {
+		return ((region / numCols) % 2) * 2 + ((region % numCols) % 2);
+	}
+	
+	/*
+	 * Order in which regions own pairs, by color then region
+	 */
+	private int getRegionOrder(int region) {
+		return (getRegionColor(region) * maxRegions) + region;
+	}
+	
+	/*
+	 * Collide object with the four canvas walls, allowing for canvas holes
+	 */
+	private boolean collideWithCanvasWalls(CanvasObject o) {
+		boolean hitWall = false;
+		
+		// location after the next move, as getNextLocation(), and size rounded out to whole pixels, as getSize()
+		Rectangle2D.Double bounds = o.getBounds();
+		Vector2d mv = o.getMovementVector();
+		double x = bounds.x + mv.x;
+		double y = bounds.y + mv.y;
+		int width = (int)(Math.ceil(bounds.x + bounds.width) - Math.floor(bounds.x));
+		int height = (int)(Math.ceil(bounds.y + bounds.height) - Math.floor(bounds.y));
+		
+		int maxWidth = canvas.x + canvas.width - 1;
+		int maxHeight = canvas.y + canvas.height - 1;
+
+		// check for wall collisions
+		if (x > maxWidth - width && !movingThroughCanvasHole(Canvas.WALL_EAST, x, y, width, height)) {
+			collide(o, Canvas.WALL_EAST);
+			setLastCollision(bodyId(o), -Canvas.WALL_EAST);
+			hitWall = true;
+		} else if (x < canvas.x && !movingThroughCanvasHole(Canvas.WALL_WEST, x, y, width, height)) {
+			collide(o, Canvas.WALL_WEST);
+			setLastCollision(bodyId(o), -Canvas.WALL_WEST);
+			hitWall = true;
+		}
+		
+		if (y > maxHeight - height && !movingThroughCanvasHole(Canvas.WALL_SOUTH, x, y, width, height)) {
+			collide(o, Canvas.WALL_SOUTH);
+			setLastCollision(bodyId(o), -Canvas.WALL_SOUTH);
+			hitWall = true;
+		} else if (y < canvas.y && !movingThroughCanvasHole(Canvas.WALL_NORTH, x, y, width, height)) {
+			collide(o, Canvas.WALL_NORTH);
+			setLastCollision(bodyId(o), -Canvas.WALL_NORTH);
+			hitWall = true;
+		}
+		
+		return hitWall;
+	}
+	
+	/*
+	 * Collide object with the wall segments, treating it as a circle inscribed in its bounds
+	 * Only the earliest segment hit along the object's movement is processed, later passes handle the rest
+	 */
+	private boolean collideWithWallSegments(CanvasObject o) {
+		Rectangle2D bounds = o.getBounds();
+		Vector2d mv = o.getMovementVector();
+		double radius = Math.min(bounds.getWidth(), bounds.getHeight()) / 2;
+		double cx = bounds.getCenterX();
+		double cy = bounds.getCenterY();
+		
+		int count = wallTree.query(Math.min(cx, cx + mv.x) - radius, Math.min(cy, cy + mv.y) - radius, 
+								   Math.max(cx, cx + mv.x) + radius, Math.max(cy, cy + mv.y) + radius);
+		
+		double earliest = Double.MAX_VALUE;
+		double normalX = 0;
+		double normalY = 0;
+		int segment = -1;
+		
+		for (int i = 0; i < count; i++) {
+			double t = sweepCircleAgainstSegment(cx, cy, mv.x, mv.y, radius, wallTree.getResult(i));
+			if (t < earliest) {
+				earliest = t;
+				normalX = hitNormalX;
+				normalY = hitNormalY;
+				segment = wallTree.getResultIndex(i);
+			}
+		}
+		
+		if (segment < 0) {
+			return false;
+		}
+		
+		// reverse the normal component, scaled by the coefficient of restitution
+		double wallCoefficient = model.getCollisionCoefficient(bodyType[bodyId(o)], wallType);
+		double normalSpeed = (mv.x * normalX) + (mv.y * normalY);
+		mv.x -= (1 + wallCoefficient) * normalSpeed * normalX;
+		mv.y -= (1 + wallCoefficient) * normalSpeed * normalY;
+		collisionCount.increment();
+		
+		setLastCollision(bodyId(o), WALL_SEGMENT_COLLISION - segment);
+		return true;
+	}
+	
+	/*
+	 * Time of impact in [0, 1] of a circle moving from (cx, cy) by (dx, dy) against a segment,
+	 * or Double.MAX_VALUE if it does not hit while approaching it.
+	 * Sets hitNormalX/Y to the unit normal at contact, pointing from the segment towards the circle
+	 */
+	private double sweepCircleAgainstSegment(double cx, double cy, double dx, double dy, double radius, WallSegment s) {
+		double ex = s.x2 - s.x1;
+		double ey = s.y2 - s.y1;
+		double lengthSquared = (ex * ex) + (ey * ey);
+		double earliest = Double.MAX_VALUE;
+		
+		if (lengthSquared > 0) {
+			// face of the segment, using the normal on the circle's side
+			double length = Math.sqrt(lengthSquared);
+			double nx = -ey / length;
+			double ny = ex / length;
+			double distance = ((cx - s.x1) * nx) + ((cy - s.y1) * ny);
+			if (distance < 0) {
+				nx = -nx;
+				ny = -ny;
+				distance = -distance;
+			}
+			
+			double approach = (dx * nx) + (dy * ny);
+			if (approach < 0) {
+				double t = (distance <= radius) ? 0 : (distance - radius) / -approach;
+				
+				if (t <= 1) {
+					// contact point must lie within the segment
+					double u = (((cx + (dx * t)) - s.x1) * ex + ((cy + (dy * t)) - s.y1) * ey) / lengthSquared;
+					if (u >= 0 && u <= 1) {
+						earliest = t;
+						hitNormalX = nx;
+						hitNormalY = ny;
+					}
+				}
+			}
+		}
+		
+		// end points
+		double bestNormalX = hitNormalX;
+		double bestNormalY = hitNormalY;
+		double t = sweepCircleAgainstPoint(cx, cy, dx, dy, radius, s.x1, s.y1);
+		if (t < earliest) {
+			earliest = t;
+			bestNormalX = hitNormalX;
+			bestNormalY = hitNormalY;
+		}
+		
+		t = sweepCircleAgainstPoint(cx, cy, dx, dy, radius, s.x2, s.y2);
+		if (t < earliest) {
+			earliest = t;
+			bestNormalX = hitNormalX;
+			bestNormalY = hitNormalY;
+		}
+		
+		hitNormalX = bestNormalX;
+		hitNormalY = bestNormalY;
+		return earliest;
+	}
+	
+	/*
+	 * Time of impact in [0, 1] of a moving circle against a point, or Double.MAX_VALUE
+	 * Sets hitNormalX/Y when hit
+	 */
+	private double sweepCircleAgainstPoint(double cx, double cy, double dx, double dy, double radius, double px, double py) {
+		double fx = cx - px;
+		double fy = cy - py;
+		double a = (dx * dx) + (dy * dy);
+		double b = (fx * dx) + (fy * dy);
+		double c = (fx * fx) + (fy * fy) - (radius * radius);
+		
+		// only when approaching the point
+		if (b >= 0 || a == 0) {
+			return Double.MAX_VALUE;
+		}
 		
-		for (CanvasObject o : objects) {
-			// move each object
-			o.move();
+		double t;
+		if (c <= 0) {
+			t = 0;
+		} else {
+			double discriminant = (b * b) - (a * c);
+			if (discriminant < 0) {
+				return Double.MAX_VALUE;
+			}
 			
-			// apply friction
+			t = (-b - Math.sqrt(discriminant)) / a;
+			if (t > 1) {
+				return Double.MAX_VALUE;
+			}
+		}
+		
+		double hx = fx + (dx * t);
+		double hy = fy + (dy * t);
+		double length = Math.sqrt((hx * hx) + (hy * hy));
+		if (length == 0) {
+			return Double.MAX_VALUE;
+		}
+		
+		hitNormalX = hx / length;
+		hitNormalY = hy / length;
+		return t;
+	}
+	
+	/*
+	 * Check each moving object against the static objects indexed near its current and next position
+	 */
+	private boolean checkStaticCollisions() {
+		boolean haveCollision = false;
+		
+		for (int i = 0; i < dynamicCount; i++) {
+			CanvasObject o = bodies[dynamicIds[i]];
 			Vector2d mv = o.getMovementVector();
-			if (!o.getSuspended() && mv.length() > 0.4) {
-				mv.scale(model.getTypeConfig(o.getType()).frictionCoefficient);
-				inMotion = true;
-			} else {
-				o.setMovementVector(new Vector2d(0, 0));
+			if (o.getSuspended() || (mv.x == 0 && mv.y == 0)) {
+				continue;
+			}
+			
+			Rectangle2D b = o.getBounds();
+			double minX = Math.min(b.getX(), b.getX() + mv.x);
+			double minY = Math.min(b.getY(), b.getY() + mv.y);
+			double maxX = Math.max(b.getMaxX(), b.getMaxX() + mv.x);
+			double maxY = Math.max(b.getMaxY(), b.getMaxY() + mv.y);
+			
+			for (int r = 0, count = staticIndex.query(minX, minY, maxX, maxY); r < count; r++) {
+				if (checkAndProcessCollision(o, staticIndex.getResult(r))) {
+					haveCollision = true;
+				}
+				
+				// listener may have suspended the object (e.g. captured by a pocket)
+				if (o.getSuspended()) {
+					break;
+				}
 			}
 		}
 		
-		return inMotion;
-	}	
+		return haveCollision;
+	}
+	
+	/*
+	 * Last collision partner for body in this update (id, -wall, or NO_COLLISION)
+	 */
+	private int getLastCollision(int id) {
+		return lastCollisionStamp[id] == updateStamp ? lastCollision[id] : NO_COLLISION;
+	}
+	
+	/*
+	 * Record collision partner for body in this update
+	 */
+	private void setLastCollision(int id, int partner) {
+		lastCollision[id] = partner;
+		lastCollisionStamp[id] = updateStamp;
+	}
+	
+	/*
+	 * Id of object in this update: its canvas id, or its local id when some object has no canvas id
+	 */
+	private int bodyId(CanvasObject o) {
+		return useLocalIds ? localIds.get(o) : o.getId();
+	}
 	
 	/*
 	 * Add object to collision grid
 	 * May add a single object to up to four grid locations if it spans multiple nodes
 	 */
 	private void addObjectToCollisionGrid(CanvasObject o) {
+		if (trackBodyCells) {
+			bodyCellCount[bodyId(o)] = 0;
+		}
+		
 		if (o.getSuspended())
 			return;
 		
-		Dimension objSize = o.getSize();
-		Point2D objPosition = o.getNextLocation();
+		// size rounded out to whole pixels, as getSize(), and location after the next move, as getNextLocation()
+		Rectangle2D.Double bounds = o.getBounds();
+		Vector2d mv = o.getMovementVector();
+		int width = (int)(Math.ceil(bounds.x + bounds.width) - Math.floor(bounds.x));
+		int height = (int)(Math.ceil(bounds.y + bounds.height) - Math.floor(bounds.y));
+		double x = bounds.x + mv.x;
+		double y = bounds.y + mv.y;
 		
 		// Todo: move this hack elsewhere?
 		// This may not be needed any longer
-		if (objPosition.getX() < canvas.x) objPosition.setLocation(canvas.x, objPosition.getY());
-		if (objPosition.getY() < canvas.y) objPosition.setLocation(objPosition.getX(), canvas.y);
+		if (x < canvas.x) x = canvas.x;
+		if (y < canvas.y) y = canvas.y;
 		
 		int maxX = canvas.x + canvas.width - 1;
 		int maxY = canvas.y + canvas.height - 1;
 		
 		// calculate North, South, East, and West edges of Sprite, add to applicable collision regions
-		Point2D north = new Point2D.Double(Math.min(objPosition.getX() + objSize.width/2, maxX), 
-										   Math.min(objPosition.getY(), maxY));
-		addCollisionPointToGrid(o, north);
-		
-		Point2D east = new Point2D.Double(Math.min(objPosition.getX() + objSize.width, maxY), 
-										  Math.min(objPosition.getY() + objSize.height/2, maxY));
-		addCollisionPointToGrid(o, east);
-		
-		Point2D south = new Point2D.Double(Math.min(objPosition.getX() + objSize.width/2, maxX), 
-										   Math.min(objPosition.getY() + objSize.width, maxY));
-		addCollisionPointToGrid(o, south);
-		
-		Point2D west = new Point2D.Double(Math.min(objPosition.getX(), maxX), 
-										 Math.min(objPosition.getY() + objSize.height/2, maxY));
-		addCollisionPointToGrid(o, west);
+		addCollisionPointToGrid(o, Math.min(x + width/2, maxX), Math.min(y, maxY));						// north
+		addCollisionPointToGrid(o, Math.min(x + width, maxY), Math.min(y + height/2, maxY));			// east
+		addCollisionPointToGrid(o, Math.min(x + width/2, maxX), Math.min(y + width, maxY));			// south
+		addCollisionPointToGrid(o, Math.min(x, maxX), Math.min(y + height/2, maxY));					// west
 	}	
 	
 	/*
 	 * Add collision point (E, N, W, S) to grid node
 	 */
-	private void addCollisionPointToGrid(CanvasObject o, Point2D location) {
-		int row = (int)(Math.floor((location.getY() / (canvas.x + canvas.getHeight())) * numRows)); 
-		int col = (int)(Math.floor((location.getX() / (canvas.y + canvas.getWidth())) * numCols));
+	private void addCollisionPointToGrid(CanvasObject o, double x, double y) {
+		int row = (int)(Math.floor((y / (canvas.x + canvas.getHeight())) * numRows)); 
+		int col = (int)(Math.floor((x / (canvas.y + canvas.getWidth())) * numCols));
 		
 		// bit of a hack for rounding error when regionWidth or regionHeight don't cleanly divide the canvas...
-		if (canvas.x + (col * regionWidth) > location.getX()) col--;
-		if (canvas.y + (row * regionHeight) > location.getY()) row--;
+		if (canvas.x + (col * regionWidth) > x) col--;
+		if (canvas.y + (row * regionHeight) > y) row--;
 		
 		int region = (row * numCols) + col;
 		
 		if (region < 0 || region >= maxRegions) {
 			throw new IllegalStateException(
-					String.format("failed to find node for point at %s, row=%d, col=%d, region=%d", 
-							location, row, col, region));
+					String.format("failed to find node for point at (%s, %s), row=%d, col=%d, region=%d", 
+							x, y, row, col, region));
 		}
 		
 		CollisionNode node = nodes[region];
 		
-		if (!node.getBounds().contains(location)) {
+		if (!node.getBounds().contains(x, y)) {
 			throw new IllegalStateException(
-					String.format("found node(%s) but does not contain point(%s), row=%d, col=%d, region=%d!\n", 
-						node.getBounds(), location, row, col, region)); 
+					String.format("found node(%s) but does not contain point(%s, %s), row=%d, col=%d, region=%d!\n", 
+						node.getBounds(), x, y, row, col, region)); 
 		}
 		
 		node.add(o);
+		if (trackBodyCells) {
+			addBodyCell(bodyId(o), region);
+		}
 	}
 	
 	/*
@@ -257,21 +1359,22 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 	 * Calls collide() if collision found
 	 */
 	private boolean checkAndProcessCollision(CanvasObject a, CanvasObject b) {
+		pairsTested.increment();
+		
 		// don't collide suspended objects
 		if (a.getSuspended() || b.getSuspended()) {
 			return false;
 		}
 		
 		// check model to see if we can collide
-		CanvasObjectConfiguration config = model.getTypeConfig(a.getType());
-		if (config == null)
-			return false;
+		int aType = bodyType[bodyId(a)];
+		int bType = bodyType[bodyId(b)];
 		
-		CollisionType collisionType = config.getCollisionType(b.getType());
+		CollisionType collisionType = model.getCollisionType(aType, bType);
 		if (collisionType == CollisionType.BOUNCE) {
 			return checkBounce(a, b);
 		} else if (collisionType == CollisionType.CUSTOM) {
-			CustomCollisionListener listener = config.getCustomListener(b.getType());
+			CustomCollisionListener listener = model.getCustomListener(aType, bType);
 			if (listener != null) {
 				return listener.checkCollision(a, b);
 			}
@@ -286,13 +1389,15 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 	private boolean checkBounce(CanvasObject a, CanvasObject b) {		
 		Vector2d aV = a.getMovementVector();
 		Vector2d bV = b.getMovementVector();
-		int aHash = a.hashCode();
-		int bHash = b.hashCode();
+		int aId = bodyId(a);
+		int bId = bodyId(b);
 				
-		// deformation
-		Area intersection = a.getOverlapWith(b);
-		if (!intersection.isEmpty()) {
-			deformCollision(a, b, intersection.getBounds2D());
+		// deformation, only building the overlap Area when the objects may overlap
+		if (a.mayOverlap(b)) {
+			Area intersection = a.getOverlapWith(b);
+			if (!intersection.isEmpty()) {
+				deformCollision(a, b, intersection.getBounds2D());
+			}
 		}
 		
 		// can't collide if we're not moving
@@ -301,70 +1406,64 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 		}
 		
 		// pending collision
-		if (collisionPending(a, b) && (!lastCollision.containsKey(a) || lastCollision.get(a) != bHash)) {	
+		if (a.isCollisionPending(b) && getLastCollision(aId) != bId) {	
 			collide(a, b);
 
-			lastCollision.put(a, bHash);
-			lastCollision.put(b, aHash);
+			setLastCollision(aId, bId);
+			setLastCollision(bId, aId);
 			return true;
 		}
 		
 		return false;
 	}
 	
-	/*
-	 * Is a collision pending?
-	 */
-	private boolean collisionPending(CanvasObject a, CanvasObject b) {
-		Area intersection = a.getAreaForCollision();
-		intersection.intersect(b.getAreaForCollision());
-
-		return !intersection.isEmpty();
-	}
-	
 	/*
 	 * Perform bounce between two objects
 	 * cf. http://vobarian.com/collisions/2dcollisions2.pdf
 	 * Also inspiration from here: 
 	 *    http://stackoverflow.com/questions/9424459/calculate-velocity-and-direction-of-a-ball-to-ball-collision-based-on-mass-and-b
+	 * Works on vector components and updates both movement vectors in place, so allocates nothing
 	 */
 	private void collide(CanvasObject a, CanvasObject b) {
-		Vector2d unitNormalVector = getNormalizedCollisionVector(a, b);
-		Vector2d unitTangentVector = new Vector2d(unitNormalVector.y, -unitNormalVector.x); 
+		// unit normal between the centers after the next move, and the tangent to it
+		double normalX = getNextCenterX(a) - getNextCenterX(b);
+		double normalY = getNextCenterY(a) - getNextCenterY(b);
+		double norm = 1.0 / Math.sqrt((normalX * normalX) + (normalY * normalY));
+		normalX *= norm;
+		normalY *= norm;
+		double tangentX = normalY;
+		double tangentY = -normalX;
+		
 		Vector2d aVector = a.getMovementVector();
 		Vector2d bVector = b.getMovementVector();
 				
 		double aMass = a.getMass();
 		double bMass = b.getMass();
-		double aNormalScaleFactor = aVector.dot(unitNormalVector);
-		double bNormalScaleFactor = bVector.dot(unitNormalVector);
-		double restitution = model.getTypeConfig(a.getType()).getCollisionCoefficient(b.getType());		
-		
-		Vector2d newVectorForA = new Vector2d(unitTangentVector);
-		Vector2d newVectorForB = new Vector2d(unitTangentVector);
-		
-		newVectorForA.scale(aVector.dot(unitTangentVector));
-		newVectorForB.scale(bVector.dot(unitTangentVector));
+		double aNormalScaleFactor = (aVector.x * normalX) + (aVector.y * normalY);
+		double bNormalScaleFactor = (bVector.x * normalX) + (bVector.y * normalY);
+		double aTangentScaleFactor = (aVector.x * tangentX) + (aVector.y * tangentY);
+		double bTangentScaleFactor = (bVector.x * tangentX) + (bVector.y * tangentY);
+		double restitution = model.getCollisionCoefficient(bodyType[bodyId(a)], bodyType[bodyId(b)]);		
 		
 		// scaling factor in the form for inelastic collisions: https://en.wikipedia.org/wiki/Inelastic_collision		
-		Vector2d aNorm = new Vector2d(unitNormalVector);			
-		aNorm.scale(((bMass * restitution * (bNormalScaleFactor - aNormalScaleFactor)) + 
-				                (aMass * aNormalScaleFactor) + (bMass * bNormalScaleFactor)) / (aMass + bMass));
-		newVectorForA.add(aNorm);
-		a.setMovementVector(newVectorForA);
+		double aNormal = ((bMass * restitution * (bNormalScaleFactor - aNormalScaleFactor)) + 
+				                (aMass * aNormalScaleFactor) + (bMass * bNormalScaleFactor)) / (aMass + bMass);
+		double bNormal = ((aMass * restitution * (aNormalScaleFactor - bNormalScaleFactor)) + 
+				                (bMass * bNormalScaleFactor) + (aMass * aNormalScaleFactor)) / (aMass + bMass);
 		
-		Vector2d bNorm = new Vector2d(unitNormalVector);			
-		bNorm.scale(((aMass * restitution * (aNormalScaleFactor - bNormalScaleFactor)) + 
-				                (bMass * bNormalScaleFactor) + (aMass * aNormalScaleFactor)) / (aMass + bMass));
-		newVectorForB.add(bNorm);
-		b.setMovementVector(newVectorForB);
+		// tangential component is kept, normal component exchanged
+		aVector.x = (tangentX * aTangentScaleFactor) + (normalX * aNormal);
+		aVector.y = (tangentY * aTangentScaleFactor) + (normalY * aNormal);
+		bVector.x = (tangentX * bTangentScaleFactor) + (normalX * bNormal);
+		bVector.y = (tangentY * bTangentScaleFactor) + (normalY * bNormal);
+		collisionCount.increment();
 	}
 	
 	/*
 	 * Perform collision between object and side-wall
 	 */
 	private void collide(CanvasObject o, int wall) {
-		double wallCoefficient = model.getTypeConfig(o.getType()).getCollisionCoefficient(Canvas.canvasObjectType);
+		double wallCoefficient = model.getCollisionCoefficient(bodyType[bodyId(o)], wallType);
 		
 		switch (wall) {
 			case Canvas.WALL_EAST:
@@ -380,49 +1479,60 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 			default:
 				throw new IllegalArgumentException(String.format("Unknown wall type for bounce: %d", wall));
 		}
+		
+		collisionCount.increment();
 	}
 	
 	/*
-	 * Return unit normal vector to a collision between objects (using center-of-mass defined per object)
+	 * Center of an object after the next move, x (as getNextCenterPoint(), without allocating)
 	 */
-	private Vector2d getNormalizedCollisionVector(CanvasObject a, CanvasObject b) {
-		Point2D aCenter = a.getNextCenterPoint();
-		Point2D bCenter = b.getNextCenterPoint();
-		
-		Vector2d normalVector = new Vector2d(aCenter.getX() - bCenter.getX(), aCenter.getY() - bCenter.getY());
-		normalVector.normalize();
-		return normalVector;
+	private double getNextCenterX(CanvasObject o) {
+		Rectangle2D.Double bounds = o.getBounds();
+		return (bounds.x + o.getMovementVector().x) + (bounds.width / 2.0);
 	}
 	
 	/*
-	 * Fix overlap between objects
+	 * Center of an object after the next move, y (as getNextCenterPoint(), without allocating)
+	 */
+	private double getNextCenterY(CanvasObject o) {
+		Rectangle2D.Double bounds = o.getBounds();
+		return (bounds.y + o.getMovementVector().y) + (bounds.height / 2.0);
+	}
+	
+	/*
+	 * Fix overlap between objects, pushing them apart along the normal between their centers
 	 */
 	private void deformCollision(CanvasObject a, CanvasObject b, Rectangle2D intersection) {
-		Rectangle2D aPos = a.getBounds();
-		Rectangle2D bPos = b.getBounds();
+		Rectangle2D.Double aPos = a.getBounds();
+		Rectangle2D.Double bPos = b.getBounds();
 		
-		Vector2d aVector = getNormalizedCollisionVector(a, b);
-		aVector.setX(aVector.getX() * intersection.getWidth());
-		aVector.setY(aVector.getY() * intersection.getHeight());
-		Vector2d bVector = new Vector2d(-aVector.getX(), -aVector.getY());	
-		Point2D.Double aPosNew = new Point2D.Double(aPos.getX() + aVector.getX(), aPos.getY() + aVector.getY());
-		Point2D.Double bPosNew = new Point2D.Double(bPos.getX() + bVector.getX(), bPos.getY() + bVector.getY());
+		double normalX = getNextCenterX(a) - getNextCenterX(b);
+		double normalY = getNextCenterY(a) - getNextCenterY(b);
+		double norm = 1.0 / Math.sqrt((normalX * normalX) + (normalY * normalY));
+		double pushX = (normalX * norm) * intersection.getWidth();
+		double pushY = (normalY * norm) * intersection.getHeight();
 		
-		a.setLocation(aPosNew);
-		b.setLocation(bPosNew);
+		aPos.x += pushX;
+		aPos.y += pushY;
+		bPos.x -= pushX;
+		bPos.y -= pushY;
 	}
 	
 	/*
 	 * Check to see if we're moving through a hole in the canvas
+	 * x, y: location after the next move; width, height: size in whole pixels
 	 */
-	private boolean movingThroughCanvasHole(int wall, Point2D desired, Dimension size) {
+	private boolean movingThroughCanvasHole(int wall, double x, double y, int width, int height) {
 		boolean inHole = false;
 		Set<Tuple2i> holes = canvasHoles.get(wall);
+		if (holes == null) {
+			return false;
+		}
 
 		for (Tuple2i hole : holes) {
-			int objectLocation = getCanvasObjectLocationForHole(wall, desired);
+			int objectLocation = getCanvasObjectLocationForHole(wall, x, y);
 			
-			if (objectLocation >= hole.x && objectLocation + getCanvasObjectSizeForHole(wall, size) <= hole.y) {
+			if (objectLocation >= hole.x && objectLocation + getCanvasObjectSizeForHole(wall, width, height) <= hole.y) {
 				inHole = true;
 				break;
 			}
@@ -434,18 +1544,18 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 	/*
 	 * Depending on which hole we are moving through, get either X or Y coordinate
 	 */
-	private int getCanvasObjectLocationForHole(int wall, Point2D desired) {
+	private int getCanvasObjectLocationForHole(int wall, double x, double y) {
 		double result;
 		
 		switch (wall) {
 			case Canvas.WALL_NORTH:
 			case Canvas.WALL_SOUTH:
-				result = desired.getX();
+				result = x;
 				break;
 				
 			case Canvas.WALL_EAST:
 			case Canvas.WALL_WEST:
-				result = desired.getY();
+				result = y;
 				break;
 				
 			default:
@@ -458,18 +1568,18 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 	/*
 	 * Depending on which hole we are moving through, get size in eitehr X or Y dimension
 	 */
-	private int getCanvasObjectSizeForHole(int wall, Dimension size) {
+	private int getCanvasObjectSizeForHole(int wall, int width, int height) {
 		int result;
 		
 		switch (wall) {
 		case Canvas.WALL_NORTH:
 		case Canvas.WALL_SOUTH:
-			result = size.width;
+			result = width;
 			break;
 			
 		case Canvas.WALL_EAST:
 		case Canvas.WALL_WEST:
-			result = size.height;
+			result = height;
 			break;
 			
 		default:
@@ -479,6 +1589,49 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 		return result;
 	}
 
+	/*
+	 * Distance along a unit ray until a circle touches the canvas walls, and the wall normal
+	 * Returns { distance, normalX, normalY }, distance is Double.MAX_VALUE if never
+	 */
+	private double[] castAgainstCanvasWalls(double cx, double cy, double ux, double uy, double radius) {
+		double[] result = { Double.MAX_VALUE, 0, 0 };
+		
+		if (ux != 0) {
+			double wallX = (ux > 0) ? canvas.x + canvas.width - radius : canvas.x + radius;
+			double distance = Math.max(0, (wallX - cx) / ux);
+			result[0] = distance;
+			result[1] = (ux > 0) ? -1 : 1;
+		}
+		
+		if (uy != 0) {
+			double wallY = (uy > 0) ? canvas.y + canvas.height - radius : canvas.y + radius;
+			double distance = Math.max(0, (wallY - cy) / uy);
+			if (distance < result[0]) {
+				result[0] = distance;
+				result[1] = 0;
+				result[2] = (uy > 0) ? -1 : 1;
+			}
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * Collision grid column containing an x coordinate, clamped to the grid
+	 */
+	private int getGridColumn(double x) {
+		int col = (int)Math.floor((x - canvas.x) / regionWidth);
+		return Math.max(0, Math.min(col, numCols - 1));
+	}
+	
+	/*
+	 * Collision grid row containing a y coordinate, clamped to the grid
+	 */
+	private int getGridRow(double y) {
+		int row = (int)Math.floor((y - canvas.y) / regionHeight);
+		return Math.max(0, Math.min(row, numRows - 1));
+	}
+	
 	/*
 	 * Clear collision grid
 	 */
@@ -486,22 +1639,131 @@ public class BasicPhysicsCanvasProcessor implements CanvasProcessor
 		for (int i = 0; i < maxRegions; i++) {
 			nodes[i].clear();
 		}
+		Arrays.fill(colorConflict, false);
+	}
+	
+	/*
+	 * Checks a range of islands not resolved on the calling thread, splitting the range across the pool
+	 */
+	private class IslandTask extends RecursiveTask<Boolean>
+	{
+		private int from;
+		private int to;
+		
+		public IslandTask(int start, int end) {
+			from = start;
+			to = end;
+		}
+		
+		@Override
+		protected Boolean compute() {
+			if (to - from > 1 && islands.getEnd(to - 1) - islands.getStart(from) > PAIRS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				IslandTask left = new IslandTask(from, mid);
+				left.fork();
+				boolean right = new IslandTask(mid, to).compute();
+				return left.join() | right;
+			}
+			
+			boolean haveCollision = false;
+			for (int island = from; island < to; island++) {
+				if (!callerIsland[island] && checkIsland(island)) {
+					haveCollision = true;
+				}
+			}
+			
+			return haveCollision;
+		}
+	}
+	
+	/*
+	 * Checks the regions in a range of a color's region list, splitting the range across the pool
+	 */
+	private class RegionTask extends RecursiveTask<Boolean>
+	{
+		private int[] regions;
+		private int from;
+		private int to;
+		
+		public RegionTask(int[] colorRegions, int start, int end) {
+			regions = colorRegions;
+			from = start;
+			to = end;
+		}
+		
+		@Override
+		protected Boolean compute() {
+			if (to - from > REGIONS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				RegionTask left = new RegionTask(regions, from, mid);
+				left.fork();
+				boolean right = new RegionTask(regions, mid, to).compute();
+				return left.join() | right;
+			}
+			
+			boolean haveCollision = false;
+			for (int i = from; i < to; i++) {
+				if (checkRegion(regions[i])) {
+					haveCollision = true;
+				}
+			}
+			
+			return haveCollision;
+		}
 	}
 	
 	/*
 	 * Helper class for managing collisions
+	 * Holds the ids of bodies touching one grid region
 	 */
-	private class CollisionNode extends HashSet<CanvasObject> 
+	private class CollisionNode
 	{
 		private Rectangle2D bounds;
+		private int[] ids;
+		private int count;
+		private long[] deferred;		// custom collision pairs, (lower id << 32) | higher id
+		private int deferredCount;
 		
 		public CollisionNode(Rectangle2D nodeBoundary) {
-			super();
 			bounds = nodeBoundary;
+			ids = new int[4];
+			count = 0;
+			deferred = new long[0];
 		}
 		
 		public Rectangle2D getBounds() {
 			return bounds;
 		}
+		
+		/*
+		 * An object's edge points are added consecutively, so a repeat is always the last entry
+		 */
+		public void add(CanvasObject o) {
+			int id = bodyId(o);
+			if (count > 0 && ids[count - 1] == id) {
+				return;
+			}
+			
+			if (count == ids.length) {
+				ids = Arrays.copyOf(ids, count * 2);
+			}
+			ids[count++] = id;
+		}
+		
+		public int size() {
+			return count;
+		}
+		
+		public void clear() {
+			count = 0;
+			deferredCount = 0;
+		}
+		
+		public void defer(int lo, int hi) {
+			if (deferredCount == deferred.length) {
+				deferred = Arrays.copyOf(deferred, Math.max(deferredCount * 2, 4));
+			}
+			deferred[deferredCount++] = ((long)lo << 32) | hi;
+		}
 	}
 }
\ No newline at end of file
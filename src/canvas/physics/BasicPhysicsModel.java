@@ -1,13 +1,29 @@
 package canvas.physics;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 
 /**
  * BasicPhysicsModel contains constants used by BasicPhysicsCanvasProcessor to process collisions
+ * Built in code or loaded from a model file, and frozen (see freeze()) for use by the processor
  *
+ * Model file format, one entry per line, # for comments:
+ *   passes <max collision passes>
+ *   type <type> <restitution> <friction> <bounce|none> [static]
+ *                                    object type, with its default collision type and coefficient of restitution
+ *   collide <type> <other type> bounce <restitution>
+ *   collide <type> <other type> custom <listener name>
+ *   collide <type> <other type> none
+ *                                    collisions of a declared type with another, Wall for walls (Canvas.canvasObjectType)
  */
 public class BasicPhysicsModel {
 	protected HashMap<String, CanvasObjectConfiguration> typeConfig;
+	protected HashSet<String> staticTypes;
 	protected int maxCollisionPasses;
 	
 	/**
@@ -15,9 +31,61 @@ public class BasicPhysicsModel {
 	 */
 	public BasicPhysicsModel() {
 		typeConfig = new HashMap<String, CanvasObjectConfiguration>();
+		staticTypes = new HashSet<String>();
 		maxCollisionPasses = 1;
 	}
 	
+	/**
+	 * Load a model file
+	 * @param path Model file
+	 * @param listeners Custom collision listeners, by the names used in the file
+	 * @return BasicPhysicsModel
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file is not a valid model
+	 */
+	public static BasicPhysicsModel load(Path path, Map<String, CustomCollisionListener> listeners) throws IOException {
+		BasicPhysicsModel model = new BasicPhysicsModel();
+		
+		try (BufferedReader reader = Files.newBufferedReader(path)) {
+			String line;
+			int lineNumber = 0;
+			
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				
+				try {
+					model.parse(line.split("\\s+"), listeners);
+				} catch (RuntimeException e) {
+					throw new IllegalArgumentException(
+							String.format("%s:%d: invalid model entry '%s' (%s)", path, lineNumber, line, e.getMessage()), e);
+				}
+			}
+		}
+		
+		try {
+			model.freeze();
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("%s: %s", path, e.getMessage()), e);
+		}
+		
+		return model;
+	}
+	
+	/**
+	 * Validated, immutable copy of the model for use by the processor
+	 * Later changes to this model do not affect the copy
+	 * @return FrozenPhysicsModel
+	 * @throws IllegalArgumentException if a coefficient is outside 0 to 1, passes are below 1,
+	 *         or a custom collision has no listener
+	 */
+	public FrozenPhysicsModel freeze() {
+		return new FrozenPhysicsModel(this);
+	}
+	
 	/**
 	 * Add a new CanvasObject type to model
 	 * @param type CanvasObject type (CanvasObject.getType())
@@ -36,6 +104,30 @@ public class BasicPhysicsModel {
 		return typeConfig.get(type);
 	}
 	
+	/**
+	 * Declare a CanvasObject type as static (immovable)
+	 * Static objects are indexed once, separately from the collision grid, and are only
+	 * checked against moving objects near them. They are never moved by the processor.
+	 * @param type CanvasObject type
+	 * @param isStatic Boolean
+	 */
+	public void setStaticType(String type, boolean isStatic) {
+		if (isStatic) {
+			staticTypes.add(type);
+		} else {
+			staticTypes.remove(type);
+		}
+	}
+	
+	/**
+	 * Is a CanvasObject type static?
+	 * @param type CanvasObject type
+	 * @return Boolean
+	 */
+	public boolean isStaticType(String type) {
+		return staticTypes.contains(type);
+	}
+	
 	/**
 	 * Maximum number of passes to perform in collision processing
 	 * @return Max collision passes
@@ -51,4 +143,89 @@ public class BasicPhysicsModel {
 	public void setMaxCollisionPasses(int value) {
 		maxCollisionPasses = value;
 	}
+	
+	/*
+	 * Parse a single model entry
+	 */
+	private void parse(String[] tokens, Map<String, CustomCollisionListener> listeners) {
+		switch (tokens[0]) {
+			case "passes":
+				checkTokens(tokens, 2);
+				maxCollisionPasses = Integer.parseInt(tokens[1]);
+				break;
+				
+			case "type":
+				if (tokens.length != 5 && !(tokens.length == 6 && tokens[5].equals("static"))) {
+					throw new IllegalArgumentException("expected type <type> <restitution> <friction> <bounce|none> [static]");
+				}
+				
+				CollisionType defaultType = parseCollisionType(tokens[4]);
+				if (defaultType == CollisionType.CUSTOM) {
+					throw new IllegalArgumentException("default collision type cannot be custom");
+				}
+				
+				addTypeConfig(tokens[1], new CanvasObjectConfiguration(Double.parseDouble(tokens[2]), Double.parseDouble(tokens[3]), defaultType));
+				setStaticType(tokens[1], tokens.length == 6);
+				break;
+				
+			case "collide":
+				CanvasObjectConfiguration config = typeConfig.get(tokens[1]);
+				if (config == null) {
+					throw new IllegalArgumentException(String.format("type %s must be declared before its collisions", tokens[1]));
+				}
+				
+				switch (parseCollisionType(tokens[3])) {
+					case BOUNCE:
+						checkTokens(tokens, 5);
+						config.addCollisionConfig(tokens[2], CollisionTypeConfiguration.bounce(Double.parseDouble(tokens[4])));
+						break;
+						
+					case CUSTOM:
+						checkTokens(tokens, 5);
+						CustomCollisionListener listener = listeners.get(tokens[4]);
+						if (listener == null) {
+							throw new IllegalArgumentException(String.format("unknown custom collision listener: %s", tokens[4]));
+						}
+						config.addCollisionConfig(tokens[2], CollisionTypeConfiguration.custom(listener));
+						break;
+						
+					default:
+						checkTokens(tokens, 4);
+						config.addCollisionConfig(tokens[2], CollisionTypeConfiguration.none());
+						break;
+				}
+				break;
+				
+			default:
+				throw new IllegalArgumentException(String.format("unknown entry type: %s", tokens[0]));
+		}
+	}
+	
+	/*
+	 * Entries have a fixed number of tokens
+	 */
+	private static void checkTokens(String[] tokens, int count) {
+		if (tokens.length != count) {
+			throw new IllegalArgumentException(String.format("expected %d values but found %d", count - 1, tokens.length - 1));
+		}
+	}
+	
+	/*
+	 * Parse "bounce", "custom" or "none"
+	 */
+	private static CollisionType parseCollisionType(String token) {
+		switch (token) {
+			case "bounce":
+				return CollisionType.BOUNCE;
+				
+			case "custom":
+				return CollisionType.CUSTOM;
+				
+			case "none":
+				return CollisionType.NONE;
+				
+			default:
+				throw new IllegalArgumentException(String.format("expected bounce, custom or none but found %s", token));
+		}
+	}
 }
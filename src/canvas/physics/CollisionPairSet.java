@@ -0,0 +1,136 @@
+package canvas.physics;
+
+import java.util.Arrays;
+
+/**
+ * Candidate collision pairs for a single collision pass, de-duplicated by body id
+ * A body may span up to four grid regions, so the same pair is usually found more than once
+ *
+ * Small scenes use a triangular bitset over all id pairs (only dirty words are cleared between passes),
+ * which keeps pairs in discovery order. Scenes above PAIR_BITSET_MAX_BODIES collect pairs into a list
+ * which is sorted and made unique when the pass is complete.
+ */
+class CollisionPairSet
+{
+	private long[] pairBits;
+	private int[] dirtyWords;
+	private int dirtyCount;
+	private long[] pairs;		// (lower id << 32) | higher id
+	private int count;
+	private boolean sorted;
+	
+	protected static final int PAIR_BITSET_MAX_BODIES = 4096;
+	
+	/**
+	 * Constructor
+	 */
+	public CollisionPairSet() {
+		pairBits = new long[0];
+		dirtyWords = new int[16];
+		pairs = new long[64];
+	}
+	
+	/**
+	 * Prepare for a new pass
+	 * @param bodyCapacity Upper bound (exclusive) of body ids in this pass
+	 */
+	public void reset(int bodyCapacity) {
+		sorted = bodyCapacity > PAIR_BITSET_MAX_BODIES;
+		
+		// clear bits of the last pass in either mode, or a later pass back in bitset mode would skip those pairs
+		for (int i = 0; i < dirtyCount; i++) {
+			pairBits[dirtyWords[i]] = 0;
+		}
+		
+		if (!sorted) {
+			long bitCount = (long)bodyCapacity * (bodyCapacity - 1) / 2;
+			int words = (int)((bitCount + 63) >>> 6);
+			
+			if (words > pairBits.length) {
+				pairBits = new long[words];
+			}
+		}
+		
+		dirtyCount = 0;
+		count = 0;
+	}
+	
+	/**
+	 * Add a candidate pair
+	 * @param a Body id
+	 * @param b Body id
+	 */
+	public void add(int a, int b) {
+		int lo = Math.min(a, b);
+		int hi = Math.max(a, b);
+		
+		if (lo == hi) {
+			return;
+		}
+		
+		if (!sorted) {
+			long bit = ((long)hi * (hi - 1) / 2) + lo;
+			int word = (int)(bit >>> 6);
+			long mask = 1L << bit;
+			long current = pairBits[word];
+			
+			if ((current & mask) != 0) {
+				return;
+			}
+			
+			if (current == 0) {
+				if (dirtyCount == dirtyWords.length) {
+					dirtyWords = Arrays.copyOf(dirtyWords, dirtyCount * 2);
+				}
+				dirtyWords[dirtyCount++] = word;
+			}
+			pairBits[word] = current | mask;
+		}
+		
+		if (count == pairs.length) {
+			pairs = Arrays.copyOf(pairs, count * 2);
+		}
+		pairs[count++] = ((long)lo << 32) | hi;
+	}
+	
+	/**
+	 * Complete the pass, making pairs unique when collected as a list
+	 */
+	public void finish() {
+		if (!sorted || count < 2) {
+			return;
+		}
+		
+		Arrays.sort(pairs, 0, count);
+		int unique = 1;
+		for (int i = 1; i < count; i++) {
+			if (pairs[i] != pairs[unique - 1]) {
+				pairs[unique++] = pairs[i];
+			}
+		}
+		count = unique;
+	}
+	
+	/**
+	 * @return Number of unique pairs
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * @param i Pair index
+	 * @return Lower body id of pair
+	 */
+	public int getFirst(int i) {
+		return (int)(pairs[i] >>> 32);
+	}
+	
+	/**
+	 * @param i Pair index
+	 * @return Higher body id of pair
+	 */
+	public int getSecond(int i) {
+		return (int)pairs[i];
+	}
+}
@@ -0,0 +1,97 @@
+package canvas.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks CollisionPairSet across passes, including passes which switch between bitset and sorted mode
+ * A pair seen in one pass must be reported again by every later pass that adds it, whatever mode
+ * the passes in between used.
+ *
+ * Usage: CollisionPairSetCheck
+ * Exits with status 1 if any check fails.
+ */
+public class CollisionPairSetCheck {
+	private CollisionPairSet pairs;
+	private List<String> failures;
+	
+	private static final int SMALL_SCENE = 16;
+	private static final int LARGE_SCENE = CollisionPairSet.PAIR_BITSET_MAX_BODIES + 1;
+	
+	/**
+	 * Constructor
+	 */
+	public CollisionPairSetCheck() {
+		pairs = new CollisionPairSet();
+		failures = new ArrayList<String>();
+	}
+	
+	/**
+	 * Run every check
+	 * @return Descriptions of failed checks, empty if all passed
+	 */
+	public List<String> run() {
+		// bitset mode: duplicates are dropped
+		pass(SMALL_SCENE, 1, 2, 2, 1, 3, 4);
+		expect("bitset pass", 1, 2, 3, 4);
+		
+		// sorted mode: duplicates are dropped once the pass is finished
+		pass(LARGE_SCENE, 3, 4, 1, 2, 2, 1);
+		expect("sorted pass after bitset pass", 1, 2, 3, 4);
+		
+		// back in bitset mode, the pairs of the first bitset pass are reported again
+		pass(SMALL_SCENE, 2, 1, 4, 3);
+		expect("bitset pass after sorted pass", 1, 2, 3, 4);
+		
+		pass(SMALL_SCENE, 1, 2);
+		expect("second bitset pass", 1, 2);
+		
+		return failures;
+	}
+	
+	/**
+	 * Run the checks from the command line
+	 * @param args Unused
+	 */
+	public static void main(String[] args) {
+		List<String> failed = new CollisionPairSetCheck().run();
+		for (String failure : failed) {
+			System.out.println(failure);
+		}
+		
+		System.out.println(failed.isEmpty() ? "All checks passed" : String.format("%d checks failed", failed.size()));
+		if (!failed.isEmpty()) {
+			System.exit(1);
+		}
+	}
+	
+	/*
+	 * Run a pass over a scene of bodyCapacity ids, adding pairs given as consecutive ids
+	 */
+	private void pass(int bodyCapacity, int... ids) {
+		pairs.reset(bodyCapacity);
+		for (int i = 0; i < ids.length; i += 2) {
+			pairs.add(ids[i], ids[i + 1]);
+		}
+		pairs.finish();
+	}
+	
+	/*
+	 * Record a failure unless the last pass found exactly the expected pairs, given as consecutive (lower, higher) ids
+	 */
+	private void expect(String name, int... ids) {
+		List<String> found = new ArrayList<String>();
+		for (int i = 0; i < pairs.size(); i++) {
+			found.add(String.format("(%d, %d)", pairs.getFirst(i), pairs.getSecond(i)));
+		}
+		
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < ids.length; i += 2) {
+			expected.add(String.format("(%d, %d)", ids[i], ids[i + 1]));
+		}
+		
+		if (!found.equals(expected)) {
+			failures.add(String.format("%s: expected pairs %s, found %s", name, expected, found));
+		}
+	}
+}
@@ -27,4 +27,8 @@ public class CollisionTypeConfiguration {
 	public static CollisionTypeConfiguration custom(CustomCollisionListener listener) {
 		return new CollisionTypeConfiguration(CollisionType.CUSTOM, 0, listener);
 	}
+	
+	public static CollisionTypeConfiguration none() {
+		return new CollisionTypeConfiguration(CollisionType.NONE, 0, null);
+	}
 }
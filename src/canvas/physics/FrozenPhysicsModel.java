@@ -0,0 +1,310 @@
+package canvas.physics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, validated snapshot of a BasicPhysicsModel, see BasicPhysicsModel.freeze()
+ * Object types are numbered, and per type and per pair of types settings are held in flat arrays,
+ * so lookups are array reads. Instances never change, so they may be shared between threads and
+ * processors without locking.
+ */
+public final class FrozenPhysicsModel {
+	private final Map<String, Integer> typeIndex;
+	private final String[] types;
+	private final boolean[] configured;		// type has a CanvasObjectConfiguration
+	private final boolean[] staticType;
+	private final double[] friction;
+	private final CollisionType[] defaultCollisionType;
+	private final double[] defaultCoefficient;
+	private final CollisionType[] collisionType;		// [type * typeCount + otherType]
+	private final double[] coefficient;
+	private final CustomCollisionListener[] listener;
+	private final int maxCollisionPasses;
+	private final long fingerprint;			// see getFingerprint()
+	
+	public static final int NO_TYPE = -1;
+	
+	/**
+	 * Constructor
+	 * @param model Model to copy
+	 * @throws IllegalArgumentException if the model is not valid
+	 */
+	FrozenPhysicsModel(BasicPhysicsModel model) {
+		if (model.maxCollisionPasses < 1) {
+			throw new IllegalArgumentException(String.format("max collision passes must be at least 1, found %d", model.maxCollisionPasses));
+		}
+		maxCollisionPasses = model.maxCollisionPasses;
+		
+		// number every type with a configuration, then every type only named in one
+		Map<String, Integer> index = new HashMap<String, Integer>();
+		for (String type : model.typeConfig.keySet()) {
+			index.putIfAbsent(type, index.size());
+		}
+		for (CanvasObjectConfiguration config : model.typeConfig.values()) {
+			for (String other : config.collisionConfig.keySet()) {
+				index.putIfAbsent(other, index.size());
+			}
+		}
+		for (String type : model.staticTypes) {
+			index.putIfAbsent(type, index.size());
+		}
+		
+		int n = index.size();
+		typeIndex = Collections.unmodifiableMap(index);
+		types = new String[n];
+		configured = new boolean[n];
+		staticType = new boolean[n];
+		friction = new double[n];
+		defaultCollisionType = new CollisionType[n];
+		defaultCoefficient = new double[n];
+		collisionType = new CollisionType[n * n];
+		coefficient = new double[n * n];
+		listener = new CustomCollisionListener[n * n];
+		
+		for (Map.Entry<String, Integer> entry : index.entrySet()) {
+			String type = entry.getKey();
+			int t = entry.getValue();
+			CanvasObjectConfiguration config = model.typeConfig.get(type);
+			
+			types[t] = type;
+			staticType[t] = model.staticTypes.contains(type);
+			configured[t] = (config != null);
+			defaultCollisionType[t] = CollisionType.NONE;
+			
+			if (config != null) {
+				friction[t] = checkRange(config.frictionCoefficient, "friction", type);
+				defaultCollisionType[t] = config.defaultCollisionType;
+				defaultCoefficient[t] = checkRange(config.defaultCollisionCoefficient, "restitution", type);
+				
+				if (config.defaultCollisionType == CollisionType.CUSTOM) {
+					throw new IllegalArgumentException(String.format("default collision type of %s cannot be custom", type));
+				}
+			}
+		}
+		
+		for (int t = 0; t < n; t++) {
+			CanvasObjectConfiguration config = model.typeConfig.get(types[t]);
+			
+			for (int u = 0; u < n; u++) {
+				int pair = (t * n) + u;
+				CollisionTypeConfiguration pairConfig = (config == null) ? null : config.collisionConfig.get(types[u]);
+				
+				if (pairConfig == null) {
+					collisionType[pair] = defaultCollisionType[t];
+					coefficient[pair] = defaultCoefficient[t];
+					continue;
+				}
+				
+				String name = types[t] + "-->" + types[u];
+				if (pairConfig.collisionType == CollisionType.CUSTOM && pairConfig.customAction == null) {
+					throw new IllegalArgumentException(String.format("custom collision %s has no listener", name));
+				}
+				
+				collisionType[pair] = pairConfig.collisionType;
+				coefficient[pair] = checkRange(pairConfig.coefficient, "restitution", name);
+				listener[pair] = pairConfig.customAction;
+			}
+		}
+		
+		fingerprint = computeFingerprint();
+	}
+	
+	/**
+	 * Constructor
+	 * Copy of a model with new coefficients, sharing everything else
+	 */
+	private FrozenPhysicsModel(FrozenPhysicsModel src, double[] frictionCoefficients, double[] collisionCoefficients) {
+		typeIndex = src.typeIndex;
+		types = src.types;
+		configured = src.configured;
+		staticType = src.staticType;
+		friction = frictionCoefficients;
+		defaultCollisionType = src.defaultCollisionType;
+		defaultCoefficient = src.defaultCoefficient;
+		collisionType = src.collisionType;
+		coefficient = collisionCoefficients;
+		listener = src.listener;
+		maxCollisionPasses = src.maxCollisionPasses;
+		fingerprint = computeFingerprint();
+	}
+	
+	/**
+	 * Copy of this model with a different Coefficient of Friction for a type
+	 * @param type CanvasObject type
+	 * @param value Coefficient of Friction
+	 * @return FrozenPhysicsModel
+	 * @throws IllegalArgumentException if the type has no configuration or the value is outside 0 to 1
+	 */
+	public FrozenPhysicsModel withFriction(String type, double value) {
+		int t = getConfiguredType(type);
+		double[] frictionCoefficients = friction.clone();
+		frictionCoefficients[t] = checkRange(value, "friction", type);
+		
+		return new FrozenPhysicsModel(this, frictionCoefficients, coefficient);
+	}
+	
+	/**
+	 * Copy of this model with a different Coefficient of Restitution for a type colliding with another
+	 * @param type CanvasObject type
+	 * @param otherType CanvasObject type collided with
+	 * @param value Coefficient of Restitution
+	 * @return FrozenPhysicsModel
+	 * @throws IllegalArgumentException if either type is not in the model or the value is outside 0 to 1
+	 */
+	public FrozenPhysicsModel withCollisionCoefficient(String type, String otherType, double value) {
+		int t = getConfiguredType(type);
+		int u = getTypeIndex(otherType);
+		if (u == NO_TYPE) {
+			throw new IllegalArgumentException(String.format("Unknown type in physics model: %s", otherType));
+		}
+		
+		double[] collisionCoefficients = coefficient.clone();
+		collisionCoefficients[(t * types.length) + u] = checkRange(value, "restitution", type + "-->" + otherType);
+		
+		return new FrozenPhysicsModel(this, friction, collisionCoefficients);
+	}
+	
+	/**
+	 * Number for a CanvasObject type
+	 * @param type CanvasObject type (CanvasObject.getType())
+	 * @return Type number, or NO_TYPE if the model does not mention the type
+	 */
+	public int getTypeIndex(String type) {
+		Integer t = typeIndex.get(type);
+		return (t == null) ? NO_TYPE : t;
+	}
+	
+	/**
+	 * @return Number of types in the model
+	 */
+	public int getTypeCount() {
+		return types.length;
+	}
+	
+	/**
+	 * @param type Type number
+	 * @return CanvasObject type
+	 */
+	public String getTypeName(int type) {
+		return types[type];
+	}
+	
+	/**
+	 * Does a type have its own configuration, rather than only appearing as a collision partner?
+	 * @param type Type number
+	 * @return Boolean
+	 */
+	public boolean isConfigured(int type) {
+		return configured[type];
+	}
+	
+	/**
+	 * @param type Type number
+	 * @return Is the type static (immovable), see BasicPhysicsModel.setStaticType()
+	 */
+	public boolean isStatic(int type) {
+		return staticType[type];
+	}
+	
+	/**
+	 * @param type Type number
+	 * @return Coefficient of Friction for the type
+	 */
+	public double getFriction(int type) {
+		return friction[type];
+	}
+	
+	/**
+	 * Collision Type for a type colliding with another
+	 * @param type Type number
+	 * @param otherType Type number of object collided with, or NO_TYPE for the type's default
+	 * @return CollisionType
+	 */
+	public CollisionType getCollisionType(int type, int otherType) {
+		return (otherType == NO_TYPE) ? defaultCollisionType[type] : collisionType[(type * types.length) + otherType];
+	}
+	
+	/**
+	 * Coefficient of Restitution for a type colliding with another
+	 * @param type Type number
+	 * @param otherType Type number of object collided with, or NO_TYPE for the type's default
+	 * @return Coefficient of Restitution
+	 */
+	public double getCollisionCoefficient(int type, int otherType) {
+		return (otherType == NO_TYPE) ? defaultCoefficient[type] : coefficient[(type * types.length) + otherType];
+	}
+	
+	/**
+	 * Custom action handler for a type colliding with another
+	 * @param type Type number
+	 * @param otherType Type number of object collided with, or NO_TYPE
+	 * @return CustomCollisionListener, or null
+	 */
+	public CustomCollisionListener getCustomListener(int type, int otherType) {
+		return (otherType == NO_TYPE) ? null : listener[(type * types.length) + otherType];
+	}
+	
+	/**
+	 * Maximum number of passes to perform in collision processing
+	 * @return Max collision passes
+	 */
+	public int getMaxCollisionPasses() {
+		return maxCollisionPasses;
+	}
+	
+	/**
+	 * Fingerprint of the model's settings, for keying results simulated with it
+	 * Models with the same types, static types, coefficients, collision types and passes have the same
+	 * fingerprint; custom listeners are not compared, only which pairs have one
+	 * @return Fingerprint
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+	
+	/*
+	 * Hash of every setting, see getFingerprint()
+	 */
+	private long computeFingerprint() {
+		long h = maxCollisionPasses;
+		for (int t = 0; t < types.length; t++) {
+			h = (h * 31) + types[t].hashCode();
+			h = (h * 31) + (configured[t] ? 1 : 0) + (staticType[t] ? 2 : 0);
+			h = (h * 31) + Double.doubleToLongBits(friction[t]);
+			h = (h * 31) + defaultCollisionType[t].ordinal();
+			h = (h * 31) + Double.doubleToLongBits(defaultCoefficient[t]);
+		}
+		
+		for (int pair = 0; pair < collisionType.length; pair++) {
+			h = (h * 31) + collisionType[pair].ordinal();
+			h = (h * 31) + Double.doubleToLongBits(coefficient[pair]);
+		}
+		
+		return h;
+	}
+	
+	/*
+	 * Type number of a type with its own configuration
+	 */
+	private int getConfiguredType(String type) {
+		int t = getTypeIndex(type);
+		if (t == NO_TYPE || !configured[t]) {
+			throw new IllegalArgumentException(String.format("Type is not configured in physics model: %s", type));
+		}
+		
+		return t;
+	}
+	
+	/*
+	 * Coefficients are between 0 and 1
+	 */
+	private static double checkRange(double value, String name, String owner) {
+		if (!(value >= 0 && value <= 1)) {
+			throw new IllegalArgumentException(String.format("%s of %s must be between 0 and 1, found %s", name, owner, value));
+		}
+		
+		return value;
+	}
+}
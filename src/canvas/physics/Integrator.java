@@ -0,0 +1,53 @@
+package canvas.physics;
+
+/**
+ * Moves bodies by their movement vectors and applies friction, over primitive arrays
+ * (positions and velocities of the dynamic bodies in an update, gathered by BasicPhysicsCanvasProcessor)
+ *
+ * Each non-suspended body moves by its velocity, then keeps moving only if its speed is above REST_SPEED,
+ * with its velocity scaled by its friction coefficient; otherwise its velocity is set to zero.
+ */
+interface Integrator
+{
+	// bodies slower than this come to rest
+	public static final double REST_SPEED = 0.4;
+	
+	// implementation using jdk.incubator.vector, built separately from src-vector
+	public static final String VECTOR_INTEGRATOR = "canvas.physics.VectorIntegrator";
+	
+	/**
+	 * Integrate one update
+	 * @param x Position, x, updated in place
+	 * @param y Position, y, updated in place
+	 * @param vx Velocity, x, updated in place
+	 * @param vy Velocity, y, updated in place
+	 * @param friction Friction coefficient per body
+	 * @param suspended Suspended bodies neither move nor keep any velocity
+	 * @param count Number of bodies
+	 * @return True if any body is still moving
+	 */
+	public boolean integrate(double[] x, double[] y, double[] vx, double[] vy, double[] friction, boolean[] suspended, int count);
+	
+	/**
+	 * @return Name of implementation, for reports
+	 */
+	public String getName();
+	
+	/**
+	 * Create the fastest available implementation
+	 * The vector implementation is used when it was built and the jdk.incubator.vector module is present
+	 * (run with --add-modules jdk.incubator.vector), unless disabled with -Dcanvas.physics.scalar=true
+	 * @return Integrator
+	 */
+	public static Integrator create() {
+		if (!Boolean.getBoolean("canvas.physics.scalar")) {
+			try {
+				return (Integrator) Class.forName(VECTOR_INTEGRATOR).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// not built or module not present
+			}
+		}
+		
+		return new ScalarIntegrator();
+	}
+}
@@ -0,0 +1,117 @@
+package canvas.physics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times the scalar integrator against the one selected by Integrator.create(), and checks they agree
+ * Bodies start with random velocities, some suspended, and are integrated until all come to rest;
+ * each round restores the same starting state. Only integrate() is timed: in an update, copying positions and
+ * velocities between the objects and the arrays costs several times the integration itself.
+ * 
+ * Usage: IntegratorBenchmark [bodies] [rounds] [seed]
+ * Run with --add-modules jdk.incubator.vector to include the vector integrator.
+ */
+public class IntegratorBenchmark {
+	private double[] startX;
+	private double[] startY;
+	private double[] startVelocityX;
+	private double[] startVelocityY;
+	private double[] friction;
+	private boolean[] suspended;
+	private int count;
+	
+	// ratio of suspended bodies, e.g. balls captured by a pocket
+	private static final double SUSPENDED_RATIO = 0.05;
+	private static final double MAX_SPEED = 40;
+	private static final double MIN_FRICTION = 0.95;
+	private static final double MAX_FRICTION = 0.99;
+	
+	/**
+	 * Constructor
+	 * @param bodies Number of bodies
+	 * @param seed Seed for the starting state
+	 */
+	public IntegratorBenchmark(int bodies, long seed) {
+		Random random = new Random(seed);
+		count = bodies;
+		startX = new double[count];
+		startY = new double[count];
+		startVelocityX = new double[count];
+		startVelocityY = new double[count];
+		friction = new double[count];
+		suspended = new boolean[count];
+		
+		for (int i = 0; i < count; i++) {
+			startX[i] = random.nextDouble() * 1000;
+			startY[i] = random.nextDouble() * 1000;
+			startVelocityX[i] = (random.nextDouble() * 2 - 1) * MAX_SPEED;
+			startVelocityY[i] = (random.nextDouble() * 2 - 1) * MAX_SPEED;
+			friction[i] = MIN_FRICTION + (random.nextDouble() * (MAX_FRICTION - MIN_FRICTION));
+			suspended[i] = random.nextDouble() < SUSPENDED_RATIO;
+		}
+	}
+	
+	/**
+	 * Integrate until all bodies come to rest
+	 * @param integrator Integrator
+	 * @param rounds Number of times to repeat from the starting state
+	 * @return { final x, final y } of the last round
+	 */
+	public double[][] run(Integrator integrator, int rounds) {
+		double[] x = new double[count];
+		double[] y = new double[count];
+		double[] vx = new double[count];
+		double[] vy = new double[count];
+		
+		long updates = 0;
+		long start = System.nanoTime();
+		
+		for (int round = 0; round < rounds; round++) {
+			System.arraycopy(startX, 0, x, 0, count);
+			System.arraycopy(startY, 0, y, 0, count);
+			System.arraycopy(startVelocityX, 0, vx, 0, count);
+			System.arraycopy(startVelocityY, 0, vy, 0, count);
+			
+			while (integrator.integrate(x, y, vx, vy, friction, suspended, count)) {
+				updates++;
+			}
+			updates++;
+		}
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-20s %8d updates, %8.2f ns/body/update, %6.1f M bodies/s", 
+				integrator.getName(), updates, (seconds * 1e9) / (updates * count), (updates * count) / (seconds * 1e6)));
+		
+		return new double[][] { x, y };
+	}
+	
+	/**
+	 * Main
+	 * @param args [bodies] [rounds] [seed]
+	 */
+	public static void main(String[] args) {
+		int bodies = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		
+		IntegratorBenchmark benchmark = new IntegratorBenchmark(bodies, seed);
+		Integrator scalar = new ScalarIntegrator();
+		Integrator selected = Integrator.create();
+		System.out.println(String.format("%d bodies, %d rounds, selected integrator: %s", bodies, rounds, selected.getName()));
+		
+		// first pass of each warms up
+		benchmark.run(scalar, rounds);
+		double[][] expected = benchmark.run(scalar, rounds);
+		
+		if (!selected.getName().equals(scalar.getName())) {
+			benchmark.run(selected, rounds);
+			double[][] actual = benchmark.run(selected, rounds);
+			
+			if (!Arrays.equals(expected[0], actual[0]) || !Arrays.equals(expected[1], actual[1])) {
+				throw new IllegalStateException(String.format("%s results differ from scalar", selected.getName()));
+			}
+			System.out.println("Results identical");
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package canvas.physics;
+
+import java.util.Arrays;
+
+/**
+ * Groups the candidate pairs of a collision pass into islands, bodies linked through candidate pairs
+ * Built with union-find over the pairs; islands share no bodies, so they can be resolved independently.
+ *
+ * Islands are numbered in order of their first pair, and each island's pairs keep their order
+ * in the CollisionPairSet, so resolving every island in order gives the same result as resolving all pairs in order.
+ */
+class IslandSet
+{
+	private int[] parent;			// union-find forest over body ids, valid where stamp is current
+	private int[] stamp;
+	private int currentStamp;
+	private int[] islandOfRoot;		// island index per root body id, valid where islandStamp is current
+	private int[] islandStamp;
+	private int[] pairIsland;		// island index per pair
+	private int[] islandStart;		// pairs of island i are order[islandStart[i] .. islandStart[i + 1])
+	private int[] order;
+	private int islandCount;
+	
+	/**
+	 * Constructor
+	 */
+	public IslandSet() {
+		parent = new int[0];
+		stamp = new int[0];
+		islandOfRoot = new int[0];
+		islandStamp = new int[0];
+		pairIsland = new int[0];
+		islandStart = new int[1];
+		order = new int[0];
+	}
+	
+	/**
+	 * Group pairs into islands
+	 * @param pairs Candidate pairs, complete (see CollisionPairSet.finish())
+	 * @param bodyCapacity Upper bound (exclusive) of body ids
+	 */
+	public void build(CollisionPairSet pairs, int bodyCapacity) {
+		if (bodyCapacity > parent.length) {
+			parent = new int[bodyCapacity];
+			stamp = new int[bodyCapacity];
+			islandOfRoot = new int[bodyCapacity];
+			islandStamp = new int[bodyCapacity];
+			currentStamp = 0;
+		}
+		currentStamp++;
+		
+		int count = pairs.size();
+		for (int i = 0; i < count; i++) {
+			union(pairs.getFirst(i), pairs.getSecond(i));
+		}
+		
+		// number islands by first pair, and count pairs per island
+		if (count > pairIsland.length) {
+			pairIsland = new int[count];
+			order = new int[count];
+		}
+		if (count + 1 > islandStart.length) {
+			islandStart = new int[count + 1];
+		}
+		
+		islandCount = 0;
+		for (int i = 0; i < count; i++) {
+			int root = find(pairs.getFirst(i));
+			if (islandStamp[root] != currentStamp) {
+				islandStamp[root] = currentStamp;
+				islandOfRoot[root] = islandCount;
+				islandStart[islandCount++] = 0;
+			}
+			
+			int island = islandOfRoot[root];
+			pairIsland[i] = island;
+			islandStart[island]++;
+		}
+		
+		// prefix sums to start offsets, then place pairs in order
+		int offset = 0;
+		for (int island = 0; island < islandCount; island++) {
+			int size = islandStart[island];
+			islandStart[island] = offset;
+			offset += size;
+		}
+		islandStart[islandCount] = offset;
+		
+		int[] next = Arrays.copyOf(islandStart, islandCount);
+		for (int i = 0; i < count; i++) {
+			order[next[pairIsland[i]]++] = i;
+		}
+	}
+	
+	/**
+	 * @return Number of islands
+	 */
+	public int size() {
+		return islandCount;
+	}
+	
+	/**
+	 * @param island Island index
+	 * @return Position of the island's first pair, see getPair()
+	 */
+	public int getStart(int island) {
+		return islandStart[island];
+	}
+	
+	/**
+	 * @param island Island index
+	 * @return Position after the island's last pair
+	 */
+	public int getEnd(int island) {
+		return islandStart[island + 1];
+	}
+	
+	/**
+	 * @param position Position, from getStart() up to getEnd() of an island
+	 * @return Pair index in the CollisionPairSet
+	 */
+	public int getPair(int position) {
+		return order[position];
+	}
+	
+	/*
+	 * Root of a body's set, with path halving; a body seen for the first time this pass is its own root
+	 */
+	private int find(int id) {
+		if (stamp[id] != currentStamp) {
+			stamp[id] = currentStamp;
+			parent[id] = id;
+			return id;
+		}
+		
+		while (parent[id] != id) {
+			parent[id] = parent[parent[id]];
+			id = parent[id];
+		}
+		
+		return id;
+	}
+	
+	/*
+	 * Merge the sets of two bodies, keeping the lower root
+	 */
+	private void union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		
+		if (rootA < rootB) {
+			parent[rootB] = rootA;
+		} else if (rootB < rootA) {
+			parent[rootA] = rootB;
+		}
+	}
+}
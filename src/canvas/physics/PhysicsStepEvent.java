@@ -0,0 +1,39 @@
+package canvas.physics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for one BasicPhysicsCanvasProcessor.update()
+ * Steps normally take microseconds, so only slow steps are recorded by default;
+ * set canvas.PhysicsStep#threshold to 0 ms to record every step.
+ */
+@Name("canvas.PhysicsStep")
+@Label("Physics Step")
+@Category({ "Eightball", "Physics" })
+@Description("One physics update: collision passes, then integration")
+@StackTrace(false)
+@Threshold("1 ms")
+class PhysicsStepEvent extends jdk.jfr.Event {
+	// never committed, only asked isEnabled(), so updates allocate an event only while it is being recorded
+	static final PhysicsStepEvent PROBE = new PhysicsStepEvent();
+	
+	@Label("Collision Passes")
+	int passes;
+	
+	@Label("Moving Objects")
+	int bodies;
+	
+	@Label("Pairs Tested")
+	long pairs;
+	
+	@Label("Collisions")
+	long collisions;
+	
+	@Label("In Motion")
+	boolean inMotion;
+}
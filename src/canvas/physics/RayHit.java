@@ -0,0 +1,91 @@
+package canvas.physics;
+
+import canvas.CanvasObject;
+
+/**
+ * Result of a circle cast, see BasicPhysicsCanvasProcessor.castCircle()
+ */
+public final class RayHit {
+	private final double distance;
+	private final double x;
+	private final double y;
+	private final double normalX;
+	private final double normalY;
+	private final CanvasObject object;
+	
+	/**
+	 * Constructor
+	 * @param hitDistance Distance travelled along the ray to the point of contact
+	 * @param centerX X coordinate of the cast circle's center at contact
+	 * @param centerY Y coordinate of the cast circle's center at contact
+	 * @param nx Unit contact normal, x, pointing towards the cast circle
+	 * @param ny Unit contact normal, y
+	 * @param hitObject Object hit, or null for a wall
+	 */
+	public RayHit(double hitDistance, double centerX, double centerY, double nx, double ny, CanvasObject hitObject) {
+		distance = hitDistance;
+		x = centerX;
+		y = centerY;
+		normalX = nx;
+		normalY = ny;
+		object = hitObject;
+	}
+	
+	/**
+	 * @return Distance travelled along the ray to the point of contact
+	 */
+	public double getDistance() {
+		return distance;
+	}
+	
+	/**
+	 * @return X coordinate of the cast circle's center at contact (e.g. the ghost ball)
+	 */
+	public double getX() {
+		return x;
+	}
+	
+	/**
+	 * @return Y coordinate of the cast circle's center at contact
+	 */
+	public double getY() {
+		return y;
+	}
+	
+	/**
+	 * @return Unit contact normal, x, pointing from the object or wall towards the cast circle
+	 */
+	public double getNormalX() {
+		return normalX;
+	}
+	
+	/**
+	 * @return Unit contact normal, y
+	 */
+	public double getNormalY() {
+		return normalY;
+	}
+	
+	/**
+	 * @return Object hit, or null if the cast hit a wall
+	 */
+	public CanvasObject getObject() {
+		return object;
+	}
+	
+	/**
+	 * @return Did the cast hit a wall rather than an object?
+	 */
+	public boolean isWall() {
+		return object == null;
+	}
+	
+	/**
+	 * toString() override
+	 */
+	@Override
+	public String toString() {
+		return String.format("RayHit(%.1f at %.1f,%.1f, normal %.2f,%.2f, %s)", distance, x, y, normalX, normalY,
+				isWall() ? "wall" : object);
+	}
+}
@@ -0,0 +1,45 @@
+package canvas.physics;
+
+/**
+ * Integrator with a plain loop, always available
+ */
+class ScalarIntegrator implements Integrator
+{
+	/**
+	 * See Integrator
+	 */
+	@Override
+	public boolean integrate(double[] x, double[] y, double[] vx, double[] vy, double[] friction, boolean[] suspended, int count) {
+		boolean moving = false;
+		
+		for (int i = 0; i < count; i++) {
+			if (suspended[i]) {
+				vx[i] = 0;
+				vy[i] = 0;
+				continue;
+			}
+			
+			x[i] += vx[i];
+			y[i] += vy[i];
+			
+			if (Math.sqrt((vx[i] * vx[i]) + (vy[i] * vy[i])) > REST_SPEED) {
+				vx[i] *= friction[i];
+				vy[i] *= friction[i];
+				moving = true;
+			} else {
+				vx[i] = 0;
+				vy[i] = 0;
+			}
+		}
+		
+		return moving;
+	}
+	
+	/**
+	 * See Integrator
+	 */
+	@Override
+	public String getName() {
+		return "scalar";
+	}
+}
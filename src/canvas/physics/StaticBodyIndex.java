@@ -0,0 +1,201 @@
+package canvas.physics;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+import canvas.CanvasObject;
+
+/**
+ * Uniform grid over bodies of static physics types (see BasicPhysicsModel.setStaticType())
+ * Built once when the set of static bodies changes, then only queried for dynamic bodies moving near them
+ *
+ * Each static body is indexed by the union of its bounds and its collision area,
+ * which need not lie inside the canvas (e.g. pockets beyond the rails).
+ */
+class StaticBodyIndex
+{
+	private CanvasObject[] indexed;
+	private int indexedCount;
+	private double originX;
+	private double originY;
+	private double cellSize;
+	private int numRows;
+	private int numCols;
+	private int[][] cells;
+	private int[] cellCounts;
+	private int[] queryStamp;		// last query which returned each static, by position in indexed
+	private int currentQuery;
+	private int[] results;
+	private int resultCount;
+	
+	private static final int MAX_CELLS = 1 << 16;
+	
+	/**
+	 * Constructor
+	 */
+	public StaticBodyIndex() {
+		indexed = new CanvasObject[0];
+		indexedCount = 0;
+		results = new int[8];
+		numRows = 0;
+		numCols = 0;
+	}
+	
+	/**
+	 * Does the index already hold exactly these bodies?
+	 * @param statics Static bodies found in this update
+	 * @param count Number of static bodies
+	 * @return T/F
+	 */
+	public boolean matches(CanvasObject[] statics, int count) {
+		if (count != indexedCount) {
+			return false;
+		}
+		
+		for (int i = 0; i < count; i++) {
+			if (statics[i] != indexed[i]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * (Re)build the index
+	 * @param statics Static bodies
+	 * @param count Number of static bodies
+	 * @param preferredCellSize Cell size, normally a small multiple of the dynamic object size
+	 */
+	public void build(CanvasObject[] statics, int count, double preferredCellSize) {
+		indexed = Arrays.copyOf(statics, count);
+		indexedCount = count;
+		queryStamp = new int[count];
+		currentQuery = 0;
+		
+		if (count == 0) {
+			numRows = 0;
+			numCols = 0;
+			return;
+		}
+		
+		Rectangle2D[] extents = new Rectangle2D[count];
+		Rectangle2D all = null;
+		for (int i = 0; i < count; i++) {
+			Rectangle2D extent = statics[i].getBounds().createUnion(statics[i].getAreaForCollision().getBounds2D());
+			extents[i] = extent;
+			all = (all == null) ? extent : all.createUnion(extent);
+		}
+		
+		originX = all.getX();
+		originY = all.getY();
+		cellSize = Math.max(preferredCellSize, 1);
+		while (cellCount(all) > MAX_CELLS) {
+			cellSize *= 2;
+		}
+		
+		numCols = Math.max((int)Math.ceil(all.getWidth() / cellSize), 1);
+		numRows = Math.max((int)Math.ceil(all.getHeight() / cellSize), 1);
+		cells = new int[numRows * numCols][];
+		cellCounts = new int[numRows * numCols];
+		
+		for (int i = 0; i < count; i++) {
+			Rectangle2D extent = extents[i];
+			int col0 = clampCol(extent.getMinX());
+			int col1 = clampCol(extent.getMaxX());
+			int row0 = clampRow(extent.getMinY());
+			int row1 = clampRow(extent.getMaxY());
+			
+			for (int row = row0; row <= row1; row++) {
+				for (int col = col0; col <= col1; col++) {
+					addToCell((row * numCols) + col, i);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Find static bodies whose indexed region may overlap a rectangle
+	 * Results are unique and valid until the next query
+	 * @param minX Min X of query region
+	 * @param minY Min Y of query region
+	 * @param maxX Max X of query region
+	 * @param maxY Max Y of query region
+	 * @return Number of results, see getResult()
+	 */
+	public int query(double minX, double minY, double maxX, double maxY) {
+		resultCount = 0;
+		if (indexedCount == 0 || maxX < originX || maxY < originY ||
+				minX > originX + (numCols * cellSize) || minY > originY + (numRows * cellSize)) {
+			return 0;
+		}
+		
+		currentQuery++;
+		int col0 = clampCol(minX);
+		int col1 = clampCol(maxX);
+		int row0 = clampRow(minY);
+		int row1 = clampRow(maxY);
+		
+		for (int row = row0; row <= row1; row++) {
+			for (int col = col0; col <= col1; col++) {
+				int cell = (row * numCols) + col;
+				int[] members = cells[cell];
+				
+				for (int m = 0, n = cellCounts[cell]; m < n; m++) {
+					int i = members[m];
+					if (queryStamp[i] != currentQuery) {
+						queryStamp[i] = currentQuery;
+						if (resultCount == results.length) {
+							results = Arrays.copyOf(results, resultCount * 2);
+						}
+						results[resultCount++] = i;
+					}
+				}
+			}
+		}
+		
+		return resultCount;
+	}
+	
+	/**
+	 * @param i Result index from last query
+	 * @return Static body
+	 */
+	public CanvasObject getResult(int i) {
+		return indexed[results[i]];
+	}
+	
+	/**
+	 * @return Number of indexed static bodies
+	 */
+	public int size() {
+		return indexedCount;
+	}
+	
+	/*
+	 * Number of cells required to cover a region at the current cell size
+	 */
+	private long cellCount(Rectangle2D region) {
+		return (long)Math.ceil(region.getWidth() / cellSize) * (long)Math.ceil(region.getHeight() / cellSize);
+	}
+	
+	/*
+	 * Add static (by position in indexed) to a cell
+	 */
+	private void addToCell(int cell, int i) {
+		if (cells[cell] == null) {
+			cells[cell] = new int[2];
+		} else if (cellCounts[cell] == cells[cell].length) {
+			cells[cell] = Arrays.copyOf(cells[cell], cellCounts[cell] * 2);
+		}
+		cells[cell][cellCounts[cell]++] = i;
+	}
+	
+	private int clampCol(double x) {
+		return Math.min(Math.max((int)Math.floor((x - originX) / cellSize), 0), numCols - 1);
+	}
+	
+	private int clampRow(double y) {
+		return Math.min(Math.max((int)Math.floor((y - originY) / cellSize), 0), numRows - 1);
+	}
+}
@@ -0,0 +1,253 @@
+package canvas.physics;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.vecmath.Tuple2i;
+import javax.vecmath.Vector2d;
+
+import canvas.Canvas;
+import canvas.CanvasObject;
+
+/**
+ * Stress scene for the generic canvas: a Canvas filled with bouncing circular particles of mixed sizes
+ * Steps the processor directly, without rendering, and reports steps per second, candidate pairs tested
+ * and bytes allocated per step (by the stepping thread, not pool workers).
+ * 
+ * Usage: StressScene [particles] [steps] [threads] [min size] [max size] [expected count] [mode] [seed]
+ * Mode is sequential, regions or islands (see BasicPhysicsCanvasProcessor.setParallelNarrowphase());
+ * an expected count below the number of particles exercises the automatic grid resize.
+ */
+public class StressScene {
+	private Canvas canvas;
+	private BasicPhysicsCanvasProcessor processor;
+	private int particleCount;
+	
+	public static final String PARTICLE_TYPE = "Particle";
+	
+	// fraction of the canvas covered by particles
+	private static final double FILL_RATIO = 0.15;
+	private static final double MAX_SPEED = 8;
+	private static final double FRICTION = 0.999;
+	private static final double RESTITUTION = 0.9;
+	private static final int REPORT_INTERVAL = 100;
+	
+	/**
+	 * Constructor
+	 * @param particles Number of particles
+	 * @param minSize Smallest particle diameter
+	 * @param maxSize Largest particle diameter
+	 * @param expectedCount Object count given to the processor's initialize()
+	 * @param seed Seed for sizes, positions and velocities
+	 */
+	public StressScene(int particles, int minSize, int maxSize, int expectedCount, long seed) {
+		Random random = new Random(seed);
+		particleCount = particles;
+		
+		double meanSize = (minSize + maxSize) / 2.0;
+		int side = (int)Math.ceil(Math.sqrt((particles * meanSize * meanSize) / FILL_RATIO));
+		Rectangle bounds = new Rectangle(0, 0, side, side);
+		
+		processor = new BasicPhysicsCanvasProcessor(createModel());
+		processor.initialize(bounds, new HashMap<Integer, Set<Tuple2i>>(), 
+				new Dimension((int)meanSize, (int)meanSize), expectedCount);
+		
+		canvas = new Canvas(processor);
+		canvas.setCanvasBounds(bounds);
+		
+		for (int i = 0; i < particles; i++) {
+			int size = minSize + random.nextInt(maxSize - minSize + 1);
+			Particle p = new Particle(size);
+			p.setLocation(new Point2D.Double(random.nextDouble() * (side - size), random.nextDouble() * (side - size)));
+			p.setMovementVector(new Vector2d((random.nextDouble() * 2 - 1) * MAX_SPEED, (random.nextDouble() * 2 - 1) * MAX_SPEED));
+			canvas.add(p);
+		}
+	}
+	
+	/**
+	 * @return Processor stepping the scene
+	 */
+	public BasicPhysicsCanvasProcessor getProcessor() {
+		return processor;
+	}
+	
+	/**
+	 * Step the scene, printing a report line every REPORT_INTERVAL steps and a summary
+	 * @param steps Number of updates
+	 */
+	public void run(int steps) {
+		com.sun.management.ThreadMXBean threads = getThreadBean();
+		long threadId = Thread.currentThread().getId();
+		
+		long start = System.nanoTime();
+		long startPairs = processor.getPairsTested();
+		long startBytes = (threads != null) ? threads.getThreadAllocatedBytes(threadId) : 0;
+		
+		long intervalStart = start;
+		long intervalPairs = startPairs;
+		long intervalBytes = startBytes;
+		
+		for (int step = 1; step <= steps; step++) {
+			processor.update(canvas.getObjects());
+			
+			if (step % REPORT_INTERVAL == 0 || step == steps) {
+				long now = System.nanoTime();
+				long pairs = processor.getPairsTested();
+				long bytes = (threads != null) ? threads.getThreadAllocatedBytes(threadId) : 0;
+				int intervalSteps = (step % REPORT_INTERVAL == 0) ? REPORT_INTERVAL : step % REPORT_INTERVAL;
+				
+				System.out.println(String.format("step %6d: %8.1f steps/s, %10d pairs/step, %10d bytes/step, %d grid regions", 
+						step, intervalSteps / ((now - intervalStart) / 1e9), (pairs - intervalPairs) / intervalSteps, 
+						(bytes - intervalBytes) / intervalSteps, processor.getGridRegionCount()));
+				
+				intervalStart = now;
+				intervalPairs = pairs;
+				intervalBytes = bytes;
+			}
+		}
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long bytes = (threads != null) ? threads.getThreadAllocatedBytes(threadId) - startBytes : -1;
+		System.out.println(String.format("%d particles, %d steps in %.2f s: %.1f steps/s, %d pairs/step, %d bytes/step, " + 
+				"%d collisions, %d grid resizes", particleCount, steps, seconds, steps / seconds, 
+				(processor.getPairsTested() - startPairs) / steps, bytes / steps, processor.getCollisionCount(), 
+				processor.getGridResizeCount()));
+	}
+	
+	/**
+	 * Main
+	 * @param args [particles] [steps] [threads] [min size] [max size] [expected count] [mode] [seed]
+	 */
+	public static void main(String[] args) {
+		int particles = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int minSize = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+		int maxSize = args.length > 4 ? Integer.parseInt(args[4]) : 12;
+		int expected = args.length > 5 ? Integer.parseInt(args[5]) : particles;
+		String mode = args.length > 6 ? args[6] : "islands";
+		long seed = args.length > 7 ? Long.parseLong(args[7]) : 1;
+		
+		if (minSize < 1 || maxSize < minSize) {
+			throw new IllegalArgumentException(String.format("Invalid particle sizes: %d to %d", minSize, maxSize));
+		}
+		
+		StressScene scene = new StressScene(particles, minSize, maxSize, expected, seed);
+		BasicPhysicsCanvasProcessor processor = scene.getProcessor();
+		
+		switch (mode) {
+			case "sequential":
+				break;
+				
+			case "regions":
+			case "islands":
+				processor.setParallelNarrowphase(1, new ForkJoinPool(threads));
+				processor.setParallelByIslands(mode.equals("islands"));
+				break;
+				
+			default:
+				throw new IllegalArgumentException(String.format("Unknown mode: %s", mode));
+		}
+		
+		System.out.println(String.format("%d particles (%d-%d px), %s narrowphase on %d threads, %s integrator", 
+				particles, minSize, maxSize, mode, threads, processor.getIntegratorName()));
+		scene.run(steps);
+	}
+	
+	/*
+	 * Particles bounce off each other and the canvas walls
+	 */
+	private static BasicPhysicsModel createModel() {
+		BasicPhysicsModel model = new BasicPhysicsModel();
+		
+		CanvasObjectConfiguration config = new CanvasObjectConfiguration(RESTITUTION, FRICTION, CollisionType.BOUNCE);
+		config.addCollisionConfig(PARTICLE_TYPE, CollisionTypeConfiguration.bounce(RESTITUTION));
+		config.addCollisionConfig(Canvas.canvasObjectType, CollisionTypeConfiguration.bounce(RESTITUTION));
+		model.addTypeConfig(PARTICLE_TYPE, config);
+		
+		return model;
+	}
+	
+	/*
+	 * HotSpot's ThreadMXBean, for per-thread allocation, or null if unavailable
+	 */
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+			if (threads.isThreadAllocatedMemorySupported()) {
+				threads.setThreadAllocatedMemoryEnabled(true);
+				return threads;
+			}
+		}
+		
+		return null;
+	}
+	
+	/*
+	 * Circular particle, colliding as a circle inscribed in its bounds
+	 */
+	private static class Particle extends CanvasObject
+	{
+		public Particle(int size) {
+			super();
+			setSize(new Dimension(size, size));
+			setMass(size * size);
+		}
+		
+		@Override
+		public String getType() {
+			return PARTICLE_TYPE;
+		}
+		
+		@Override
+		public boolean isCollisionPending(CanvasObject o) {
+			Rectangle2D.Double a = getBounds();
+			Rectangle2D.Double b = o.getBounds();
+			Vector2d aMove = getMovementVector();
+			Vector2d bMove = o.getMovementVector();
+			double radii = (a.width + b.width) / 2;
+			double dx = ((a.x + aMove.x) + (a.width / 2.0)) - ((b.x + bMove.x) + (b.width / 2.0));
+			double dy = ((a.y + aMove.y) + (a.height / 2.0)) - ((b.y + bMove.y) + (b.height / 2.0));
+			
+			return (dx * dx) + (dy * dy) < radii * radii;
+		}
+		
+		@Override
+		public Area getOverlapWith(CanvasObject o) {
+			return mayOverlap(o) ? super.getOverlapWith(o) : new Area();
+		}
+		
+		@Override
+		public boolean mayOverlap(CanvasObject o) {
+			Rectangle2D a = getBounds();
+			Rectangle2D b = o.getBounds();
+			double radii = (a.getWidth() + b.getWidth()) / 2;
+			double dx = a.getCenterX() - b.getCenterX();
+			double dy = a.getCenterY() - b.getCenterY();
+			
+			return (dx * dx) + (dy * dy) < radii * radii;
+		}
+		
+		@Override
+		public CanvasObject clone() {
+			return null;
+		}
+		
+		@Override
+		public void draw(Graphics2D g) {
+			Rectangle2D b = getBounds();
+			g.setColor(getColor());
+			g.fillOval((int)b.getX(), (int)b.getY(), (int)b.getWidth(), (int)b.getHeight());
+		}
+	}
+}
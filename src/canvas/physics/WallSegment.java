@@ -0,0 +1,63 @@
+package canvas.physics;
+
+/**
+ * A straight wall segment, e.g. one piece of a table cushion or pocket jaw
+ * Objects colliding with Canvas.canvasObjectType bounce off wall segments set on the processor
+ * (see BasicPhysicsCanvasProcessor.setWallSegments())
+ */
+public class WallSegment {
+	protected final double x1;
+	protected final double y1;
+	protected final double x2;
+	protected final double y2;
+	
+	/**
+	 * Constructor
+	 * @param startX X coordinate of start point
+	 * @param startY Y coordinate of start point
+	 * @param endX X coordinate of end point
+	 * @param endY Y coordinate of end point
+	 */
+	public WallSegment(double startX, double startY, double endX, double endY) {
+		x1 = startX;
+		y1 = startY;
+		x2 = endX;
+		y2 = endY;
+	}
+	
+	/**
+	 * @return X coordinate of start point
+	 */
+	public double getX1() {
+		return x1;
+	}
+	
+	/**
+	 * @return Y coordinate of start point
+	 */
+	public double getY1() {
+		return y1;
+	}
+	
+	/**
+	 * @return X coordinate of end point
+	 */
+	public double getX2() {
+		return x2;
+	}
+	
+	/**
+	 * @return Y coordinate of end point
+	 */
+	public double getY2() {
+		return y2;
+	}
+	
+	/**
+	 * toString() override
+	 */
+	@Override
+	public String toString() {
+		return String.format("WallSegment(%.1f,%.1f -> %.1f,%.1f)", x1, y1, x2, y2);
+	}
+}
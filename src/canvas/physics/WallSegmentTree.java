@@ -0,0 +1,150 @@
+package canvas.physics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounding volume hierarchy over wall segments
+ * Built top-down by splitting on the longer axis of each node at the median segment midpoint,
+ * and stored flattened in primitive arrays so queries do not allocate
+ */
+class WallSegmentTree
+{
+	private WallSegment[] segments;		// reordered so each leaf covers a contiguous range
+	private double[] minX;
+	private double[] minY;
+	private double[] maxX;
+	private double[] maxY;
+	private int[] left;					// child node, or -1 for a leaf
+	private int[] right;
+	private int[] first;				// leaf segment range [first, first + count)
+	private int[] count;
+	private int nodeCount;
+	private int[] stack;
+	private int[] results;
+	private int resultCount;
+	
+	private static final int LEAF_SIZE = 2;
+	
+	/**
+	 * Constructor
+	 * @param walls Wall segments to index
+	 */
+	public WallSegmentTree(List<WallSegment> walls) {
+		segments = walls.toArray(new WallSegment[walls.size()]);
+		
+		int maxNodes = Math.max((2 * segments.length) - 1, 1);
+		minX = new double[maxNodes];
+		minY = new double[maxNodes];
+		maxX = new double[maxNodes];
+		maxY = new double[maxNodes];
+		left = new int[maxNodes];
+		right = new int[maxNodes];
+		first = new int[maxNodes];
+		count = new int[maxNodes];
+		results = new int[Math.max(segments.length, 1)];
+		nodeCount = 0;
+		
+		int depth = build(0, segments.length);
+		stack = new int[Math.max(depth * 2, 4)];
+	}
+	
+	/**
+	 * Find segments whose bounding box overlaps a rectangle
+	 * Results are valid until the next query
+	 * @return Number of results, see getResult()
+	 */
+	public int query(double qMinX, double qMinY, double qMaxX, double qMaxY) {
+		resultCount = 0;
+		if (segments.length == 0) {
+			return 0;
+		}
+		
+		int top = 0;
+		stack[top++] = 0;
+		
+		while (top > 0) {
+			int node = stack[--top];
+			if (qMaxX < minX[node] || qMinX > maxX[node] || qMaxY < minY[node] || qMinY > maxY[node]) {
+				continue;
+			}
+			
+			if (left[node] < 0) {
+				for (int i = first[node], end = first[node] + count[node]; i < end; i++) {
+					results[resultCount++] = i;
+				}
+			} else {
+				stack[top++] = left[node];
+				stack[top++] = right[node];
+			}
+		}
+		
+		return resultCount;
+	}
+	
+	/**
+	 * @param i Result index from last query
+	 * @return Wall segment
+	 */
+	public WallSegment getResult(int i) {
+		return segments[results[i]];
+	}
+	
+	/**
+	 * @param i Result index from last query
+	 * @return Stable index of segment within the tree
+	 */
+	public int getResultIndex(int i) {
+		return results[i];
+	}
+	
+	/**
+	 * @return Number of segments
+	 */
+	public int size() {
+		return segments.length;
+	}
+	
+	/*
+	 * Build node over segments [from, to), returns depth of subtree
+	 */
+	private int build(int from, int to) {
+		int node = nodeCount++;
+		double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+		double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+		
+		for (int i = from; i < to; i++) {
+			WallSegment s = segments[i];
+			x0 = Math.min(x0, Math.min(s.x1, s.x2));
+			y0 = Math.min(y0, Math.min(s.y1, s.y2));
+			x1 = Math.max(x1, Math.max(s.x1, s.x2));
+			y1 = Math.max(y1, Math.max(s.y1, s.y2));
+		}
+		
+		minX[node] = x0;
+		minY[node] = y0;
+		maxX[node] = x1;
+		maxY[node] = y1;
+		
+		if (to - from <= LEAF_SIZE) {
+			left[node] = -1;
+			right[node] = -1;
+			first[node] = from;
+			count[node] = to - from;
+			return 1;
+		}
+		
+		// split at the median midpoint along the longer axis
+		boolean splitX = (x1 - x0) >= (y1 - y0);
+		Arrays.sort(segments, from, to, (a, b) -> splitX ?
+				Double.compare(a.x1 + a.x2, b.x1 + b.x2) : Double.compare(a.y1 + a.y2, b.y1 + b.y2));
+		
+		int mid = (from + to) >>> 1;
+		left[node] = nodeCount;
+		int leftDepth = build(from, mid);
+		right[node] = nodeCount;
+		int rightDepth = build(mid, to);
+		
+		return 1 + Math.max(leftDepth, rightDepth);
+	}
+}
@@ -0,0 +1,229 @@
+package canvas.replay;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only view of a replay file written by ReplayWriter
+ * Any frame is reconstructed from its keyframe plus at most (keyframe interval - 1) delta frames,
+ * located through the index, so seeking to a frame or shot never replays from the start.
+ * 
+ * File format, little endian:
+ *   header (64 bytes): magic "EBREPLAY", int version, int keyframe interval, int frame count, int shot count,
+ *     int id capacity, int reserved, long end of frame data, long index offset (0 if the writer did not close)
+ *   frames: byte kind (0 delta, 1 keyframe, 2 keyframe starting a shot), int size of entries in bytes, entries of
+ *     either (short id | PLACE, int x, int y), the location, ABSENT once the object is gone,
+ *     or (short id, short dx, short dy), the movement since the previous frame
+ *   index: int start frame per shot, then per frame: long offset, int keyframe
+ * Locations are fixed point, in 1/QUANTA_PER_PIXEL pixels. Keyframes hold only locations; delta frames hold
+ * movements, and locations for objects which appeared, disappeared or moved too far for a short.
+ */
+public class ReplayArchive {
+	private MappedByteBuffer data;
+	private int keyframeInterval;
+	private int frameCount;
+	private int idCapacity;
+	private int[] shotStarts;
+	private long[] frameOffsets;
+	private int[] frameKeyframes;
+	
+	protected static final byte[] MAGIC = { 'E', 'B', 'R', 'E', 'P', 'L', 'A', 'Y' };
+	protected static final int VERSION = 2;
+	protected static final int HEADER_SIZE = 64;
+	protected static final int VERSION_OFFSET = 8;
+	protected static final int INTERVAL_OFFSET = 12;
+	protected static final int FRAME_COUNT_OFFSET = 16;
+	protected static final int SHOT_COUNT_OFFSET = 20;
+	protected static final int ID_CAPACITY_OFFSET = 24;
+	protected static final int DATA_END_OFFSET = 32;
+	protected static final int INDEX_OFFSET = 40;
+	protected static final byte DELTA_FRAME = 0;
+	protected static final byte KEYFRAME = 1;
+	protected static final byte SHOT_KEYFRAME = 2;
+	protected static final int FRAME_HEADER_SIZE = 5;
+	protected static final int PLACE_ENTRY_SIZE = 10;
+	protected static final int MOVE_ENTRY_SIZE = 6;
+	protected static final int PLACE = 1 << 15;			// flags a location entry in the id
+	protected static final int MAX_IDS = PLACE;
+	protected static final int ABSENT = Integer.MIN_VALUE;
+	protected static final float QUANTA_PER_PIXEL = 256;
+	
+	/**
+	 * Constructor
+	 * @param file Replay file
+	 * @throws IOException if the file cannot be read or is not a replay
+	 */
+	public ReplayArchive(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			data.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		byte[] magic = new byte[MAGIC.length];
+		if (data.capacity() < HEADER_SIZE) {
+			throw new IOException(String.format("%s: not a replay file", file));
+		}
+		data.get(0, magic);
+		if (!Arrays.equals(magic, MAGIC) || data.getInt(VERSION_OFFSET) != VERSION) {
+			throw new IOException(String.format("%s: not a replay file", file));
+		}
+		
+		keyframeInterval = data.getInt(INTERVAL_OFFSET);
+		frameCount = data.getInt(FRAME_COUNT_OFFSET);
+		idCapacity = data.getInt(ID_CAPACITY_OFFSET);
+		shotStarts = new int[data.getInt(SHOT_COUNT_OFFSET)];
+		frameOffsets = new long[frameCount];
+		frameKeyframes = new int[frameCount];
+		
+		long indexOffset = data.getLong(INDEX_OFFSET);
+		if (indexOffset > 0) {
+			readIndex((int)indexOffset);
+		} else {
+			rebuildIndex();
+		}
+	}
+	
+	/**
+	 * @return Number of frames
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * @return Number of shots
+	 */
+	public int getShotCount() {
+		return shotStarts.length;
+	}
+	
+	/**
+	 * @param shot Shot index
+	 * @return First frame of the shot
+	 */
+	public int getShotStart(int shot) {
+		return shotStarts[shot];
+	}
+	
+	/**
+	 * @param frame Frame index
+	 * @return Shot containing the frame, or -1 if before the first shot
+	 */
+	public int getShotOf(int frame) {
+		int i = Arrays.binarySearch(shotStarts, frame);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		
+		// several shots may start on the same frame if nothing was recorded in between
+		while (i + 1 < shotStarts.length && shotStarts[i + 1] == frame) {
+			i++;
+		}
+		
+		return i;
+	}
+	
+	/**
+	 * @return One more than the largest object id recorded
+	 */
+	public int getIdCapacity() {
+		return idCapacity;
+	}
+	
+	/**
+	 * @return Maximum number of frames between keyframes
+	 */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+	
+	/**
+	 * Reconstruct object locations at a frame
+	 * @param frame Frame index
+	 * @param x Location per object id, at least getIdCapacity() long; NaN if the object is absent
+	 * @param y Location per object id
+	 */
+	public void readFrame(int frame, float[] x, float[] y) {
+		for (int f = frameKeyframes[frame]; f <= frame; f++) {
+			applyFrame(f, x, y);
+		}
+	}
+	
+	/**
+	 * Apply a single frame on top of the locations at the previous frame
+	 * Locations are multiples of 1/QUANTA_PER_PIXEL, so adding movements to them is exact in float (below 65536 pixels)
+	 * @param frame Frame index
+	 * @param x Location per object id
+	 * @param y Location per object id
+	 */
+	public void applyFrame(int frame, float[] x, float[] y) {
+		int p = (int)frameOffsets[frame];
+		int end = p + FRAME_HEADER_SIZE + data.getInt(p + 1);
+		
+		if (data.get(p) != DELTA_FRAME) {
+			Arrays.fill(x, 0, idCapacity, Float.NaN);
+			Arrays.fill(y, 0, idCapacity, Float.NaN);
+		}
+		
+		for (p += FRAME_HEADER_SIZE; p < end; ) {
+			int id = data.getShort(p) & 0xFFFF;
+			
+			if ((id & PLACE) != 0) {
+				id &= ~PLACE;
+				int placeX = data.getInt(p + Short.BYTES);
+				int placeY = data.getInt(p + Short.BYTES + Integer.BYTES);
+				x[id] = (placeX == ABSENT) ? Float.NaN : placeX / QUANTA_PER_PIXEL;
+				y[id] = (placeX == ABSENT) ? Float.NaN : placeY / QUANTA_PER_PIXEL;
+				p += PLACE_ENTRY_SIZE;
+			} else {
+				x[id] += data.getShort(p + Short.BYTES) / QUANTA_PER_PIXEL;
+				y[id] += data.getShort(p + (2 * Short.BYTES)) / QUANTA_PER_PIXEL;
+				p += MOVE_ENTRY_SIZE;
+			}
+		}
+	}
+	
+	/*
+	 * Load shot and frame index written by ReplayWriter.close()
+	 */
+	private void readIndex(int p) {
+		for (int i = 0; i < shotStarts.length; i++, p += Integer.BYTES) {
+			shotStarts[i] = data.getInt(p);
+		}
+		
+		for (int i = 0; i < frameCount; i++, p += Long.BYTES + Integer.BYTES) {
+			frameOffsets[i] = data.getLong(p);
+			frameKeyframes[i] = data.getInt(p + Long.BYTES);
+		}
+	}
+	
+	/*
+	 * Writer did not close: recover the frame index by scanning frames
+	 */
+	private void rebuildIndex() {
+		int p = HEADER_SIZE;
+		int keyframe = 0;
+		int shots = 0;
+		int[] starts = new int[frameCount];
+		
+		for (int i = 0; i < frameCount; i++) {
+			frameOffsets[i] = p;
+			byte kind = data.get(p);
+			if (kind != DELTA_FRAME) {
+				keyframe = i;
+			}
+			if (kind == SHOT_KEYFRAME) {
+				starts[shots++] = i;
+			}
+			frameKeyframes[i] = keyframe;
+			p += FRAME_HEADER_SIZE + data.getInt(p + 1);
+		}
+		
+		shotStarts = Arrays.copyOf(starts, shots);
+	}
+}
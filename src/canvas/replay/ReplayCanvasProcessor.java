@@ -0,0 +1,137 @@
+package canvas.replay;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import javax.vecmath.Tuple2i;
+
+import canvas.CanvasObject;
+import canvas.CanvasProcessor;
+
+/**
+ * Plays back a ReplayArchive in a Canvas instead of simulating
+ * Each update moves the playback position by the current speed, in frames, which may be fractional or negative,
+ * and places every object (matched by CanvasObject.getId()) at its recorded location.
+ * Objects absent from the frame are suspended.
+ */
+public class ReplayCanvasProcessor implements CanvasProcessor
+{
+	private ReplayArchive archive;
+	private float[] x;
+	private float[] y;
+	private double position;
+	private int frame;
+	private double speed;
+	
+	/**
+	 * Constructor
+	 * @param replay Archive to play, positioned at the first frame
+	 */
+	public ReplayCanvasProcessor(ReplayArchive replay) {
+		archive = replay;
+		x = new float[archive.getIdCapacity()];
+		y = new float[archive.getIdCapacity()];
+		speed = 1;
+		frame = -1;
+		seekFrame(0);
+	}
+	
+	/**
+	 * Nothing to initialize, geometry comes from the recording
+	 * See CanvasProcessor
+	 */
+	public boolean initialize(Rectangle bounds, Map<Integer, Set<Tuple2i>> holes, Dimension objectSize, int objectCount) {
+		return true;
+	}
+	
+	/**
+	 * Advance playback and place objects
+	 * See CanvasProcessor
+	 * @return True while playback can continue in the current direction
+	 */
+	public boolean update(Collection<CanvasObject> objects) {
+		if (archive.getFrameCount() == 0) {
+			return false;
+		}
+		
+		position = Math.max(0, Math.min(archive.getFrameCount() - 1, position + speed));
+		moveTo((int)position);
+		
+		for (CanvasObject o : objects) {
+			int id = o.getId();
+			if (id >= 0 && id < x.length && !Float.isNaN(x[id])) {
+				o.setLocation(new Point2D.Double(x[id], y[id]));
+				o.setSuspended(false);
+			} else {
+				o.setSuspended(true);
+			}
+		}
+		
+		return (speed > 0 && frame < archive.getFrameCount() - 1) || (speed < 0 && frame > 0);
+	}
+	
+	/**
+	 * @param framesPerUpdate Playback speed; 1 is real time, negative plays backwards, 0 pauses
+	 */
+	public void setSpeed(double framesPerUpdate) {
+		speed = framesPerUpdate;
+	}
+	
+	/**
+	 * @return Playback speed, frames per update
+	 */
+	public double getSpeed() {
+		return speed;
+	}
+	
+	/**
+	 * Jump to a frame, applied at the next update
+	 * @param target Frame index
+	 */
+	public void seekFrame(int target) {
+		position = Math.max(0, Math.min(archive.getFrameCount() - 1, target)) - speed;
+	}
+	
+	/**
+	 * Jump to the start of a shot, applied at the next update
+	 * @param shot Shot index
+	 */
+	public void seekShot(int shot) {
+		seekFrame(archive.getShotStart(Math.max(0, Math.min(archive.getShotCount() - 1, shot))));
+	}
+	
+	/**
+	 * @return Frame currently shown
+	 */
+	public int getFrame() {
+		return frame;
+	}
+	
+	/**
+	 * @return Archive being played
+	 */
+	public ReplayArchive getArchive() {
+		return archive;
+	}
+	
+	/*
+	 * Reconstruct locations at a frame, incrementally when playing forward one frame at a time
+	 */
+	private void moveTo(int target) {
+		if (target == frame) {
+			return;
+		}
+		
+		if (frame >= 0 && target == frame + 1) {
+			archive.applyFrame(target, x, y);
+		} else {
+			archive.readFrame(target, x, y);
+		}
+		
+		frame = target;
+	}
+}
@@ -0,0 +1,295 @@
+package canvas.replay;
+
+import java.awt.geom.Point2D;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+import canvas.CanvasObject;
+
+/**
+ * Records CanvasObject positions, one frame per update, to a memory-mapped replay file
+ * Frames store only objects that moved, appeared or disappeared since the previous frame (keyed by CanvasObject.getId()),
+ * except keyframes, which store every object: one every keyframe interval and one at the start of each shot.
+ * Locations are quantized to 1/256 pixel; a moving object is stored as its movement since the previous frame,
+ * in quanta, so deltas stay exact and never drift.
+ * The header is kept current after every frame so an archive survives a crash; the frame and shot index
+ * is written by close(). See ReplayArchive for the file format.
+ */
+public class ReplayWriter implements Closeable {
+	private FileChannel channel;
+	private MappedByteBuffer data;
+	private long position;
+	private int keyframeInterval;
+	private int frameCount;
+	private int lastKeyframe;
+	private boolean forceKeyframe;
+	private boolean shotPending;
+	private int[] shotStarts;
+	private int shotCount;
+	private long[] frameOffsets;
+	private int[] frameKeyframes;
+	private int[] lastX;				// last recorded location per id, in quanta, ABSENT if absent
+	private int[] lastY;
+	private int[] seenStamp;			// frame in which each id was last seen
+	private int idCapacity;
+	
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+	
+	private static final int INITIAL_MAPPING = 1 << 20;
+	
+	/**
+	 * Constructor
+	 * @param file Replay file, created or replaced
+	 * @param interval Maximum number of frames between keyframes
+	 * @throws IOException if the file cannot be created
+	 */
+	public ReplayWriter(Path file, int interval) throws IOException {
+		if (interval < 1) {
+			throw new IllegalArgumentException(String.format("Invalid keyframe interval: %d", interval));
+		}
+		
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, 
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		keyframeInterval = interval;
+		position = ReplayArchive.HEADER_SIZE;
+		forceKeyframe = true;
+		shotStarts = new int[16];
+		frameOffsets = new long[1024];
+		frameKeyframes = new int[1024];
+		lastX = new int[0];
+		lastY = new int[0];
+		seenStamp = new int[0];
+		
+		map(INITIAL_MAPPING);
+		writeHeader(0);
+	}
+	
+	/**
+	 * Mark the start of a shot
+	 * The next frame is a keyframe, so viewers can seek straight to it
+	 */
+	public void beginShot() {
+		if (shotCount == shotStarts.length) {
+			shotStarts = Arrays.copyOf(shotStarts, shotCount * 2);
+		}
+		
+		shotStarts[shotCount++] = frameCount;
+		forceKeyframe = true;
+		shotPending = true;
+	}
+	
+	/**
+	 * Append a frame with the current location of each object
+	 * @param objects Objects in canvas, all with ids
+	 * @throws IOException if the file cannot be extended
+	 */
+	public void record(Collection<CanvasObject> objects) throws IOException {
+		boolean keyframe = forceKeyframe || (frameCount - lastKeyframe) >= keyframeInterval;
+		int stamp = frameCount + 1;
+		
+		// worst case: every object, plus removal of every id not seen
+		ensureIds(objects);
+		ensureSpace(ReplayArchive.FRAME_HEADER_SIZE + ((long)(objects.size() + idCapacity) * ReplayArchive.PLACE_ENTRY_SIZE));
+		
+		long frameStart = position;
+		position += ReplayArchive.FRAME_HEADER_SIZE;
+		
+		for (CanvasObject o : objects) {
+			int id = o.getId();
+			Point2D location = o.getLocation();
+			int x = quantize(location.getX());
+			int y = quantize(location.getY());
+			seenStamp[id] = stamp;
+			
+			if (keyframe || lastX[id] == ReplayArchive.ABSENT) {
+				putPlace(id, x, y);
+			} else if (x != lastX[id] || y != lastY[id]) {
+				putMove(id, x, y);
+			}
+		}
+		
+		// objects no longer present: keyframes just leave them out, deltas record the removal
+		for (int id = 0; id < idCapacity; id++) {
+			if (seenStamp[id] != stamp && lastX[id] != ReplayArchive.ABSENT) {
+				if (!keyframe) {
+					putPlace(id, ReplayArchive.ABSENT, ReplayArchive.ABSENT);
+				}
+				lastX[id] = ReplayArchive.ABSENT;
+				lastY[id] = ReplayArchive.ABSENT;
+			}
+		}
+		
+		byte kind = shotPending ? ReplayArchive.SHOT_KEYFRAME : (keyframe ? ReplayArchive.KEYFRAME : ReplayArchive.DELTA_FRAME);
+		data.put((int)frameStart, kind);
+		data.putInt((int)frameStart + 1, (int)(position - frameStart) - ReplayArchive.FRAME_HEADER_SIZE);
+		
+		if (keyframe) {
+			lastKeyframe = frameCount;
+			forceKeyframe = false;
+			shotPending = false;
+		}
+		
+		if (frameCount == frameOffsets.length) {
+			frameOffsets = Arrays.copyOf(frameOffsets, frameCount * 2);
+			frameKeyframes = Arrays.copyOf(frameKeyframes, frameCount * 2);
+		}
+		frameOffsets[frameCount] = frameStart;
+		frameKeyframes[frameCount] = lastKeyframe;
+		frameCount++;
+		
+		writeHeader(0);
+	}
+	
+	/**
+	 * @return Number of frames recorded
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * Write the index and close the file
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		
+		long indexOffset = position;
+		ensureSpace(((long)shotCount * Integer.BYTES) + ((long)frameCount * (Long.BYTES + Integer.BYTES)));
+		
+		for (int i = 0; i < shotCount; i++) {
+			data.putInt((int)position, shotStarts[i]);
+			position += Integer.BYTES;
+		}
+		
+		for (int i = 0; i < frameCount; i++) {
+			data.putLong((int)position, frameOffsets[i]);
+			data.putInt((int)position + Long.BYTES, frameKeyframes[i]);
+			position += Long.BYTES + Integer.BYTES;
+		}
+		
+		writeHeader(indexOffset);
+		data.force();
+		data = null;
+		
+		channel.truncate(position);
+		channel.close();
+		channel = null;
+	}
+	
+	/*
+	 * Append a location entry, x and y in quanta or ABSENT
+	 */
+	private void putPlace(int id, int x, int y) {
+		int p = (int)position;
+		data.putShort(p, (short)(id | ReplayArchive.PLACE));
+		data.putInt(p + Short.BYTES, x);
+		data.putInt(p + Short.BYTES + Integer.BYTES, y);
+		position += ReplayArchive.PLACE_ENTRY_SIZE;
+		
+		lastX[id] = x;
+		lastY[id] = y;
+	}
+	
+	/*
+	 * Append a movement entry from the last recorded location, or a location entry if the movement does not fit a short
+	 */
+	private void putMove(int id, int x, int y) {
+		int dx = x - lastX[id];
+		int dy = y - lastY[id];
+		if (dx != (short)dx || dy != (short)dy) {
+			putPlace(id, x, y);
+			return;
+		}
+		
+		int p = (int)position;
+		data.putShort(p, (short)id);
+		data.putShort(p + Short.BYTES, (short)dx);
+		data.putShort(p + (2 * Short.BYTES), (short)dy);
+		position += ReplayArchive.MOVE_ENTRY_SIZE;
+		
+		lastX[id] = x;
+		lastY[id] = y;
+	}
+	
+	/*
+	 * Location in quanta
+	 */
+	private static int quantize(double value) {
+		return (int)Math.round(value * ReplayArchive.QUANTA_PER_PIXEL);
+	}
+	
+	/*
+	 * Update header, indexOffset is 0 until closed
+	 */
+	private void writeHeader(long indexOffset) {
+		data.put(0, ReplayArchive.MAGIC);
+		data.putInt(ReplayArchive.VERSION_OFFSET, ReplayArchive.VERSION);
+		data.putInt(ReplayArchive.INTERVAL_OFFSET, keyframeInterval);
+		data.putInt(ReplayArchive.FRAME_COUNT_OFFSET, frameCount);
+		data.putInt(ReplayArchive.SHOT_COUNT_OFFSET, shotCount);
+		data.putInt(ReplayArchive.ID_CAPACITY_OFFSET, idCapacity);
+		data.putLong(ReplayArchive.DATA_END_OFFSET, indexOffset > 0 ? indexOffset : position);
+		data.putLong(ReplayArchive.INDEX_OFFSET, indexOffset);
+	}
+	
+	/*
+	 * Grow per-id state to cover all object ids
+	 */
+	private void ensureIds(Collection<CanvasObject> objects) {
+		int maxId = -1;
+		for (CanvasObject o : objects) {
+			if (o.getId() == CanvasObject.NO_ID) {
+				throw new IllegalStateException(String.format("Object has no id: %s", o));
+			}
+			maxId = Math.max(maxId, o.getId());
+		}
+		
+		if (maxId >= ReplayArchive.MAX_IDS) {
+			throw new IllegalStateException(String.format("Object id %d is too large to record", maxId));
+		}
+		
+		if (maxId >= idCapacity) {
+			int capacity = maxId + 1;
+			lastX = Arrays.copyOf(lastX, capacity);
+			lastY = Arrays.copyOf(lastY, capacity);
+			seenStamp = Arrays.copyOf(seenStamp, capacity);
+			Arrays.fill(lastX, idCapacity, capacity, ReplayArchive.ABSENT);
+			Arrays.fill(lastY, idCapacity, capacity, ReplayArchive.ABSENT);
+			idCapacity = capacity;
+		}
+	}
+	
+	/*
+	 * Make sure the mapping covers another count bytes, remapping a larger region if needed
+	 */
+	private void ensureSpace(long count) throws IOException {
+		long required = position + count;
+		if (required <= data.capacity()) {
+			return;
+		}
+		
+		if (required > Integer.MAX_VALUE) {
+			throw new IOException("Replay file is full");
+		}
+		
+		map((int)Math.min(Integer.MAX_VALUE, Math.max(required, 2L * data.capacity())));
+	}
+	
+	/*
+	 * Map the first size bytes of the file
+	 */
+	private void map(int size) throws IOException {
+		data = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		data.order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
@@ -0,0 +1,24 @@
+package eightball;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a ball sinking into a pocket, see PocketCaptureListener
+ */
+@Name("eightball.BallCapture")
+@Label("Ball Capture")
+@Category({ "Eightball", "Game" })
+@StackTrace(false)
+class BallCaptureEvent extends jdk.jfr.Event {
+	// never committed, only asked isEnabled(), so captures allocate an event only while it is being recorded
+	static final BallCaptureEvent PROBE = new BallCaptureEvent();
+	
+	@Label("Ball")
+	int ball;
+	
+	@Label("Pocket")
+	String pocket;
+}
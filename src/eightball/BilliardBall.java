@@ -9,7 +9,10 @@ import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
 
+import javax.vecmath.Vector2d;
+
 import canvas.CanvasObject;
+import canvas.RenderQuality;
 import eightball.enums.*;
 
 
@@ -23,6 +26,17 @@ public class BilliardBall extends CanvasObject
 	
 	public static Dimension ballSize = new Dimension(25, 25);
 	public static String canvasObjectType = "BilliardBall";
+	
+	// results of compareCircles()
+	private static final int CIRCLES_APART = -1;
+	private static final int CIRCLES_UNDECIDED = 0;
+	private static final int CIRCLES_INTERSECT = 1;
+	
+	// Ellipse2D outlines a circle with cubic curves, which lie up to 0.03% of the radius outside it,
+	// and Area finds curve intersections to within a small tolerance. Circle tests closer than this
+	// to touching are left to the Areas.
+	private static final double CURVE_TOLERANCE = 0.001;		// fraction of the sum of the radii
+	private static final double AREA_TOLERANCE = 0.01;			// pixels
 		
 	/**
 	 * Default constructor
@@ -88,6 +102,66 @@ public class BilliardBall extends CanvasObject
 		return new Area(new Ellipse2D.Double(bounds.getX()-1, bounds.getY()-1, bounds.getWidth()+2, bounds.getHeight()+2));
 	}
 	
+	/**
+	 * Collision with another ball is pending if their collision areas (next position, 1px margin) intersect
+	 * Decided from the circles where that gives the same answer as intersecting the Areas, see compareCircles()
+	 */
+	@Override
+	public boolean isCollisionPending(CanvasObject o) {
+		if (!isCircle() || !(o instanceof BilliardBall) || !((BilliardBall) o).isCircle()) {
+			return super.isCollisionPending(o);
+		}
+		
+		// centers after the next move, as getNextBounds() but without allocating
+		Rectangle2D.Double a = getBounds();
+		Rectangle2D.Double b = o.getBounds();
+		Vector2d aMove = getMovementVector();
+		Vector2d bMove = o.getMovementVector();
+		double radii = ((a.width + b.width) / 2) + 2;
+		double dx = ((a.x + aMove.x) + (a.width / 2.0)) - ((b.x + bMove.x) + (b.width / 2.0));
+		double dy = ((a.y + aMove.y) + (a.height / 2.0)) - ((b.y + bMove.y) + (b.height / 2.0));
+		
+		switch (compareCircles(dx, dy, radii)) {
+			case CIRCLES_APART:
+				return false;
+			case CIRCLES_INTERSECT:
+				return true;
+			default:
+				return super.isCollisionPending(o);
+		}
+	}
+	
+	/**
+	 * Overlap with another ball
+	 * Skips the Area intersection when the circles are apart, which is almost always
+	 */
+	@Override
+	public Area getOverlapWith(CanvasObject o) {
+		if (!mayOverlap(o)) {
+			return new Area();
+		}
+		
+		return super.getOverlapWith(o);
+	}
+	
+	/**
+	 * Balls may overlap unless their circles are certainly apart, see compareCircles()
+	 */
+	@Override
+	public boolean mayOverlap(CanvasObject o) {
+		if (!isCircle() || !(o instanceof BilliardBall) || !((BilliardBall) o).isCircle()) {
+			return true;
+		}
+		
+		Rectangle2D.Double a = getBounds();
+		Rectangle2D.Double b = o.getBounds();
+		double radii = (a.width + b.width) / 2;
+		double dx = (a.x + (a.width / 2.0)) - (b.x + (b.width / 2.0));
+		double dy = (a.y + (a.height / 2.0)) - (b.y + (b.height / 2.0));
+		
+		return compareCircles(dx, dy, radii) != CIRCLES_APART;
+	}
+	
 	/** 
 	 * Clone implementation
 	 */
@@ -117,7 +191,7 @@ public class BilliardBall extends CanvasObject
 		
 		Rectangle2D bounds = getBounds();
 		Ellipse2D outline = new Ellipse2D.Double(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
-		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		RenderQuality quality = RenderQuality.of(g);
 		
 		switch (ball.getType()) {
 			case NONE:				
@@ -131,34 +205,69 @@ public class BilliardBall extends CanvasObject
 				g.setColor(ball.getColor());
 				g.fill(outline);
 				
-				g.setColor(Color.WHITE);
-				g.fill(new Ellipse2D.Double(bounds.getX() + 6, bounds.getY() + 6, bounds.getWidth() - 12, bounds.getHeight() - 12));
-				
-				drawBallNumber(g);
+				if (quality != RenderQuality.MINIMAL) {
+					g.setColor(Color.WHITE);
+					g.fill(new Ellipse2D.Double(bounds.getX() + 6, bounds.getY() + 6, bounds.getWidth() - 12, bounds.getHeight() - 12));
+					drawBallNumber(g, quality);
+				}
 				break;
 				
 			case STRIPE:
 				g.setColor(Color.WHITE);
 				g.fill(outline);
 				
+				g.setColor(ball.getColor());
+				if (quality == RenderQuality.MINIMAL) {
+					// band inside the outline, rather than intersecting the two
+					g.fill(new Rectangle2D.Double(bounds.getX() + 3, bounds.getY() + 6, bounds.getWidth() - 6, bounds.getHeight() - 12));
+					break;
+				}
+				
 				Area stripe = new Area(outline);
 				Rectangle2D band = new Rectangle2D.Double(bounds.getX(), bounds.getY() + 4, bounds.getWidth(), bounds.getHeight() - 8);
 				stripe.intersect(new Area(band));
-				g.setColor(ball.getColor());
 				g.fill(stripe);
 				
 				g.setColor(Color.WHITE);
 				g.fill(new Ellipse2D.Double(bounds.getX() + 6, bounds.getY() + 6, bounds.getWidth() - 12, bounds.getHeight() - 12));
-				drawBallNumber(g);
+				drawBallNumber(g, quality);
 
 				break;
 		}
 	}
 	
 	/*
-	 * Helper method for ball drawing
+	 * Is the ball a circle rather than an ellipse, so that compareCircles() applies
+	 */
+	private boolean isCircle() {
+		return bounds.width == bounds.height;
+	}
+	
+	/*
+	 * Compare the distance between two circle centers with the sum of their radii, as intersecting their Areas would
+	 * Returns CIRCLES_APART or CIRCLES_INTERSECT where the Areas certainly agree, else CIRCLES_UNDECIDED
+	 */
+	private static int compareCircles(double dx, double dy, double radii) {
+		double distanceSquared = (dx * dx) + (dy * dy);
+		double outer = (radii * (1 + CURVE_TOLERANCE)) + AREA_TOLERANCE;
+		double inner = radii - AREA_TOLERANCE;
+		
+		if (distanceSquared > outer * outer) {
+			return CIRCLES_APART;
+		} else if (inner > 0 && distanceSquared < inner * inner) {
+			return CIRCLES_INTERSECT;
+		}
+		
+		return CIRCLES_UNDECIDED;
+	}
+	
+	/*
+	 * Helper method for ball drawing, antialiased only at full quality
 	 */
-	private void drawBallNumber(Graphics2D g) {
+	private void drawBallNumber(Graphics2D g, RenderQuality quality) {
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, (quality == RenderQuality.FULL) ? 
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+		
 		Font currentFont = g.getFont();
 		Font newFont = currentFont.deriveFont(10F);
 		g.setFont(newFont);
@@ -1,7 +1,6 @@
 package eightball;
 
 import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
@@ -9,6 +8,9 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -18,8 +20,9 @@ import javax.imageio.ImageIO;
 import javax.vecmath.Vector2d;
 
 import canvas.Canvas;
-import canvas.CanvasObject;
-import canvas.physics.*;
+import canvas.physics.BasicPhysicsCanvasProcessor;
+import canvas.physics.RayHit;
+import canvas.replay.ReplayWriter;
 import eightball.enums.*;
 import eightball.events.*;
 
@@ -30,30 +33,40 @@ import eightball.events.*;
 @SuppressWarnings("serial")
 public class BilliardsTable extends Canvas 
 {
+	private TableLayout layout;
 	private BufferedImage background;
 	private BilliardBall cueBall;
 	private BilliardsTableUIProcessor uiProcessor;
 	private boolean shotInProgress;
-	private List<BilliardBall> captured;
+	private PocketCaptureListener pocketListener;
+	private BasicPhysicsCanvasProcessor physics;
+	private Path physicsModelPath;
+	private ReplayWriter replayWriter;
+	private ShotEvent shotEvent;		// Flight Recorder event for the shot in progress, null if not recording
 	private Map<TableEventType, List<TableEventListener>> eventListeners;
 	private boolean paused;
 	
-	private static final Color canvasColor = new Color(0x0, 0xCC, 0x33);
-	
-	// configuration constants for physics processor
-	private static final int MAX_COLLISION_PASSES = 5;
-	private static final double COR_BALL_COLLISIONS = 0.965; // coefficient of restitution: ball<-->ball
-	private static final double COR_WALL_COLLISIONS = 0.74; // coefficient of restitution: ball-->rail
-	private static final double COEFFICIENT_BALL_FRICTION = 0.98; // coefficient of friction: rolling ball
+	protected static final Color canvasColor = new Color(0x0, 0xCC, 0x33);
 	
 	/**
 	 * Constructor
+	 * Uses the standard table layout
 	 */
 	public BilliardsTable() {
-		setPreferredSize(new Dimension(900, 525));
-		setCanvasBounds(new Rectangle(100, 89, 700, 351)); // 100,89 to 800,440
+		this(loadDefaultLayout());
+	}
+	
+	/**
+	 * Constructor
+	 * @param tableLayout Table geometry
+	 */
+	public BilliardsTable(TableLayout tableLayout) {
+		layout = tableLayout;
+		setPreferredSize(layout.getSize());
+		setCanvasBounds(layout.getCanvasBounds());
 		setAnimationDelay(30); // 30 ms
 		eventListeners = new HashMap<TableEventType, List<TableEventListener>>();
+		pocketListener = new PocketCaptureListener();
 		
 		initializeCanvasObjects();
 		createPhysicsModel();
@@ -63,12 +76,14 @@ public class BilliardsTable extends Canvas
 		uiProcessor = new BilliardsTableUIProcessor(this);
 						
 		// load background
-		try {
-			// image adapted from source here:
-			// http://www.bezzmedia.com/swfspot/tutorials/flash8/8_Ball_Pool
-			background = ImageIO.read(new File("resources/table.png"));	
-		} catch (IOException e) {
-			System.out.println("Unable to load background...");
+		if (layout.getBackground() != null) {
+			try {
+				// image adapted from source here:
+				// http://www.bezzmedia.com/swfspot/tutorials/flash8/8_Ball_Pool
+				background = ImageIO.read(new File(layout.getBackground()));	
+			} catch (IOException e) {
+				System.out.println("Unable to load background...");
+			}
 		}
 	}
 		
@@ -91,6 +106,7 @@ public class BilliardsTable extends Canvas
 		uiProcessor.reset();
 		uiProcessor.setCueBall(cueBall);
 		shotInProgress = false;
+		shotEvent = null;
 		repaint();
 	}
 	
@@ -157,6 +173,77 @@ public class BilliardsTable extends Canvas
 		}
 	}
 	
+	/**
+	 * @return Table geometry
+	 */
+	public TableLayout getTableLayout() {
+		return layout;
+	}
+	
+	/**
+	 * Record every shot to a replay
+	 * @param writer ReplayWriter, or null to stop recording
+	 */
+	public void setReplayWriter(ReplayWriter writer) {
+		replayWriter = writer;
+	}
+	
+	/**
+	 * Load a physics model file, replacing the model from the next shot
+	 * A shot in progress finishes with the model it began with
+	 * @param path Model file, see BasicPhysicsModel for the format
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file is not a valid model
+	 */
+	public void loadPhysicsModel(Path path) throws IOException {
+		physics.setModel(TablePhysics.loadModel(path, pocketListener).freeze());
+		physicsModelPath = path;
+	}
+	
+	/**
+	 * Load the last physics model file again, e.g. after editing coefficients
+	 * Keeps the current model if the file cannot be read or is not valid
+	 */
+	public void reloadPhysicsModel() {
+		try {
+			loadPhysicsModel(physicsModelPath);
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println(String.format("Unable to load physics model... %s", e.getMessage()));
+		}
+	}
+	
+	/**
+	 * Show a suggested shot while aiming
+	 * @param enabled T/F
+	 */
+	public void setHintsEnabled(boolean enabled) {
+		uiProcessor.setHintsEnabled(enabled);
+	}
+	
+	/**
+	 * Rules used to score suggested shots
+	 * @param rules EightBallRules, or null for single player
+	 */
+	public void setHintRules(EightBallRules rules) {
+		uiProcessor.setHintRules(rules);
+	}
+	
+	/**
+	 * Find the first ball or cushion a ball would touch rolling in a straight line
+	 * Only valid while no shot is in progress
+	 * @param ball Ball to cast
+	 * @param dirX Direction, x
+	 * @param dirY Direction, y
+	 * @return RayHit, or null if nothing is hit
+	 */
+	public RayHit castBall(BilliardBall ball, double dirX, double dirY) {
+		Point2D center = ball.getCenterPoint();
+		double radius = ball.getSize().getWidth() / 2;
+		double maxDistance = Math.hypot(canvasBounds.width, canvasBounds.height);
+		
+		return physics.castCircle(objects, ball, center.getX(), center.getY(), dirX, dirY, radius, maxDistance);
+	}
+	
 	/**
 	 * Get the cue ball
 	 * @return BilliardBall (BallType.CUE)
@@ -199,9 +286,15 @@ public class BilliardsTable extends Canvas
 	@Override
 	protected void update() {
 		shotInProgress = processor.update(objects);
+		recordReplayFrame();
+		if (shotEvent != null) {
+			shotEvent.steps++;
+		}
+		
 		if (!shotInProgress) {
 			stop();
 
+			List<BilliardBall> captured = pocketListener.getCaptured();
 			if (captured.size() > 0) {
 				for (BilliardBall ball : captured) {
 					fireTableEvent(TableEventType.BALL_CAPTURED, ball);
@@ -217,7 +310,13 @@ public class BilliardsTable extends Canvas
 				}
 			}
 			
-			captured.clear();
+			if (shotEvent != null) {
+				shotEvent.captured = captured.size();
+				shotEvent.commit();
+				shotEvent = null;
+			}
+			
+			pocketListener.clear();
 			fireTableEvent(TableEventType.SHOT_ENDED);
 		}
 		
@@ -230,32 +329,54 @@ public class BilliardsTable extends Canvas
 	@Override
 	public void start() {
 		super.start();
+		
+		// unpausing restarts the timer mid-shot
+		if (replayWriter != null && !shotInProgress) {
+			replayWriter.beginShot();
+			recordReplayFrame();
+		}
+		
+		if (!shotInProgress) {
+			beginShotEvent();
+		}
+		
 		fireTableEvent(TableEventType.SHOT_BEGIN);
 	}
 	
 	/*
-	 * Create the BasicPhysicsModel
-	 * and create a BasicPhysicsCanvasProcessor for the table
+	 * Start timing a shot for Flight Recorder, if the event is enabled
+	 */
+	private void beginShotEvent() {
+		if (ShotEvent.PROBE.isEnabled()) {
+			shotEvent = new ShotEvent();
+			shotEvent.speed = cueBall.getMovementVector().length();
+			shotEvent.begin();
+		} else {
+			shotEvent = null;
+		}
+	}
+	
+	/*
+	 * Append the current ball positions to the replay, if recording
+	 */
+	private void recordReplayFrame() {
+		if (replayWriter != null) {
+			try {
+				replayWriter.record(objects);
+			} catch (IOException e) {
+				System.out.println("Unable to record replay...");
+				replayWriter = null;
+			}
+		}
+	}
+	
+	/*
+	 * Create a BasicPhysicsCanvasProcessor for the table
 	 */
 	private void createPhysicsModel() {
-		BasicPhysicsModel model = new BasicPhysicsModel();
-		model.setMaxCollisionPasses(MAX_COLLISION_PASSES);
-		
-		// Billiard Ball model
-		CanvasObjectConfiguration ballConfig = new CanvasObjectConfiguration(COR_BALL_COLLISIONS, COEFFICIENT_BALL_FRICTION, CollisionType.BOUNCE);
-		ballConfig.addCollisionConfig(BilliardBall.canvasObjectType, CollisionTypeConfiguration.bounce(COR_BALL_COLLISIONS));
-		ballConfig.addCollisionConfig(Canvas.canvasObjectType, CollisionTypeConfiguration.bounce(COR_WALL_COLLISIONS));
-		ballConfig.addCollisionConfig(Pocket.canvasObjectType, CollisionTypeConfiguration.custom((a,b) -> checkAndProcessPocketCollision(a, b)));
-		model.addTypeConfig(BilliardBall.canvasObjectType, ballConfig);
-		
-		// Pocket model
-		CanvasObjectConfiguration pocketConfig = new CanvasObjectConfiguration(0, 0, CollisionType.NONE);
-		pocketConfig.addCollisionConfig(BilliardBall.canvasObjectType, CollisionTypeConfiguration.custom((a,b) -> checkAndProcessPocketCollision(a, b)));
-		model.addTypeConfig(Pocket.canvasObjectType, pocketConfig);
-		
-		BasicPhysicsCanvasProcessor processor = new BasicPhysicsCanvasProcessor(model);
-		processor.initialize(canvasBounds, canvasHoles, BilliardBall.ballSize, 16);
-		setProcessor(processor);
+		physics = TablePhysics.createProcessor(layout, pocketListener);
+		physicsModelPath = Paths.get(TablePhysics.DEFAULT_MODEL);
+		setProcessor(physics);
 	}
 	
 	/*
@@ -263,62 +384,29 @@ public class BilliardsTable extends Canvas
 	 */
 	private void initializeCanvasObjects() {
 		// Pockets
-		for (int i = 0; i < Pocket.NUMBER_POCKETS; i++) {
-			Pocket p = new Pocket(i, canvasBounds);
-			p.setCanvasHoles(canvasHoles);
+		for (Pocket p : layout.createPockets()) {
 			add(p);
 		}
 		
-		// Cue ball
-		BilliardBall cue = new BilliardBall(BallDefinition.CUE);
-		cue.setLocation(new Point2D.Double(180, 260));
-		cue.setMovementVector(new Vector2d(32, -1));
-		cueBall = cue;
-		add(cue);
-		
-		// Standard Balls
-		int baseX = 560;
-		int baseY = 200;
-		int[] offsetX = { 0, 0, 26, 26, 52, 52, 52, 78, 78, 78, 78, 104, 104, 104, 104, 104};
-		int[] offsetY = { 0, 50, 38, 64, 25, 51, 76, 12, 38, 64, 90, 0, 26, 52, 78, 104 };
-		
-		for (int i = 1; i < 16; i++) {
-			BilliardBall b = new BilliardBall(BallDefinition.valueOf(i));
-			b.setLocation(new Point2D.Double(baseX + offsetX[i], baseY + offsetY[i]));
-			add(b);
-		}
+		// Balls
+		List<BilliardBall> balls = TablePhysics.rackBalls(layout);
+		cueBall = balls.get(0);
+		cueBall.setMovementVector(new Vector2d(32, -1));
+		balls.forEach(b -> add(b));
 		
 		// Initialize collection for balls captured during shot
-		captured = new ArrayList<BilliardBall>();
+		pocketListener.clear();
 	}
 	
 	/*
-	 * Used to process collisions between a Pocket and a ball, i.e to sink a ball
+	 * Load the standard table layout
 	 */
-	private boolean checkAndProcessPocketCollision(CanvasObject a, CanvasObject b) {
-		BilliardBall ball;
-		Pocket pocket;
-		
-		if (a instanceof BilliardBall && b instanceof Pocket) {
-			ball = (BilliardBall) a;
-			pocket = (Pocket) b;
-		} else if (a instanceof Pocket && b instanceof BilliardBall) {
-			ball = (BilliardBall) b;
-			pocket = (Pocket) a;
-		} else {
-			return false;
+	private static TableLayout loadDefaultLayout() {
+		try {
+			return TableLayout.loadDefault();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to load table layout", e);
 		}
-		
-		Point2D ballCenter = ball.getCenterPoint();
-		if (pocket.getArea().contains(ballCenter)) {
-			Point2D pocketLocation = pocket.getLocation();
-			
-			ball.setLocation(new Point2D.Double(pocketLocation.getX(), pocketLocation.getY()));
-			ball.setSuspended(true);
-			captured.add(ball);
-		} 
-		
-		return false;
 	}
 	
 	/*
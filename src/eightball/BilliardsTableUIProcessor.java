@@ -12,17 +12,21 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.geom.Point2D;
+import java.util.Arrays;
 
 import javax.swing.AbstractAction;
 import javax.swing.JComponent;
 import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
-import javax.swing.Timer;
 import javax.vecmath.Vector2d;
 
+import canvas.CanvasObject;
+import canvas.RenderQuality;
+import canvas.physics.RayHit;
 import eightball.events.TableEvent;
 import eightball.events.TableEventType;
+import eightball.sim.ShotHintSearch;
 
 /**
  * Manages mouse events and rendering for BilliardsTable
@@ -36,16 +40,26 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 	private int state;
 	private BilliardsTable table;
 	private BilliardBall cueBall;
-	private Timer animationTimer;
+	private Runnable shotPowerTask;
 	private int shotPower;
 	private boolean inShot;
+	private boolean hintsEnabled;
+	private EightBallRules hintRules;
+	private ShotHintSearch hintSearch;
+	private RayHit aimPreview;			// first ball or cushion along the aim line
+	private double previewCueX;			// cue ball center and aim direction aimPreview was cast from
+	private double previewCueY;
+	private double previewDirX;
+	private double previewDirY;
 	
 	private static final int STATE_NONE = 0;
 	private static final int STATE_SELECT_CUE_STICK_ANGLE = 1;
 	private static final int STATE_SELECT_CUE_STICK_POWER = 2;
 	private static final int STATE_PLACE_CUE_BALL = 3;
 	private static final int MAX_SHOT_POWER = 80;
-	private static final int MAX_SCRATCH_X_COORD = 140;
+	private static final int BALL_COUNT = 16;
+	private static final double HINT_LINE_SCALE = 4;	// hint length per unit of shot power
+	private static final double DEFLECTION_LINE_LENGTH = 60;
 	
 	/**
 	 * Constructor
@@ -57,8 +71,9 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 		
 		state = STATE_NONE;
 		position = new Point2D.Double(-1, -1);
-		animationTimer = new Timer(30, ae -> updateShotPower());
+		shotPowerTask = () -> updateShotPower();
 		shotPower = 1;
+		clearAimPreview();
 	
 		table.addMouseListener(this);
 		table.addMouseMotionListener(this);
@@ -72,6 +87,23 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 				handleEscapeKey();
 			}
 		});
+		
+		table.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("H"), "hint");
+		table.getActionMap().put("hint", new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				setHintsEnabled(!hintsEnabled);
+			}
+		});
+		
+		// reload physics coefficients, used from the next shot
+		table.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("F5"), "reloadPhysics");
+		table.getActionMap().put("reloadPhysics", new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				table.reloadPhysicsModel();
+			}
+		});
 	}
 	
 	/**
@@ -80,6 +112,32 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 	public void reset() {
 		state = STATE_NONE;
 		inShot = false;
+		table.getGameLoop().remove(shotPowerTask);
+		cancelHint();
+		clearAimPreview();
+	}
+	
+	/**
+	 * Show a suggested shot while aiming, searched for in the background
+	 * @param enabled T/F
+	 */
+	public void setHintsEnabled(boolean enabled) {
+		hintsEnabled = enabled;
+		
+		if (hintsEnabled) {
+			requestHint();
+		} else {
+			cancelHint();
+		}
+		table.repaint();
+	}
+	
+	/**
+	 * Rules used to score hints
+	 * @param rules Game rules, or null to favour capturing any ball (single player)
+	 */
+	public void setHintRules(EightBallRules rules) {
+		hintRules = rules;
 	}
 	
 	/**
@@ -102,6 +160,7 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 		int y = (int)(loc.y - ((float)size.height/2F));
 		cueBall.setLocation(new Point2D.Double(x, y));
 		state = STATE_PLACE_CUE_BALL;
+		cancelHint();
 	}
 	
 	/**
@@ -130,9 +189,25 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 			cueStick.scale(4);
 			cueStickNormal.scale(0.384);
 			g.setColor(Color.WHITE);
-			g.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{6}, 0));
-			g.drawLine((int)(cueLocation.getX() - cueStickNormal.getX()), (int)(cueLocation.getY() - cueStickNormal.getY()), 
-					   (int)(cueLocation.getX() - cueStick.getX()), (int)(cueLocation.getY() - cueStick.getY()));
+			// dashes are dropped when painting is over budget, see RenderGovernor
+			boolean dashed = RenderQuality.of(g) == RenderQuality.FULL;
+			g.setStroke(dashed ? new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{6}, 0) : new BasicStroke(1));
+			if (aimPreview != null) {
+				renderAimPreview(g, cueLocation, cueStickNormal);
+			} else {
+				g.drawLine((int)(cueLocation.getX() - cueStickNormal.getX()), (int)(cueLocation.getY() - cueStickNormal.getY()), 
+						   (int)(cueLocation.getX() - cueStick.getX()), (int)(cueLocation.getY() - cueStick.getY()));
+			}
+			
+			ShotHintSearch.Hint hint = (hintSearch != null && hintsEnabled) ? hintSearch.getBest() : null;
+			if (hint != null) {
+				Vector2d hintLine = new Vector2d(hint.getX(), hint.getY());
+				hintLine.scale(HINT_LINE_SCALE);
+				g.setColor(Color.YELLOW);
+				g.setStroke(dashed ? new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{4}, 0) : new BasicStroke(2));
+				g.drawLine((int)cueLocation.getX(), (int)cueLocation.getY(), 
+						   (int)(cueLocation.getX() + hintLine.getX()), (int)(cueLocation.getY() + hintLine.getY()));
+			}
 			
 			if (state == STATE_SELECT_CUE_STICK_POWER) {
 				int yOffset = cueStick.getY() > 0 ? -40 : 20;
@@ -149,7 +224,7 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 			Rectangle bounds = table.getCanvasBounds();
 			g.setStroke(new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{9}, 0));
 			g.setColor(Color.WHITE);
-			g.drawLine(bounds.x + MAX_SCRATCH_X_COORD, bounds.y, bounds.x + MAX_SCRATCH_X_COORD, bounds.y + bounds.height);
+			g.drawLine(bounds.x + EightBallRules.MAX_SCRATCH_X_COORD, bounds.y, bounds.x + EightBallRules.MAX_SCRATCH_X_COORD, bounds.y + bounds.height);
 		}
 	}
 		
@@ -169,6 +244,7 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 				
 			case STATE_SELECT_CUE_STICK_POWER:
 				state = STATE_SELECT_CUE_STICK_ANGLE;
+				table.getGameLoop().remove(shotPowerTask);
 				break;
 		}
 		
@@ -181,6 +257,7 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 	public void mouseMoved(MouseEvent e) {
 		if (state == STATE_SELECT_CUE_STICK_ANGLE) {
 			position.setLocation(e.getX(), e.getY());
+			updateAimPreview();
 			table.repaint();
 		}
 		
@@ -216,13 +293,13 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 			case STATE_SELECT_CUE_STICK_ANGLE:
 				state = STATE_SELECT_CUE_STICK_POWER;
 				shotPower = 1;
-				animationTimer.start();
+				table.getGameLoop().add(shotPowerTask);
 				break;
 				
 			case STATE_SELECT_CUE_STICK_POWER:
 				// perform shot
 				state = STATE_NONE;
-				animationTimer.stop();
+				table.getGameLoop().remove(shotPowerTask);
 				
 				Vector2d shotVector = getShotNormalVector();
 				shotVector.scale(-shotPower);
@@ -236,8 +313,9 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 				Dimension size = cueBall.getSize();
 				Point2D location = cueBall.getLocation();
 				
-				if (bounds.contains(location) && location.getX() + size.width <= bounds.x + MAX_SCRATCH_X_COORD) {
+				if (bounds.contains(location) && location.getX() + size.width <= bounds.x + EightBallRules.MAX_SCRATCH_X_COORD) {
 					state = STATE_NONE;
+					requestHint();
 				} else {
 					JOptionPane.showMessageDialog(table, "You must place the cueball within the bounds indicated by the dotted line");
 				}
@@ -260,6 +338,124 @@ public class BilliardsTableUIProcessor implements MouseMotionListener, MouseList
 	 */
 	private void handleShotEvent(TableEvent e) {
 		inShot = (e.type == TableEventType.SHOT_BEGIN);
+		clearAimPreview();
+		
+		if (inShot) {
+			cancelHint();
+		} else {
+			// after the remaining SHOT_ENDED listeners, so the game has updated the rules
+			SwingUtilities.invokeLater(() -> requestHint());
+		}
+	}
+	
+	/*
+	 * Cast the cue ball along the aim line, unless neither it nor the aim direction has changed
+	 */
+	private void updateAimPreview() {
+		Point2D cueLocation = cueBall.getCenterPoint();
+		Vector2d direction = getShotNormalVector();
+		direction.negate();
+		
+		if (Double.isNaN(direction.x) || Double.isNaN(direction.y)) {
+			aimPreview = null;
+			return;
+		}
+		
+		if (cueLocation.getX() == previewCueX && cueLocation.getY() == previewCueY && 
+				direction.x == previewDirX && direction.y == previewDirY) {
+			return;
+		}
+		
+		aimPreview = table.castBall(cueBall, direction.x, direction.y);
+		previewCueX = cueLocation.getX();
+		previewCueY = cueLocation.getY();
+		previewDirX = direction.x;
+		previewDirY = direction.y;
+	}
+	
+	/*
+	 * Forget the aim preview, the balls have moved
+	 */
+	private void clearAimPreview() {
+		aimPreview = null;
+		previewCueX = Double.NaN;
+	}
+	
+	/*
+	 * Draw the aim line to the ghost ball, and the directions the balls take from there
+	 * Uses the current color and stroke for the aim line
+	 */
+	private void renderAimPreview(Graphics2D g, Point2D cueLocation, Vector2d aimStart) {
+		double ghostX = aimPreview.getX();
+		double ghostY = aimPreview.getY();
+		double nx = aimPreview.getNormalX();
+		double ny = aimPreview.getNormalY();
+		int diameter = cueBall.getSize().width;
+		
+		g.drawLine((int)(cueLocation.getX() - aimStart.getX()), (int)(cueLocation.getY() - aimStart.getY()), 
+				   (int)ghostX, (int)ghostY);
+		g.drawOval((int)(ghostX - (diameter / 2.0)), (int)(ghostY - (diameter / 2.0)), diameter, diameter);
+		
+		// cue ball keeps the part of its velocity along the contact tangent, or reflects off a cushion
+		double along = (previewDirX * nx) + (previewDirY * ny);
+		double scale = aimPreview.isWall() ? 2 : 1;
+		double cueX = previewDirX - (scale * along * nx);
+		double cueY = previewDirY - (scale * along * ny);
+		g.drawLine((int)ghostX, (int)ghostY, 
+				   (int)(ghostX + (cueX * DEFLECTION_LINE_LENGTH)), (int)(ghostY + (cueY * DEFLECTION_LINE_LENGTH)));
+		
+		// object ball leaves along the line of centers
+		if (!aimPreview.isWall()) {
+			Point2D objectLocation = aimPreview.getObject().getCenterPoint();
+			g.setStroke(new BasicStroke(2));
+			g.drawLine((int)objectLocation.getX(), (int)objectLocation.getY(), 
+					   (int)(objectLocation.getX() - (nx * DEFLECTION_LINE_LENGTH)), 
+					   (int)(objectLocation.getY() - (ny * DEFLECTION_LINE_LENGTH)));
+		}
+	}
+	
+	/*
+	 * Start a hint search from the current ball positions, if hints are enabled, the cue ball is in play
+	 * and the game is not over (the winning shot ends like any other)
+	 */
+	private void requestHint() {
+		if (!hintsEnabled || inShot || state == STATE_PLACE_CUE_BALL) {
+			return;
+		}
+		
+		if (hintRules != null && hintRules.isGameOver()) {
+			cancelHint();
+			return;
+		}
+		
+		if (hintSearch == null) {
+			int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			hintSearch = new ShotHintSearch(table.getTableLayout(), threads, ShotHintSearch.DEFAULT_BUDGET_MILLIS);
+			hintSearch.setListener(() -> SwingUtilities.invokeLater(() -> table.repaint()));
+		}
+		
+		double[] x = new double[BALL_COUNT];
+		double[] y = new double[BALL_COUNT];
+		Arrays.fill(x, Double.NaN);
+		
+		for (CanvasObject o : table.getObjects()) {
+			if (o instanceof BilliardBall) {
+				int number = ((BilliardBall)o).getDefinition().getNumber();
+				x[number] = o.getLocation().getX();
+				y[number] = o.getLocation().getY();
+			}
+		}
+		
+		hintSearch.request(x, y, hintRules);
+	}
+	
+	/*
+	 * Abandon any hint search, the table is about to change
+	 */
+	private void cancelHint() {
+		if (hintSearch != null) {
+			hintSearch.cancel();
+		}
 	}
 	
 	/*
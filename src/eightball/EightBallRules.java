@@ -0,0 +1,192 @@
+package eightball;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import eightball.enums.BallDefinition;
+import eightball.enums.BallType;
+import eightball.enums.TurnResult;
+
+/**
+ * Two player eight ball rules
+ * Tracks turns, group assignment (solids or stripes) and captured balls, and decides the outcome of each turn.
+ * Used by Game and by headless simulations.
+ */
+public class EightBallRules {
+	private boolean firstPlayersTurn;
+	private BallType playerOneType;
+	private BallType playerTwoType;
+	private BitSet captured;			// captured balls, indexed by ball number
+	private int[] capturedByType;		// count of captured balls, indexed by BallType ordinal
+	private boolean gameOver;
+	private boolean playerOneWon;
+	
+	// after a scratch, the cue ball must be placed within this distance of the left edge of the canvas
+	public static final int MAX_SCRATCH_X_COORD = 140;
+	
+	/**
+	 * Constructor
+	 */
+	public EightBallRules() {
+		captured = new BitSet(BallDefinition.values().length);
+		capturedByType = new int[BallType.values().length];
+		reset();
+	}
+	
+	/**
+	 * Copy constructor
+	 * @param src Rules to copy, e.g. to try out a shot without changing the game
+	 */
+	public EightBallRules(EightBallRules src) {
+		firstPlayersTurn = src.firstPlayersTurn;
+		playerOneType = src.playerOneType;
+		playerTwoType = src.playerTwoType;
+		captured = (BitSet) src.captured.clone();
+		capturedByType = src.capturedByType.clone();
+		gameOver = src.gameOver;
+		playerOneWon = src.playerOneWon;
+	}
+	
+	/**
+	 * Reset for a new game, player one breaks
+	 */
+	public void reset() {
+		firstPlayersTurn = true;
+		playerOneType = BallType.NONE;
+		playerTwoType = BallType.NONE;
+		captured.clear();
+		Arrays.fill(capturedByType, 0);
+		gameOver = false;
+		playerOneWon = false;
+	}
+	
+	/**
+	 * Apply the outcome of a shot
+	 * The first ball captured while groups are open assigns the shooter's group.
+	 * The shooter continues after sinking one of their own balls without scratching.
+	 * Sinking the eightball wins if the shooter's group is cleared by the end of the turn, and loses otherwise.
+	 * @param capturedThisTurn Solids and stripes captured during the shot, in order
+	 * @param scratch Cue ball was captured
+	 * @param eightballCaptured Eightball was captured
+	 * @return TurnResult
+	 */
+	public TurnResult endTurn(List<BallDefinition> capturedThisTurn, boolean scratch, boolean eightballCaptured) {
+		if (gameOver) {
+			throw new IllegalStateException("Game is over");
+		}
+		
+		// determine which player owns which balls..
+		if (playerOneType == BallType.NONE && capturedThisTurn.size() > 0) {
+			BallDefinition firstCaptured = capturedThisTurn.get(0);
+			
+			if (firstPlayersTurn) {
+				playerOneType = firstCaptured.getType();
+				playerTwoType = (playerOneType == BallType.SOLID ? BallType.STRIPE : BallType.SOLID);
+			} else {
+				playerTwoType = firstCaptured.getType();
+				playerOneType = (playerTwoType == BallType.SOLID ? BallType.STRIPE : BallType.SOLID);	
+			}
+		}
+		
+		// process shot
+		boolean success = false;
+		BallType myType = getShooterType();
+		
+		for (BallDefinition b : capturedThisTurn) {
+			if (b.getType() == myType && !scratch) {
+				success = true;
+			}
+			capture(b);
+		}
+		
+		// if eightball captured, the acting player wins as long as all of their other balls are sunk
+		// at the end of the same turn
+		if (eightballCaptured) {
+			gameOver = true;
+			
+			if (capturedByType[myType.ordinal()] != 7) {
+				playerOneWon = !firstPlayersTurn;
+				return TurnResult.EIGHTBALL_EARLY;
+			}
+			
+			playerOneWon = firstPlayersTurn;
+			return TurnResult.WIN;
+		}
+		
+		if (success) {
+			return TurnResult.CONTINUE;
+		}
+		
+		firstPlayersTurn = !firstPlayersTurn;
+		return TurnResult.NEXT_PLAYER;
+	}
+	
+	/**
+	 * @return Is it player one's turn
+	 */
+	public boolean isFirstPlayersTurn() {
+		return firstPlayersTurn;
+	}
+	
+	/**
+	 * @return Player one's group, NONE until assigned
+	 */
+	public BallType getPlayerOneType() {
+		return playerOneType;
+	}
+	
+	/**
+	 * @return Player two's group, NONE until assigned
+	 */
+	public BallType getPlayerTwoType() {
+		return playerTwoType;
+	}
+	
+	/**
+	 * @return Group of the player whose turn it is, NONE until assigned
+	 */
+	public BallType getShooterType() {
+		return firstPlayersTurn ? playerOneType : playerTwoType;
+	}
+	
+	/**
+	 * @param type BallType
+	 * @return Number of balls of a type captured so far
+	 */
+	public int getCapturedCount(BallType type) {
+		return capturedByType[type.ordinal()];
+	}
+	
+	/**
+	 * @param number Ball number
+	 * @return Has the ball been captured
+	 */
+	public boolean isCaptured(int number) {
+		return captured.get(number);
+	}
+	
+	/**
+	 * @return Has the game been decided
+	 */
+	public boolean isGameOver() {
+		return gameOver;
+	}
+	
+	/**
+	 * @return Did player one win (only meaningful once the game is over)
+	 */
+	public boolean didPlayerOneWin() {
+		return playerOneWon;
+	}
+	
+	/*
+	 * Add captured ball to local collection
+	 */
+	private void capture(BallDefinition def) {
+		if (!captured.get(def.getNumber())) {
+			captured.set(def.getNumber());
+			capturedByType[def.getType().ordinal()]++;
+		}
+	}
+}
@@ -4,7 +4,10 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.GridLayout;
+import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -15,6 +18,7 @@ import javax.swing.JLayeredPane;
 import javax.swing.JPanel;
 import javax.swing.SwingConstants;
 
+import canvas.replay.ReplayWriter;
 import eightball.events.GameEvent;
 import eightball.events.GameEventType;
 
@@ -61,6 +65,55 @@ public class EightballFrame extends JFrame
 		pause(false);
 	}
 	
+	/**
+	 * Record every shot to a replay file, closed with the window
+	 * @param file Replay file, created or replaced
+	 */
+	public void recordReplay(Path file) {
+		try {
+			ReplayWriter writer = new ReplayWriter(file, ReplayWriter.DEFAULT_KEYFRAME_INTERVAL);
+			game.getTable().setReplayWriter(writer);
+			
+			addWindowListener(new WindowAdapter() {
+				@Override
+				public void windowClosing(WindowEvent e) {
+					try {
+						writer.close();
+					} catch (IOException ex) {
+						System.out.println("Unable to save replay...");
+					}
+				}
+			});
+		} catch (IOException e) {
+			System.out.println("Unable to record replay...");
+		}
+	}
+	
+	/**
+	 * Play with a physics model file, reloaded with F5 while playing
+	 * @param file Model file, see BasicPhysicsModel for the format
+	 */
+	public void loadPhysicsModel(Path file) {
+		try {
+			game.getTable().loadPhysicsModel(file);
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println(String.format("Unable to load physics model... %s", e.getMessage()));
+		}
+	}
+	
+	/**
+	 * Print animation frame time and paint statistics when the window closes
+	 */
+	public void reportFrameTimes() {
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent e) {
+				System.out.println(game.getTable().getGameLoop());
+				System.out.println(game.getTable().getRenderGovernor());
+			}
+		});
+	}
+	
 	/*
 	 * Create the status bar
 	 */
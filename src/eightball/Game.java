@@ -2,12 +2,12 @@ package eightball;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import eightball.enums.BallDefinition;
 import eightball.enums.BallType;
+import eightball.enums.TurnResult;
 import eightball.events.*;
 
 /**
@@ -20,13 +20,10 @@ public class Game {
 	private boolean gameInProgress;
 	private boolean haveWinner;
 	private boolean singlePlayer;
-	private boolean firstPlayersTurn;
 	private boolean scratch;
 	private boolean eightballCaptured;
-	private BallType playerOneType;
-	private BallType playerTwoType;
+	private EightBallRules rules;
 	private List<BilliardBall> capturedThisTurn;
-	private Map<BallType, Set<BilliardBall>> captured;
 	private int score;
 	
 	/**
@@ -35,7 +32,7 @@ public class Game {
 	public Game() {
 		eventListeners = new HashMap<GameEventType, List<GameEventListener>>();
 		capturedThisTurn = new ArrayList<BilliardBall>();
-		captured = new HashMap<BallType, Set<BilliardBall>>();
+		rules = new EightBallRules();
 		
 		table = new BilliardsTable();
 		table.addEventListener(TableEventType.CUE_BALL_PLACEMENT_BEGIN, e -> onCueBallPlacementBegin(e));
@@ -85,17 +82,15 @@ public class Game {
 	 */
 	public void begin(int players) {
 		gameInProgress = true;
-		firstPlayersTurn = true;
 		singlePlayer = (players == 1);
-		playerOneType = BallType.NONE;
-		playerTwoType = BallType.NONE;
+		rules.reset();
 		score = 0;
-		captured.clear();
 		scratch = false;
 		eightballCaptured = false;
 		
 		updateStatusMessage("New Game! Place the cue ball to begin...");
 		setGameInfo();
+		table.setHintRules(singlePlayer ? null : rules);
 		table.begin();
 	}
 	
@@ -240,66 +235,51 @@ public class Game {
 	 * After each shot, we update the game state
 	 */
 	private void onShotEnd(TableEvent e) {
-		if (!singlePlayer) {			
-			// determine which player owns which balls..
-			if (playerOneType == BallType.NONE && capturedThisTurn.size() > 0) {
-				BilliardBall firstCaptured = capturedThisTurn.get(0);
-				
-				if (firstPlayersTurn) {
-					playerOneType = firstCaptured.getDefinition().getType();
-					playerTwoType = (playerOneType == BallType.SOLID ? BallType.STRIPE : BallType.SOLID);
-				} else {
-					playerTwoType = firstCaptured.getDefinition().getType();
-					playerOneType = (playerTwoType == BallType.SOLID ? BallType.STRIPE : BallType.SOLID);	
-				}
-			}
+		if (!singlePlayer) {
+			boolean playerOneShooting = rules.isFirstPlayersTurn();
+			List<BallDefinition> captured = new ArrayList<BallDefinition>();
+			capturedThisTurn.forEach(b -> captured.add(b.getDefinition()));
 			
-			// process shot
-			boolean success = false;	
-			ArrayList<String> myCaptures = new ArrayList<String>();
-			BallType myType = firstPlayersTurn ? playerOneType : playerTwoType;
+			TurnResult result = rules.endTurn(captured, scratch, eightballCaptured);
+			BallType myType = playerOneShooting ? rules.getPlayerOneType() : rules.getPlayerTwoType();
 			
-			if (capturedThisTurn.size() > 0) {
-				for (BilliardBall b : capturedThisTurn) {
-					BallType t = b.getDefinition().getType();
-					if (t == myType) {
-						myCaptures.add(String.format("(%d)", b.getDefinition().getNumber()));
-						if (!scratch) {
-							success = true;
-						}
-					}
-					capture(b);
+			ArrayList<String> myCaptures = new ArrayList<String>();
+			for (BilliardBall b : capturedThisTurn) {
+				if (b.getDefinition().getType() == myType) {
+					myCaptures.add(String.format("(%d)", b.getDefinition().getNumber()));
 				}
 			}
 			
-			// if eightball captured, the acting player wins as long as all of their other balls are sunk
-			// at the end of the same turn
-			if (eightballCaptured) {
-				haveWinner = true;
-				
-				if (!captured.containsKey(myType) || captured.get(myType).size() != 7) {
+			switch (result) {
+				case EIGHTBALL_EARLY:
+					haveWinner = true;
 					updateStatusMessage(String.format("Eightball sunk too early! %s wins!",
-							(firstPlayersTurn ? "Player Two" : "Player One")));
-				} else {
+							(playerOneShooting ? "Player Two" : "Player One")));
+					fireGameEvent(GameEventType.GAME_OVER);
+					break;
+					
+				case WIN:
+					haveWinner = true;
 					updateStatusMessage(String.format("%s wins!",
-							(firstPlayersTurn ? "Player one" : "Player Two")));
-				}
-				fireGameEvent(GameEventType.GAME_OVER);
-			} else {			
-				if (success) {	
+							(playerOneShooting ? "Player one" : "Player Two")));
+					fireGameEvent(GameEventType.GAME_OVER);
+					break;
+					
+				case CONTINUE:
 					updateStatusMessage(String.format("%s captured: %s. Continue shooting...", 
-							(firstPlayersTurn ? "Player One" : "Player Two"), String.join(",", myCaptures)));
-				} else {
-					firstPlayersTurn = !firstPlayersTurn;
+							(playerOneShooting ? "Player One" : "Player Two"), String.join(",", myCaptures)));
+					break;
+					
+				case NEXT_PLAYER:
 					if (!scratch) {
-						updateStatusMessage(String.format("Now Player %s turn...", (firstPlayersTurn ? "One's" : "Two's")));
+						updateStatusMessage(String.format("Now Player %s turn...", (rules.isFirstPlayersTurn() ? "One's" : "Two's")));
 					}
-				}
+					break;
 			}
 		} else {
 			ArrayList<String> myCaptures = new ArrayList<String>();
 			
-			if (table.getObjects().size() <= Pocket.NUMBER_POCKETS + 1) {
+			if (table.getObjects().size() <= table.getTableLayout().getPocketCount() + 1) {
 				haveWinner = true;
 				updateStatusMessage("Well done!");
 				fireGameEvent(GameEventType.GAME_OVER);
@@ -320,21 +300,6 @@ public class Game {
 		setGameInfo();
 	}
 	
-	/*
-	 * Add captured ball to local collection
-	 */
-	private void capture(BilliardBall b) {
-		BallType type = b.getDefinition().getType();
-		
-		if (!captured.containsKey(type)) {
-			HashSet<BilliardBall> set = new HashSet<BilliardBall>();
-			set.add(b);
-			captured.put(type, set);
-		} else {
-			captured.get(type).add(b);
-		}
-	}
-	
 	/*
 	 * Update the statusbar information message
 	 */
@@ -346,8 +311,8 @@ public class Game {
 			String pOneType = "n/a";
 			String pTwoType = "n/a";
 			
-			if (playerOneType != BallType.NONE) {
-				if (playerOneType == BallType.SOLID) {
+			if (rules.getPlayerOneType() != BallType.NONE) {
+				if (rules.getPlayerOneType() == BallType.SOLID) {
 					pOneType = "Solids";
 					pTwoType = "Stripes";
 				} else {
@@ -359,7 +324,7 @@ public class Game {
 			}
 			
 			updateGameInfo(String.format("%sCurrently Playing: %s",
-					ballTypes, (firstPlayersTurn ? "P1" : "P2")));
+					ballTypes, (rules.isFirstPlayersTurn() ? "P1" : "P2")));
 		}
 	}
 }
@@ -1,5 +1,7 @@
 package eightball;
 
+import java.nio.file.Paths;
+
 import javax.swing.JFrame;
 
 /**
@@ -8,18 +10,29 @@ import javax.swing.JFrame;
 public class Launcher {
 	/**
 	 * Launch application
-	 * @param args Unused
+	 * @param args [replay file], records every shot if given
+	 * Run with -Deightball.frameStats=true to print frame time jitter on exit,
+	 * and -Deightball.physics=<model file> to play with a physics model other than the standard one
 	 */
 	public static void main(String[] args) {	
 		javax.swing.SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
-			   launch();
+			   launch(args);
 			}
 		});
 	}
 	
-	private static void launch() {
-		JFrame frame = new EightballFrame();
+	private static void launch(String[] args) {
+		EightballFrame frame = new EightballFrame();
+		if (args.length > 0) {
+			frame.recordReplay(Paths.get(args[0]));
+		}
+		if (System.getProperty("eightball.physics") != null) {
+			frame.loadPhysicsModel(Paths.get(System.getProperty("eightball.physics")));
+		}
+		if (Boolean.getBoolean("eightball.frameStats")) {
+			frame.reportFrameTimes();
+		}
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frame.setVisible(true);
 	}
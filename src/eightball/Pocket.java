@@ -7,27 +7,26 @@ import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
 import java.awt.geom.Point2D;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.BitSet;
 
-import javax.vecmath.Point2i;
-import javax.vecmath.Tuple2i;
-
-import canvas.Canvas;
 import canvas.CanvasObject;
 
 /**
  * Billiard table pockets
- * Definitions for placement and canvas hole data used by table
+ * Placement, capture area and sink polygon are defined by the TableLayout
  */
 public class Pocket extends CanvasObject 
 {
 	private Polygon poly;
-	private int type;
-	private Rectangle canvasBounds;
-	private Map<Integer, Set<Tuple2i>> holes;
+	private int position;
+	private boolean visible;
+	
+	// rasterized capture area over the pocket bounds, one cell per pixel, built at construction
+	private int rasterX;
+	private int rasterY;
+	private int rasterWidth;
+	private int rasterHeight;
+	private BitSet captureRaster;		// cells whose center is within the capture area (getArea())
 	
 	public static String canvasObjectType = "Pocket";
 	
@@ -39,6 +38,10 @@ public class Pocket extends CanvasObject
 	protected static final int BOTTOM_RIGHT = 5;
 	protected static final int NUMBER_POCKETS = 6;
 	
+	// names used in table layouts, indexed by position
+	private static final String[] POSITION_NAMES = 
+		{ "TOP_LEFT", "TOP_CENTER", "TOP_RIGHT", "BOTTOM_LEFT", "BOTTOM_CENTER", "BOTTOM_RIGHT" };
+	
 	// if true, adds additional rendering
 	// useful for tweaking mechanics of balls sinking
 	private static final boolean DEBUG = false; 
@@ -46,127 +49,59 @@ public class Pocket extends CanvasObject
 	/**
 	 * Constructor
 	 * @param pocketPosition Which Pocket is this? (TOP_LEFT ... BOTTOM_RIGHT)
-	 * @param bounds Canvas rectangle
+	 * @param location Location of pocket bounds, which are also the capture area
+	 * @param size Width and height of pocket bounds
+	 * @param sinkPolygon Polygon a ball must reach to sink, used for collision
+	 * @param isVisible Render the pocket (false when the background image already shows it)
 	 */
-	public Pocket(int pocketPosition, Rectangle bounds) {
+	public Pocket(int pocketPosition, Point2D location, int size, Polygon sinkPolygon, boolean isVisible) {
 		super();
 		
-		int[] x;
-		int[] y;
-		type = pocketPosition;
-		canvasBounds = bounds;
-		setSize(new Dimension(38, 38));
-		holes = new HashMap<Integer, Set<Tuple2i>>();
+		position = pocketPosition;
+		visible = isVisible;
+		poly = new Polygon(sinkPolygon.xpoints, sinkPolygon.ypoints, sinkPolygon.npoints);
 		canvasOrder = pocketPosition;
+		setSize(new Dimension(size, size));
+		setLocation(new Point2D.Double(location.getX(), location.getY()));
 		
-		HashSet<Tuple2i> north = new HashSet<Tuple2i>();
-		HashSet<Tuple2i> east = new HashSet<Tuple2i>();
-		HashSet<Tuple2i> south = new HashSet<Tuple2i>();
-		HashSet<Tuple2i> west = new HashSet<Tuple2i>();
-		
-		switch(type) {
-			case TOP_LEFT:
-				setLocation(new Point2D.Double(canvasBounds.x - 17, canvasBounds.y - 18));
-				
-				north.add(new Point2i(canvasBounds.x - 100, canvasBounds.x + 27));
-				holes.put(Canvas.WALL_NORTH, north);
-				
-				west.add(new Point2i(canvasBounds.y - 100, canvasBounds.y + 27));
-				holes.put(Canvas.WALL_WEST, west);
-				
-				x = new int[] { 72, 100, 127, 101, 72 };
-				y = new int[] { 85, 60, 90, 116, 85 }; 
-				poly = new Polygon(x, y, 5);
-				break;
-				
-			case TOP_CENTER:
-				setLocation(new Point2D.Double(canvasBounds.x + 329, canvasBounds.y - 29));
-				
-				north.add(new Point2i(canvasBounds.x + 329, canvasBounds.x + 367));
-				holes.put(Canvas.WALL_NORTH, north);
-				
-				x = new int[] { 427, 468, 468, 427 };
-				y = new int[] { 60, 60, 90, 90 }; 
-				poly = new Polygon(x, y, 4);
-				break;
-				
-			case TOP_RIGHT:
-				setLocation(new Point2D.Double(canvasBounds.x + canvasBounds.width - 22, canvasBounds.y - 18));
-				
-				north.add(new Point2i(canvasBounds.x + canvasBounds.width - 29, canvasBounds.x + canvasBounds.width + 100));
-				holes.put(Canvas.WALL_NORTH, north);
-				
-				east.add(new Point2i(canvasBounds.y - 100, canvasBounds.y + 26));
-				holes.put(Canvas.WALL_EAST, east);
-				
-				x = new int[] { 771, 799, 828, 799, 771 };
-				y = new int[] { 90, 60, 89, 115, 90 }; 
-				poly = new Polygon(x, y, 5);
-				break;
-				
-			case BOTTOM_LEFT:
-				setLocation(new Point2D.Double(canvasBounds.x - 18, canvasBounds.y + canvasBounds.height - 19));
-				
-				south.add(new Point2i(canvasBounds.x - 100, canvasBounds.x + 28));
-				holes.put(Canvas.WALL_SOUTH, south);
-				
-				west.add(new Point2i(canvasBounds.y + canvasBounds.height - 25, canvasBounds.y + canvasBounds.height + 100));
-				holes.put(Canvas.WALL_WEST, west);
-				
-				x = new int[] { 72, 101, 128, 101, 72 };
-				y = new int[] { 440, 415, 440, 466, 440 }; 
-				poly = new Polygon(x, y, 5);
-				break;
-				
-			case BOTTOM_CENTER:
-				setLocation(new Point2D.Double(canvasBounds.x + 329, canvasBounds.y + canvasBounds.height - 10));
-				
-				south.add(new Point2i(canvasBounds.x + 327, canvasBounds.x + 368));
-				holes.put(Canvas.WALL_SOUTH, south);
-				
-				x = new int[] { 427, 468, 468, 427 };
-				y = new int[] { 440, 440, 470, 470 }; 
-				poly = new Polygon(x, y, 4);
-				break;
-				
-			case BOTTOM_RIGHT:
-				setLocation(new Point2D.Double(canvasBounds.x + canvasBounds.width - 22, canvasBounds.y + canvasBounds.height - 20));
-				
-				south.add(new Point2i(canvasBounds.x + canvasBounds.width - 29, canvasBounds.x + canvasBounds.width + 100));
-				holes.put(Canvas.WALL_SOUTH, south);
-				
-				east.add(new Point2i(canvasBounds.y + canvasBounds.height - 25, canvasBounds.y + canvasBounds.height + 100));
-				holes.put(Canvas.WALL_EAST, east);
-				
-				x = new int[] { 771, 799, 825, 799, 771 };
-				y = new int[] { 440, 466, 444, 415, 440 }; 
-				poly = new Polygon(x, y, 5);
-				break;
-				
-			default:
-				throw new IllegalArgumentException(String.format("Unknown pocket type: %d", type));
-		}
+		rasterize();
 	}
 	
 	/**
-	 * Add canvas holes for this pocket to a collection
-	 * Used by BilliardsTable
+	 * Pocket position from its layout name
+	 * @param name TOP_LEFT ... BOTTOM_RIGHT
+	 * @return Position
 	 */
-	public void setCanvasHoles(Map<Integer, Set<Tuple2i>> canvasHoles) {		
-		for (int i : holes.keySet()) {
-			Set<Tuple2i> myHoles = holes.get(i);
-			Set<Tuple2i> cHoles = canvasHoles.get(i);
-			
-			if (cHoles == null) {
-				canvasHoles.put(i, myHoles);
-			} else {
-				for (Tuple2i t : myHoles) {
-					cHoles.add(t);
-				}
+	public static int positionOf(String name) {
+		for (int i = 0; i < POSITION_NAMES.length; i++) {
+			if (POSITION_NAMES[i].equals(name)) {
+				return i;
 			}
 		}
+		
+		throw new IllegalArgumentException(String.format("Unknown pocket position: %s", name));
 	}
+	
+	/**
+	 * Layout name of a pocket position
+	 * @param position Position
+	 * @return TOP_LEFT ... BOTTOM_RIGHT
+	 */
+	public static String nameOf(int position) {
+		if (position < 0 || position >= POSITION_NAMES.length) {
+			throw new IllegalArgumentException(String.format("Unknown pocket position: %d", position));
+		}
 		
+		return POSITION_NAMES[position];
+	}
+	
+	/**
+	 * @return Which pocket this is (TOP_LEFT ... BOTTOM_RIGHT)
+	 */
+	public int getPosition() {
+		return position;
+	}
+	
 	/**
 	 * CanvasObject Type used in Physics processor
 	 */
@@ -192,6 +127,19 @@ public class Pocket extends CanvasObject
 		return new Area(poly);
 	}
 	
+	/**
+	 * Does the capture area contain a point, i.e. does a ball centered here sink
+	 * Approximates getArea().contains() from the raster built at construction: the pixel
+	 * containing the point is tested at its center, so points near the edge may differ
+	 * @param x X coordinate
+	 * @param y Y coordinate
+	 * @return Boolean
+	 */
+	public boolean captures(double x, double y) {
+		int cell = getRasterCell(x, y);
+		return cell >= 0 && captureRaster.get(cell);
+	}
+	
 	/**
 	 * Not implemented
 	 */
@@ -208,57 +156,59 @@ public class Pocket extends CanvasObject
 	public void move() {
 	}
 	
+	/*
+	 * Build capture raster covering the pocket bounds
+	 */
+	private void rasterize() {
+		Rectangle region = getBounds().getBounds();
+		rasterX = region.x;
+		rasterY = region.y;
+		rasterWidth = region.width;
+		rasterHeight = region.height;
+		captureRaster = new BitSet(rasterWidth * rasterHeight);
+		
+		Area captureArea = getArea();
+		for (int row = 0; row < rasterHeight; row++) {
+			for (int col = 0; col < rasterWidth; col++) {
+				captureRaster.set((row * rasterWidth) + col, captureArea.contains(rasterX + col + 0.5, rasterY + row + 0.5));
+			}
+		}
+	}
+	
+	/*
+	 * Raster cell containing a point, or -1 if outside the raster
+	 */
+	private int getRasterCell(double x, double y) {
+		int col = (int)Math.floor(x - rasterX);
+		int row = (int)Math.floor(y - rasterY);
+		
+		if (col < 0 || row < 0 || col >= rasterWidth || row >= rasterHeight) {
+			return -1;
+		}
+		
+		return (row * rasterWidth) + col;
+	}
+	
 	/**
 	 * Render 
 	 * Normally only fills in black circle which is partially overwritten by canvas Rectangle...
 	 */
 	@Override
 	public void draw(Graphics2D g) {
-		if (type != TOP_CENTER && type != BOTTOM_CENTER) {
+		if (visible) {
 			Point2D loc = getLocation();
 			Dimension sz = getSize();
 			g.setColor(getColor());
 			g.fillOval((int)loc.getX(), (int)loc.getY(), sz.width, sz.height);
 		}
 		
-		// rendering hints for canvas boundary holes and collision areas
+		// rendering hints for collision areas
 		if (DEBUG) {
 			g.setColor(Color.RED);
 			g.draw(poly);
 			
 			g.setColor(Color.WHITE);
-			for (int i : holes.keySet()) {
-				Set<Tuple2i> h = holes.get(i);
-				
-				switch (i) {
-					case Canvas.WALL_NORTH:
-						for (Tuple2i point : h) {
-							g.drawLine(point.x, canvasBounds.y, point.y, canvasBounds.y);
-						}
-						break;
-						
-					case Canvas.WALL_EAST:
-						for (Tuple2i point : h) {
-							g.drawLine(canvasBounds.x + canvasBounds.width, point.x, canvasBounds.x + canvasBounds.width, point.y);
-						}
-						break;
-						
-					case Canvas.WALL_SOUTH:
-						for (Tuple2i point : h) {
-							g.drawLine(point.x, canvasBounds.y + canvasBounds.height, point.y, canvasBounds.y + canvasBounds.height);
-						}
-						break;
-						
-					case Canvas.WALL_WEST:
-						for (Tuple2i point : h) {
-							g.drawLine(canvasBounds.x, point.x, canvasBounds.x, point.y);
-						}
-						break;
-						
-					default:
-						break;
-				}
-			}
+			g.draw(getBounds());
 		}
 	}	
 }
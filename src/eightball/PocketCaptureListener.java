@@ -0,0 +1,87 @@
+package eightball;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import canvas.CanvasObject;
+import canvas.physics.CustomCollisionListener;
+
+/**
+ * Processes collisions between a Pocket and a ball, i.e to sink a ball
+ * Sunk balls are suspended at the pocket and collected, in order, until cleared
+ */
+public class PocketCaptureListener implements CustomCollisionListener {
+	private List<BilliardBall> captured;
+	private List<Pocket> capturedBy;
+	
+	/**
+	 * Constructor
+	 */
+	public PocketCaptureListener() {
+		captured = new ArrayList<BilliardBall>();
+		capturedBy = new ArrayList<Pocket>();
+	}
+	
+	/**
+	 * CustomCollisionListener implementation
+	 */
+	public boolean checkCollision(CanvasObject a, CanvasObject b) {
+		BilliardBall ball;
+		Pocket pocket;
+		
+		if (a instanceof BilliardBall && b instanceof Pocket) {
+			ball = (BilliardBall) a;
+			pocket = (Pocket) b;
+		} else if (a instanceof Pocket && b instanceof BilliardBall) {
+			ball = (BilliardBall) b;
+			pocket = (Pocket) a;
+		} else {
+			return false;
+		}
+		
+		Rectangle2D.Double ballBounds = ball.getBounds();
+		if (pocket.captures(ballBounds.getCenterX(), ballBounds.getCenterY())) {
+			// move to the pocket location, as setLocation(), without allocating
+			Rectangle2D.Double pocketBounds = pocket.getBounds();
+			ballBounds.x = pocketBounds.x;
+			ballBounds.y = pocketBounds.y;
+			
+			ball.setSuspended(true);
+			captured.add(ball);
+			capturedBy.add(pocket);
+			
+			BallCaptureEvent event = BallCaptureEvent.PROBE.isEnabled() ? new BallCaptureEvent() : null;
+			if (event != null && event.shouldCommit()) {
+				event.ball = ball.getDefinition().getNumber();
+				event.pocket = Pocket.nameOf(pocket.getPosition());
+				event.commit();
+			}
+		} 
+		
+		return false;
+	}
+	
+	/**
+	 * @return Balls captured since last cleared, in order
+	 */
+	public List<BilliardBall> getCaptured() {
+		return captured;
+	}
+	
+	/**
+	 * @param i Index into getCaptured()
+	 * @return Pocket which captured the ball
+	 */
+	public Pocket getCapturedBy(int i) {
+		return capturedBy.get(i);
+	}
+	
+	/**
+	 * Forget captured balls
+	 */
+	public void clear() {
+		captured.clear();
+		capturedBy.clear();
+	}
+}
@@ -0,0 +1,176 @@
+package eightball;
+
+import java.awt.BorderLayout;
+import java.awt.Graphics;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import javax.imageio.ImageIO;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+import canvas.Canvas;
+import canvas.replay.ReplayArchive;
+import canvas.replay.ReplayCanvasProcessor;
+
+/**
+ * Replay viewer
+ * Plays back a replay recorded by Launcher (or TableSimulation) on a table with the same layout.
+ * Keys: space pause/resume, right/left play forwards/backwards (again to double speed), 
+ * up/down faster/slower, page down/up next/previous shot, home first frame
+ */
+@SuppressWarnings("serial")
+public class ReplayViewer extends JFrame 
+{
+	private Canvas canvas;
+	private ReplayCanvasProcessor processor;
+	private ReplayArchive archive;
+	private JLabel statusLabel;
+	private BufferedImage background;
+	private double resumeSpeed;
+	
+	private static final double MAX_SPEED = 64;
+	
+	/**
+	 * Constructor
+	 * @param replay Archive to play
+	 * @param layout Table geometry the replay was recorded on
+	 */
+	public ReplayViewer(ReplayArchive replay, TableLayout layout) {
+		super("Eight Ball Blitz - Replay");
+		archive = replay;
+		processor = new ReplayCanvasProcessor(archive);
+		resumeSpeed = 1;
+		
+		if (layout.getBackground() != null) {
+			try {
+				background = ImageIO.read(new File(layout.getBackground()));
+			} catch (IOException e) {
+				System.out.println("Unable to load background...");
+			}
+		}
+		
+		canvas = new Canvas(processor) {
+			@Override
+			public void paintComponent(Graphics g) {
+				g.drawImage(background, 0, 0, null);
+				g.setColor(BilliardsTable.canvasColor);
+				g.fillRect(canvasBounds.x, canvasBounds.y, canvasBounds.width, canvasBounds.height);
+				super.paintComponent(g);
+			}
+			
+			@Override
+			protected void update() {
+				super.update();
+				updateStatus();
+			}
+		};
+		
+		// same objects, in the same order, as BilliardsTable so ids match the recording
+		layout.createPockets().forEach(p -> canvas.add(p));
+		TablePhysics.rackBalls(layout).forEach(b -> canvas.add(b));
+		
+		canvas.setPreferredSize(layout.getSize());
+		canvas.setCanvasBounds(layout.getCanvasBounds());
+		canvas.setAnimationDelay(30);
+		canvas.setFocusable(true);
+		canvas.addKeyListener(new KeyAdapter() {
+			@Override
+			public void keyPressed(KeyEvent e) {
+				onKey(e.getKeyCode());
+			}
+		});
+		
+		statusLabel = new JLabel(" ");
+		setLayout(new BorderLayout());
+		add(canvas, BorderLayout.CENTER);
+		add(statusLabel, BorderLayout.SOUTH);
+		pack();
+		setResizable(false);
+		
+		canvas.start();
+	}
+	
+	/**
+	 * Launch viewer
+	 * @param args replay file [table layout]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: ReplayViewer replay [table layout]");
+			return;
+		}
+		
+		ReplayArchive archive = new ReplayArchive(Paths.get(args[0]));
+		TableLayout layout = args.length > 1 ? TableLayout.load(Paths.get(args[1])) : TableLayout.loadDefault();
+		
+		SwingUtilities.invokeLater(() -> {
+			JFrame frame = new ReplayViewer(archive, layout);
+			frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+			frame.setVisible(true);
+		});
+	}
+	
+	/*
+	 * Playback controls
+	 */
+	private void onKey(int keyCode) {
+		double speed = processor.getSpeed();
+		
+		switch (keyCode) {
+			case KeyEvent.VK_SPACE:
+				if (speed == 0) {
+					processor.setSpeed(resumeSpeed);
+				} else {
+					resumeSpeed = speed;
+					processor.setSpeed(0);
+				}
+				break;
+				
+			case KeyEvent.VK_RIGHT:
+				processor.setSpeed(speed > 0 ? Math.min(speed * 2, MAX_SPEED) : 1);
+				break;
+				
+			case KeyEvent.VK_LEFT:
+				processor.setSpeed(speed < 0 ? Math.max(speed * 2, -MAX_SPEED) : -1);
+				break;
+				
+			case KeyEvent.VK_UP:
+				processor.setSpeed(Math.max(-MAX_SPEED, Math.min(MAX_SPEED, speed * 2)));
+				break;
+				
+			case KeyEvent.VK_DOWN:
+				processor.setSpeed(speed / 2);
+				break;
+				
+			case KeyEvent.VK_PAGE_DOWN:
+				processor.seekShot(archive.getShotOf(processor.getFrame()) + 1);
+				break;
+				
+			case KeyEvent.VK_PAGE_UP:
+				processor.seekShot(archive.getShotOf(processor.getFrame()) - 1);
+				break;
+				
+			case KeyEvent.VK_HOME:
+				processor.seekFrame(0);
+				break;
+				
+			default:
+				break;
+		}
+	}
+	
+	/*
+	 * Show playback position
+	 */
+	private void updateStatus() {
+		statusLabel.setText(String.format("Shot %d/%d, frame %d/%d, speed %sx", 
+				archive.getShotOf(processor.getFrame()) + 1, archive.getShotCount(),
+				processor.getFrame() + 1, archive.getFrameCount(), processor.getSpeed()));
+	}
+}
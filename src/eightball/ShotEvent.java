@@ -0,0 +1,31 @@
+package eightball;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a shot on a BilliardsTable, from striking the cue ball until every ball is at rest
+ * The event starts when the shot begins and is committed when it ends; a shot interrupted by reset() is not recorded.
+ */
+@Name("eightball.Shot")
+@Label("Shot")
+@Category({ "Eightball", "Game" })
+@Description("A shot, from striking the cue ball until the balls come to rest")
+@StackTrace(false)
+class ShotEvent extends jdk.jfr.Event {
+	// never committed, only asked isEnabled(), so shots allocate an event only while it is being recorded
+	static final ShotEvent PROBE = new ShotEvent();
+	
+	@Label("Cue Ball Speed")
+	@Description("Pixels per update")
+	double speed;
+	
+	@Label("Physics Steps")
+	int steps;
+	
+	@Label("Balls Captured")
+	int captured;
+}
@@ -0,0 +1,260 @@
+package eightball;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import canvas.physics.WallSegment;
+
+/**
+ * Table geometry loaded from a layout file
+ * Defines the playing surface, pockets and cushion segments (rails and pocket jaws),
+ * see resources/tables/standard.table for the format
+ */
+public class TableLayout {
+	private Dimension size;
+	private String background;
+	private Rectangle canvasBounds;
+	private Point cueLocation;
+	private Point rackLocation;
+	private List<PocketDefinition> pockets;
+	private List<WallSegment> cushions;
+	
+	public static final String DEFAULT_LAYOUT = "resources/tables/standard.table";
+	
+	/**
+	 * Constructor
+	 */
+	private TableLayout() {
+		pockets = new ArrayList<PocketDefinition>();
+		cushions = new ArrayList<WallSegment>();
+	}
+	
+	/**
+	 * Load the standard table
+	 * @return TableLayout
+	 * @throws IOException if the layout file cannot be read
+	 */
+	public static TableLayout loadDefault() throws IOException {
+		return load(Paths.get(DEFAULT_LAYOUT));
+	}
+	
+	/**
+	 * Load a table layout
+	 * @param path Layout file
+	 * @return TableLayout
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file is not a valid layout
+	 */
+	public static TableLayout load(Path path) throws IOException {
+		TableLayout layout = new TableLayout();
+		
+		try (BufferedReader reader = Files.newBufferedReader(path)) {
+			String line;
+			int lineNumber = 0;
+			
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				
+				try {
+					layout.parse(line.split("\\s+"));
+				} catch (RuntimeException e) {
+					throw new IllegalArgumentException(
+							String.format("%s:%d: invalid layout entry '%s' (%s)", path, lineNumber, line, e.getMessage()), e);
+				}
+			}
+		}
+		
+		layout.validate(path);
+		return layout;
+	}
+	
+	/**
+	 * @return Preferred size of the table component
+	 */
+	public Dimension getSize() {
+		return size;
+	}
+	
+	/**
+	 * @return Path of background image, may be null
+	 */
+	public String getBackground() {
+		return background;
+	}
+	
+	/**
+	 * @return Bounds of the playing surface
+	 */
+	public Rectangle getCanvasBounds() {
+		return new Rectangle(canvasBounds);
+	}
+	
+	/**
+	 * @return Initial cue ball location
+	 */
+	public Point getCueLocation() {
+		return new Point(cueLocation);
+	}
+	
+	/**
+	 * @return Location of the apex ball of the rack
+	 */
+	public Point getRackLocation() {
+		return new Point(rackLocation);
+	}
+	
+	/**
+	 * @return Number of pockets
+	 */
+	public int getPocketCount() {
+		return pockets.size();
+	}
+	
+	/**
+	 * Create Pocket objects for this layout
+	 * @return Pockets, in layout order
+	 */
+	public List<Pocket> createPockets() {
+		List<Pocket> result = new ArrayList<Pocket>();
+		for (PocketDefinition def : pockets) {
+			result.add(new Pocket(def.position, def.location, def.size, def.polygon, def.visible));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return Cushion segments, rails and pocket jaws
+	 */
+	public List<WallSegment> getCushions() {
+		return Collections.unmodifiableList(cushions);
+	}
+	
+	/*
+	 * Parse a single layout entry
+	 */
+	private void parse(String[] tokens) {
+		switch (tokens[0]) {
+			case "size":
+				size = new Dimension(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+				break;
+				
+			case "background":
+				background = tokens[1];
+				break;
+				
+			case "canvas":
+				canvasBounds = new Rectangle(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]),
+						Integer.parseInt(tokens[3]), Integer.parseInt(tokens[4]));
+				break;
+				
+			case "cue":
+				cueLocation = new Point(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+				break;
+				
+			case "rack":
+				rackLocation = new Point(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+				break;
+				
+			case "pocket":
+				PocketDefinition def = new PocketDefinition();
+				def.position = Pocket.positionOf(tokens[1]);
+				def.location = new Point(Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]));
+				def.size = Integer.parseInt(tokens[4]);
+				def.visible = parseVisibility(tokens[5]);
+				def.polygon = new Polygon();
+				for (int i = 6; i < tokens.length; i++) {
+					Point p = parsePoint(tokens[i]);
+					def.polygon.addPoint(p.x, p.y);
+				}
+				
+				if (def.polygon.npoints < 3) {
+					throw new IllegalArgumentException("pocket polygon needs at least 3 points");
+				}
+				pockets.add(def);
+				break;
+				
+			case "cushion":
+				if (tokens.length < 3) {
+					throw new IllegalArgumentException("cushion needs at least 2 points");
+				}
+				
+				Point from = parsePoint(tokens[1]);
+				for (int i = 2; i < tokens.length; i++) {
+					Point to = parsePoint(tokens[i]);
+					cushions.add(new WallSegment(from.x, from.y, to.x, to.y));
+					from = to;
+				}
+				break;
+				
+			default:
+				throw new IllegalArgumentException(String.format("unknown entry type: %s", tokens[0]));
+		}
+	}
+	
+	/*
+	 * Check all required entries are present
+	 */
+	private void validate(Path path) {
+		if (size == null || canvasBounds == null || cueLocation == null || rackLocation == null) {
+			throw new IllegalArgumentException(String.format("%s: size, canvas, cue and rack are required", path));
+		}
+		
+		if (pockets.isEmpty() || cushions.isEmpty()) {
+			throw new IllegalArgumentException(String.format("%s: at least one pocket and cushion are required", path));
+		}
+	}
+	
+	/*
+	 * Parse "x,y"
+	 */
+	private static Point parsePoint(String token) {
+		String[] xy = token.split(",");
+		if (xy.length != 2) {
+			throw new IllegalArgumentException(String.format("expected x,y but found %s", token));
+		}
+		
+		return new Point(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+	}
+	
+	/*
+	 * Parse "visible" or "hidden"
+	 */
+	private static boolean parseVisibility(String token) {
+		switch (token) {
+			case "visible":
+				return true;
+			
+			case "hidden":
+				return false;
+			
+			default:
+				throw new IllegalArgumentException(String.format("expected visible or hidden but found %s", token));
+		}
+	}
+	
+	/*
+	 * Pocket entry
+	 */
+	private static class PocketDefinition {
+		int position;
+		Point location;
+		int size;
+		boolean visible;
+		Polygon polygon;
+	}
+}
@@ -0,0 +1,113 @@
+package eightball;
+
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.vecmath.Tuple2i;
+
+import canvas.physics.*;
+import eightball.enums.BallDefinition;
+
+/**
+ * Physics model and initial ball placement for a billiards table
+ * The model is loaded from a file, see resources/physics/standard.physics
+ * Shared by BilliardsTable and headless simulations so both play by the same physics
+ */
+public class TablePhysics {
+	public static final String DEFAULT_MODEL = "resources/physics/standard.physics";
+	public static final String POCKET_LISTENER = "pocket";	// name of the pocket listener in model files
+	
+	// rack offsets from the apex ball, indexed by ball number
+	private static final int[] RACK_OFFSET_X = { 0, 0, 26, 26, 52, 52, 52, 78, 78, 78, 78, 104, 104, 104, 104, 104};
+	private static final int[] RACK_OFFSET_Y = { 0, 50, 38, 64, 25, 51, 76, 12, 38, 64, 90, 0, 26, 52, 78, 104 };
+	
+	private TablePhysics() {
+	}
+	
+	/**
+	 * Load the standard physics model for billiard balls and pockets
+	 * @param pocketListener Handles balls reaching a pocket
+	 * @return BasicPhysicsModel
+	 * @throws IOException if the model file cannot be read
+	 */
+	public static BasicPhysicsModel loadDefaultModel(CustomCollisionListener pocketListener) throws IOException {
+		return loadModel(Paths.get(DEFAULT_MODEL), pocketListener);
+	}
+	
+	/**
+	 * Load a physics model for billiard balls and pockets
+	 * @param path Model file, see BasicPhysicsModel for the format
+	 * @param pocketListener Handles balls reaching a pocket, named POCKET_LISTENER in the file
+	 * @return BasicPhysicsModel
+	 * @throws IOException if the model file cannot be read
+	 * @throws IllegalArgumentException if the file is not a valid model
+	 */
+	public static BasicPhysicsModel loadModel(Path path, CustomCollisionListener pocketListener) throws IOException {
+		Map<String, CustomCollisionListener> listeners = new HashMap<String, CustomCollisionListener>();
+		listeners.put(POCKET_LISTENER, pocketListener);
+		
+		return BasicPhysicsModel.load(path, listeners);
+	}
+	
+	/**
+	 * Create and initialize a processor for a table layout
+	 * Rails and pocket jaws are wall segments from the layout, so the canvas has no holes
+	 * @param layout Table geometry
+	 * @param pocketListener Handles balls reaching a pocket
+	 * @return BasicPhysicsCanvasProcessor
+	 */
+	public static BasicPhysicsCanvasProcessor createProcessor(TableLayout layout, CustomCollisionListener pocketListener) {
+		try {
+			return createProcessor(layout, loadDefaultModel(pocketListener).freeze());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to load physics model", e);
+		}
+	}
+	
+	/**
+	 * Create and initialize a processor for a table layout with a given physics model
+	 * @param layout Table geometry
+	 * @param model Physics model, custom collisions bound to this table's pocket listener
+	 * @return BasicPhysicsCanvasProcessor
+	 */
+	public static BasicPhysicsCanvasProcessor createProcessor(TableLayout layout, FrozenPhysicsModel model) {
+		BasicPhysicsCanvasProcessor processor = new BasicPhysicsCanvasProcessor(model);
+		processor.initialize(layout.getCanvasBounds(), new HashMap<Integer, Set<Tuple2i>>(), BilliardBall.ballSize, 16);
+		processor.setWallSegments(layout.getCushions());
+		return processor;
+	}
+	
+	/**
+	 * Create the cue ball and racked balls at their initial positions
+	 * @param layout Table geometry
+	 * @return Balls, indexed by ball number
+	 */
+	public static List<BilliardBall> rackBalls(TableLayout layout) {
+		List<BilliardBall> balls = new ArrayList<BilliardBall>();
+		
+		// Cue ball
+		Point cueLocation = layout.getCueLocation();
+		BilliardBall cue = new BilliardBall(BallDefinition.CUE);
+		cue.setLocation(new Point2D.Double(cueLocation.x, cueLocation.y));
+		balls.add(cue);
+		
+		// Standard Balls
+		Point rackLocation = layout.getRackLocation();
+		for (int i = 1; i < 16; i++) {
+			BilliardBall b = new BilliardBall(BallDefinition.valueOf(i));
+			b.setLocation(new Point2D.Double(rackLocation.x + RACK_OFFSET_X[i], rackLocation.y + RACK_OFFSET_Y[i]));
+			balls.add(b);
+		}
+		
+		return balls;
+	}
+}
@@ -0,0 +1,11 @@
+package eightball.enums;
+
+/**
+ * Outcome of a turn under EightBallRules
+ */
+public enum TurnResult {
+	CONTINUE,			// shooter sank one of their own balls and shoots again
+	NEXT_PLAYER,		// turn passes to the other player
+	WIN,				// shooter sank the eightball after clearing their group
+	EIGHTBALL_EARLY;	// shooter sank the eightball too early and loses
+}
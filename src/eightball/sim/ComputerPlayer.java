@@ -0,0 +1,48 @@
+package eightball.sim;
+
+import java.util.Random;
+
+import javax.vecmath.Vector2d;
+
+import eightball.EightBallRules;
+
+/**
+ * Computer controlled player for simulated games
+ * Implementations must be stateless (or thread safe) since a Tournament shares them between threads,
+ * and should take all randomness from the Random passed in so games are reproducible.
+ */
+public interface ComputerPlayer {
+	/**
+	 * @return Display name
+	 */
+	public String getName();
+	
+	/**
+	 * Choose the next shot
+	 * @param table Table, cue ball in place
+	 * @param rules Game state, it is the shooter's turn
+	 * @param random Source of randomness
+	 * @return Initial cue ball velocity
+	 */
+	public Vector2d chooseShot(TableSimulation table, EightBallRules rules, Random random);
+	
+	/**
+	 * Create a player by name
+	 * @param spec "random", "greedy" or "greedy:<aim noise in radians>"
+	 * @return ComputerPlayer
+	 */
+	public static ComputerPlayer forName(String spec) {
+		String[] parts = spec.split(":");
+		
+		switch (parts[0]) {
+			case "random":
+				return new RandomPlayer();
+				
+			case "greedy":
+				return parts.length > 1 ? new GreedyPlayer(Double.parseDouble(parts[1])) : new GreedyPlayer();
+				
+			default:
+				throw new IllegalArgumentException(String.format("Unknown player: %s", spec));
+		}
+	}
+}
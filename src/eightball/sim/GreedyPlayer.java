@@ -0,0 +1,182 @@
+package eightball.sim;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import javax.vecmath.Vector2d;
+
+import eightball.BilliardBall;
+import eightball.EightBallRules;
+import eightball.Pocket;
+import eightball.enums.BallType;
+
+/**
+ * Takes the easiest open pot
+ * For each legal ball and pocket, aims the cue ball at the ghost ball position (where the cue ball must be
+ * at contact to send the object ball toward the pocket), skipping shots blocked by other balls.
+ * The shot with the smallest cut angle over the shortest distance wins, and is played with gaussian aim noise.
+ */
+public class GreedyPlayer implements ComputerPlayer {
+	private double aimNoise;
+	
+	public static final double DEFAULT_AIM_NOISE = 0.01; // radians, standard deviation
+	
+	private static final double MIN_SPEED = 8;
+	private static final double MAX_SPEED = 40;
+	private static final double DISTANCE_PER_SPEED = 15; // pixels of travel per unit of initial speed
+	private static final double MIN_CUT_COSINE = 0.25; // cut angles wider than ~75 degrees are not attempted
+	
+	/**
+	 * Constructor
+	 */
+	public GreedyPlayer() {
+		this(DEFAULT_AIM_NOISE);
+	}
+	
+	/**
+	 * Constructor
+	 * @param noise Standard deviation of aim error, radians
+	 */
+	public GreedyPlayer(double noise) {
+		aimNoise = noise;
+	}
+	
+	/**
+	 * ComputerPlayer implementation
+	 */
+	public String getName() {
+		return String.format("greedy:%s", aimNoise);
+	}
+	
+	/**
+	 * ComputerPlayer implementation
+	 */
+	public Vector2d chooseShot(TableSimulation table, EightBallRules rules, Random random) {
+		Rectangle2D cue = table.getCueBall().getBounds();
+		double diameter = cue.getWidth();
+		
+		Vector2d best = null;
+		double bestScore = 0;
+		BilliardBall nearest = null;
+		double nearestDistance = Double.MAX_VALUE;
+		
+		for (int number = 1; number < 16; number++) {
+			BilliardBall ball = table.getBall(number);
+			if (ball == null || !isLegalTarget(ball, rules)) {
+				continue;
+			}
+			
+			Rectangle2D target = ball.getBounds();
+			double distance = Math.hypot(target.getCenterX() - cue.getCenterX(), target.getCenterY() - cue.getCenterY());
+			if (distance < nearestDistance) {
+				nearest = ball;
+				nearestDistance = distance;
+			}
+			
+			for (Pocket pocket : table.getPockets()) {
+				Rectangle2D pocketBounds = pocket.getBounds();
+				Vector2d toPocket = new Vector2d(pocketBounds.getCenterX() - target.getCenterX(), pocketBounds.getCenterY() - target.getCenterY());
+				double pocketDistance = toPocket.length();
+				toPocket.normalize();
+				
+				// ghost ball: cue ball center at contact
+				double ghostX = target.getCenterX() - (toPocket.x * diameter);
+				double ghostY = target.getCenterY() - (toPocket.y * diameter);
+				Vector2d aim = new Vector2d(ghostX - cue.getCenterX(), ghostY - cue.getCenterY());
+				double aimDistance = aim.length();
+				if (aimDistance == 0) {
+					continue;
+				}
+				aim.normalize();
+				
+				double cutCosine = aim.dot(toPocket);
+				if (cutCosine < MIN_CUT_COSINE) {
+					continue;
+				}
+				
+				if (isBlocked(table, number, cue.getCenterX(), cue.getCenterY(), ghostX, ghostY, diameter) ||
+						isBlocked(table, number, target.getCenterX(), target.getCenterY(), 
+								pocketBounds.getCenterX(), pocketBounds.getCenterY(), diameter)) {
+					continue;
+				}
+				
+				double score = cutCosine / (aimDistance + pocketDistance);
+				if (score > bestScore) {
+					bestScore = score;
+					best = aim;
+					best.scale(clampSpeed((aimDistance + (pocketDistance / cutCosine)) / DISTANCE_PER_SPEED));
+				}
+			}
+		}
+		
+		// nothing open: hit the nearest legal ball firmly and hope for the best
+		if (best == null && nearest != null) {
+			Rectangle2D target = nearest.getBounds();
+			best = new Vector2d(target.getCenterX() - cue.getCenterX(), target.getCenterY() - cue.getCenterY());
+			best.normalize();
+			best.scale(MAX_SPEED / 2);
+		}
+		
+		if (best == null) {
+			return new RandomPlayer().chooseShot(table, rules, random);
+		}
+		
+		return addNoise(best, random);
+	}
+	
+	/*
+	 * Can the shooter aim for this ball
+	 */
+	private boolean isLegalTarget(BilliardBall ball, EightBallRules rules) {
+		BallType type = ball.getDefinition().getType();
+		BallType myType = rules.getShooterType();
+		
+		if (myType == BallType.NONE) {
+			return type == BallType.SOLID || type == BallType.STRIPE;
+		}
+		
+		if (rules.getCapturedCount(myType) == 7) {
+			return type == BallType.EIGHTBALL;
+		}
+		
+		return type == myType;
+	}
+	
+	/*
+	 * Does any ball other than the cue ball and target lie within a ball diameter of the path
+	 */
+	private boolean isBlocked(TableSimulation table, int targetNumber, double x1, double y1, double x2, double y2, double diameter) {
+		for (int number = 1; number < 16; number++) {
+			BilliardBall ball = table.getBall(number);
+			if (ball == null || number == targetNumber) {
+				continue;
+			}
+			
+			Rectangle2D b = ball.getBounds();
+			if (Line2D.ptSegDist(x1, y1, x2, y2, b.getCenterX(), b.getCenterY()) < diameter) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/*
+	 * Rotate shot by a random aim error
+	 */
+	private Vector2d addNoise(Vector2d shot, Random random) {
+		double error = random.nextGaussian() * aimNoise;
+		double cos = Math.cos(error);
+		double sin = Math.sin(error);
+		
+		return new Vector2d((shot.x * cos) - (shot.y * sin), (shot.x * sin) + (shot.y * cos));
+	}
+	
+	/*
+	 * Limit speed to a sensible range
+	 */
+	private double clampSpeed(double speed) {
+		return Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed));
+	}
+}
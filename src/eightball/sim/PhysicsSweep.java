@@ -0,0 +1,358 @@
+package eightball.sim;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import canvas.physics.FrozenPhysicsModel;
+import eightball.TableLayout;
+
+/**
+ * Calibrates physics coefficients against a corpus of reference shots (see ShotCorpus)
+ * Every combination of the swept coefficients plays every shot in the corpus, starting from a physics model
+ * file, and combinations are ranked by RMS distance between simulated and reference final ball positions.
+ *
+ * Worker threads each reuse one TableSimulation, swapping in a model per combination, and take the next
+ * combination from a shared counter. A combination is abandoned once its error is too large for the top
+ * results, so the ranking is exact but the number of shots played depends on scheduling.
+ *
+ * Usage: PhysicsSweep corpus threads top model parameter [parameter ...]
+ * Parameters are friction:<type>=<from>:<to>:<steps> or restitution:<type>:<other type>=<from>:<to>:<steps>,
+ * e.g. restitution:BilliardBall:Wall=0.6:0.9:31, with types as named in the model file.
+ */
+public class PhysicsSweep {
+	private TableLayout layout;
+	private ShotCorpus corpus;
+	private Path modelPath;
+	private Parameter[] parameters;
+	private int combinationCount;
+	private int top;
+	private PriorityQueue<Result> best;		// worst of the best first
+	private volatile double cutoff;			// squared error sum of the worst of the best, once there are top results
+	private AtomicLong shotsPlayed;
+	private AtomicInteger abandoned;
+	private double elapsedSeconds;
+	
+	/**
+	 * Constructor
+	 * @param tableLayout Table geometry
+	 * @param shotCorpus Reference shots
+	 * @param model Physics model file with the coefficients which are not swept
+	 * @param sweptParameters Coefficients to sweep, see Parameter.parse()
+	 * @param resultCount Number of best combinations to keep
+	 */
+	public PhysicsSweep(TableLayout tableLayout, ShotCorpus shotCorpus, Path model, List<Parameter> sweptParameters, int resultCount) {
+		layout = tableLayout;
+		corpus = shotCorpus;
+		modelPath = model;
+		parameters = sweptParameters.toArray(new Parameter[sweptParameters.size()]);
+		top = resultCount;
+		
+		long count = 1;
+		for (Parameter p : parameters) {
+			count *= p.getSteps();
+		}
+		if (count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("Too many combinations: %d", count));
+		}
+		combinationCount = (int)count;
+	}
+	
+	/**
+	 * Play every combination
+	 * @param threads Number of worker threads
+	 * @throws InterruptedException if interrupted while waiting for workers
+	 */
+	public void run(int threads) throws InterruptedException {
+		best = new PriorityQueue<Result>((a, b) -> b.compareTo(a));
+		cutoff = Double.MAX_VALUE;
+		shotsPlayed = new AtomicLong();
+		abandoned = new AtomicInteger();
+		
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		AtomicInteger nextCombination = new AtomicInteger();
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < threads; i++) {
+				workers.add(pool.submit(() -> {
+					TableSimulation table = new TableSimulation(layout);
+					FrozenPhysicsModel base = table.loadPhysicsModel(modelPath);
+					
+					int combination;
+					while ((combination = nextCombination.getAndIncrement()) < combinationCount) {
+						FrozenPhysicsModel model = base;
+						for (int p = 0; p < parameters.length; p++) {
+							model = parameters[p].apply(model, getValue(combination, p));
+						}
+						
+						table.setPhysicsModel(model);
+						evaluate(combination, table);
+					}
+					return null;
+				}));
+			}
+			
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Sweep failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		
+		elapsedSeconds = (System.nanoTime() - start) / 1e9;
+	}
+	
+	/**
+	 * Best combinations of the last run()
+	 * @return Results, lowest error first
+	 */
+	public List<Result> getResults() {
+		List<Result> results = new ArrayList<Result>(best);
+		results.sort(null);
+		return results;
+	}
+	
+	/**
+	 * @return Number of combinations
+	 */
+	public int getCombinationCount() {
+		return combinationCount;
+	}
+	
+	/**
+	 * Value of a swept parameter for a combination
+	 * @param combination Combination index
+	 * @param parameter Parameter index
+	 * @return Coefficient
+	 */
+	public double getValue(int combination, int parameter) {
+		for (int p = parameters.length - 1; p > parameter; p--) {
+			combination /= parameters[p].getSteps();
+		}
+		
+		return parameters[parameter].getValue(combination % parameters[parameter].getSteps());
+	}
+	
+	/**
+	 * Print the best combinations to stdout
+	 */
+	public void printReport() {
+		long shots = shotsPlayed.get();
+		System.out.println(String.format("Combinations: %d in %.2fs (%.0f combinations/s, %.0f shots/s), %d abandoned early",
+				combinationCount, elapsedSeconds, combinationCount / elapsedSeconds, shots / elapsedSeconds, abandoned.get()));
+		
+		StringBuilder header = new StringBuilder("rank  rms error");
+		for (Parameter p : parameters) {
+			header.append("  ").append(p.getName());
+		}
+		System.out.println(header);
+		
+		int rank = 1;
+		for (Result result : getResults()) {
+			StringBuilder line = new StringBuilder(String.format("%4d  %9.3f", rank++, result.getError()));
+			for (int p = 0; p < parameters.length; p++) {
+				line.append(String.format("  %" + parameters[p].getName().length() + ".4f", getValue(result.getCombination(), p)));
+			}
+			System.out.println(line);
+		}
+	}
+	
+	/**
+	 * Run a sweep from the command line
+	 * @param args corpus threads top model parameter [parameter ...]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 5) {
+			System.out.println("Usage: PhysicsSweep corpus threads top model parameter [parameter ...]");
+			return;
+		}
+		
+		ShotCorpus corpus = ShotCorpus.load(Paths.get(args[0]));
+		int threads = Integer.parseInt(args[1]);
+		int top = Integer.parseInt(args[2]);
+		Path model = Paths.get(args[3]);
+		
+		List<Parameter> parameters = new ArrayList<Parameter>();
+		for (int i = 4; i < args.length; i++) {
+			parameters.add(Parameter.parse(args[i]));
+		}
+		
+		PhysicsSweep sweep = new PhysicsSweep(TableLayout.loadDefault(), corpus, model, parameters, top);
+		System.out.println(String.format("%d combinations of %d shots on %d threads, model %s",
+				sweep.getCombinationCount(), corpus.size(), threads, model));
+		
+		sweep.run(threads);
+		sweep.printReport();
+	}
+	
+	/*
+	 * Play every shot with the table's model, giving up once the combination can't make the top results
+	 */
+	private void evaluate(int combination, TableSimulation table) {
+		double sum = 0;
+		
+		for (int i = 0; i < corpus.size(); i++) {
+			ShotCorpus.Shot shot = corpus.get(i);
+			shot.setUp(table);
+			ShotResult result = shot.play(table);
+			shotsPlayed.incrementAndGet();
+			
+			for (int number = 0; number < ShotCorpus.BALL_COUNT; number++) {
+				double error = shot.getError(table, result, number);
+				sum += error * error;
+			}
+			
+			if (sum > cutoff) {
+				abandoned.incrementAndGet();
+				return;
+			}
+		}
+		
+		offer(new Result(combination, sum, Math.sqrt(sum / corpus.getBallCount())));
+	}
+	
+	/*
+	 * Keep a result if it is among the best so far
+	 */
+	private synchronized void offer(Result result) {
+		best.add(result);
+		if (best.size() > top) {
+			best.poll();
+		}
+		
+		if (best.size() == top) {
+			cutoff = best.peek().squaredError;
+		}
+	}
+	
+	/**
+	 * A coefficient to sweep over evenly spaced values
+	 */
+	public static class Parameter {
+		private String name;
+		private String type;
+		private String otherType;		// null for friction
+		private double from;
+		private double to;
+		private int steps;
+		
+		private Parameter(String parameterName, String objectType, String collidesWith, double fromValue, double toValue, int stepCount) {
+			name = parameterName;
+			type = objectType;
+			otherType = collidesWith;
+			from = fromValue;
+			to = toValue;
+			steps = stepCount;
+		}
+		
+		/**
+		 * Parse friction:<type>=<from>:<to>:<steps> or restitution:<type>:<other type>=<from>:<to>:<steps>
+		 * @param spec Parameter specification
+		 * @return Parameter
+		 * @throws IllegalArgumentException if the specification is not valid
+		 */
+		public static Parameter parse(String spec) {
+			String[] sides = spec.split("=");
+			String[] target = sides[0].split(":");
+			String[] range = (sides.length == 2) ? sides[1].split(":") : new String[0];
+			
+			boolean friction = target[0].equals("friction") && target.length == 2;
+			boolean restitution = target[0].equals("restitution") && target.length == 3;
+			if ((!friction && !restitution) || range.length != 3) {
+				throw new IllegalArgumentException(String.format("Invalid parameter %s, expected "
+						+ "friction:<type>=<from>:<to>:<steps> or restitution:<type>:<other type>=<from>:<to>:<steps>", spec));
+			}
+			
+			int steps = Integer.parseInt(range[2]);
+			if (steps < 1) {
+				throw new IllegalArgumentException(String.format("Invalid parameter %s, steps must be at least 1", spec));
+			}
+			
+			return new Parameter(sides[0], target[1], restitution ? target[2] : null,
+					Double.parseDouble(range[0]), Double.parseDouble(range[1]), steps);
+		}
+		
+		/**
+		 * @return Name, as given to parse()
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return Number of values
+		 */
+		public int getSteps() {
+			return steps;
+		}
+		
+		/**
+		 * @param step Value index
+		 * @return Coefficient
+		 */
+		public double getValue(int step) {
+			return (steps == 1) ? from : from + ((to - from) * step / (steps - 1));
+		}
+		
+		/**
+		 * Copy of a model with this coefficient set
+		 * @param model FrozenPhysicsModel
+		 * @param value Coefficient
+		 * @return FrozenPhysicsModel
+		 */
+		public FrozenPhysicsModel apply(FrozenPhysicsModel model, double value) {
+			return (otherType == null) ? model.withFriction(type, value) : model.withCollisionCoefficient(type, otherType, value);
+		}
+	}
+	
+	/**
+	 * Error of one combination
+	 */
+	public static class Result implements Comparable<Result> {
+		private int combination;
+		private double squaredError;		// sum of squared ball errors
+		private double error;
+		
+		private Result(int combinationIndex, double errorSum, double rmsError) {
+			combination = combinationIndex;
+			squaredError = errorSum;
+			error = rmsError;
+		}
+		
+		/**
+		 * @return Combination index, see getValue()
+		 */
+		public int getCombination() {
+			return combination;
+		}
+		
+		/**
+		 * @return RMS distance between simulated and reference final ball positions, pixels
+		 */
+		public double getError() {
+			return error;
+		}
+		
+		/**
+		 * Lower error first, then lower combination index
+		 */
+		@Override
+		public int compareTo(Result other) {
+			int byError = Double.compare(squaredError, other.squaredError);
+			return (byError != 0) ? byError : Integer.compare(combination, other.combination);
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package eightball.sim;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+import javax.vecmath.Vector2d;
+
+import canvas.CanvasObjectRegistry;
+import canvas.CanvasProcessor;
+import eightball.BilliardBall;
+import eightball.Pocket;
+import eightball.PocketCaptureListener;
+import eightball.TableLayout;
+import eightball.TablePhysics;
+
+/**
+ * Differential runner for two CanvasProcessor implementations
+ * Plays the shots of a corpus (see ShotCorpus) on two tables, one per processor, updating them in lockstep,
+ * and reports the first update after which any ball is further apart between the tables than a threshold,
+ * or sunk on one table only. Then times each processor alone over the corpus, for relative throughput.
+ * Only the CanvasProcessor interface is used, so any implementation can be compared (see ProcessorFactory).
+ *
+ * Usage: ProcessorDiff [processor A] [processor B] [corpus] [threshold] [rounds]
+ * Processors are named as for ProcessorFactory.forName(), e.g. basic, scalar, regions, islands.
+ */
+public class ProcessorDiff {
+	private TableLayout layout;
+	private ShotCorpus corpus;
+	private ProcessorFactory[] factories;
+	private String[] names;
+	private double threshold;
+	
+	// per shot, from compare()
+	private int[][] steps;				// [processor][shot]
+	private int[] firstDivergence;		// update after which the tables first diverged, -1 if never
+	private int[] divergedBall;
+	private double[] divergence;		// distance apart when first diverged, infinite if sunk on one table only
+	private double[] finalDivergence;	// furthest apart once both tables came to rest
+	
+	// per processor, from measureThroughput()
+	private double[] stepsPerSecond;
+	
+	public static final double DEFAULT_THRESHOLD = 0.01;		// pixels
+	public static final int DEFAULT_ROUNDS = 20;
+	
+	private static final long WARMUP_MILLIS = 2000;
+	
+	/**
+	 * Constructor
+	 * @param tableLayout Table geometry
+	 * @param shotCorpus Shots to play, only their starting positions and velocities are used
+	 * @param nameA Name of processor A, for reports
+	 * @param factoryA Creates processor A
+	 * @param nameB Name of processor B, for reports
+	 * @param factoryB Creates processor B
+	 * @param divergenceThreshold Distance apart, pixels, beyond which a ball has diverged
+	 */
+	public ProcessorDiff(TableLayout tableLayout, ShotCorpus shotCorpus, String nameA, ProcessorFactory factoryA,
+			String nameB, ProcessorFactory factoryB, double divergenceThreshold) {
+		layout = tableLayout;
+		corpus = shotCorpus;
+		names = new String[] { nameA, nameB };
+		factories = new ProcessorFactory[] { factoryA, factoryB };
+		threshold = divergenceThreshold;
+		
+		steps = new int[2][corpus.size()];
+		firstDivergence = new int[corpus.size()];
+		divergedBall = new int[corpus.size()];
+		divergence = new double[corpus.size()];
+		finalDivergence = new double[corpus.size()];
+		stepsPerSecond = new double[2];
+	}
+	
+	/**
+	 * Play every shot on both processors in lockstep
+	 */
+	public void compare() {
+		Table a = new Table(factories[0]);
+		Table b = new Table(factories[1]);
+		
+		for (int i = 0; i < corpus.size(); i++) {
+			ShotCorpus.Shot shot = corpus.get(i);
+			a.setUp(shot);
+			b.setUp(shot);
+			firstDivergence[i] = -1;
+			
+			boolean movingA = true;
+			boolean movingB = true;
+			for (int step = 1; (movingA || movingB) && step <= TableSimulation.DEFAULT_MAX_STEPS; step++) {
+				if (movingA) {
+					movingA = a.step();
+					steps[0][i] = step;
+				}
+				if (movingB) {
+					movingB = b.step();
+					steps[1][i] = step;
+				}
+				
+				if (firstDivergence[i] < 0) {
+					for (int number = 0; number < ShotCorpus.BALL_COUNT; number++) {
+						double distance = a.getDistance(b, number);
+						if (distance > threshold) {
+							firstDivergence[i] = step;
+							divergedBall[i] = number;
+							divergence[i] = distance;
+							break;
+						}
+					}
+				}
+			}
+			
+			finalDivergence[i] = 0;
+			for (int number = 0; number < ShotCorpus.BALL_COUNT; number++) {
+				finalDivergence[i] = Math.max(finalDivergence[i], a.getDistance(b, number));
+			}
+		}
+	}
+	
+	/**
+	 * Time each processor alone over the whole corpus
+	 * Rounds alternate between the processors, so both see the same conditions
+	 * @param rounds Number of times to play the corpus on each, after a warmup
+	 */
+	public void measureThroughput(int rounds) {
+		Table[] tables = new Table[factories.length];
+		for (int p = 0; p < factories.length; p++) {
+			tables[p] = new Table(factories[p]);
+		}
+		
+		long warmupEnd = System.nanoTime() + (WARMUP_MILLIS * 1000000);
+		while (System.nanoTime() < warmupEnd) {
+			for (Table table : tables) {
+				playCorpus(table);
+			}
+		}
+		
+		long[] totalSteps = new long[factories.length];
+		long[] totalNanos = new long[factories.length];
+		for (int round = 0; round < rounds; round++) {
+			for (int p = 0; p < factories.length; p++) {
+				long start = System.nanoTime();
+				totalSteps[p] += playCorpus(tables[p]);
+				totalNanos[p] += System.nanoTime() - start;
+			}
+		}
+		
+		for (int p = 0; p < factories.length; p++) {
+			stepsPerSecond[p] = totalSteps[p] / (totalNanos[p] / 1e9);
+		}
+	}
+	
+	/**
+	 * @return Number of shots which diverged in the last compare()
+	 */
+	public int getDivergedCount() {
+		int count = 0;
+		for (int first : firstDivergence) {
+			if (first >= 0) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Print divergence per shot and throughput to stdout
+	 */
+	public void printReport() {
+		System.out.println(String.format("%-24s %7s %7s %10s %5s %10s %10s",
+				"shot", "steps A", "steps B", "diverged", "ball", "distance", "at rest"));
+		
+		for (int i = 0; i < corpus.size(); i++) {
+			String diverged = (firstDivergence[i] < 0) ? "-" : String.format("step %d", firstDivergence[i]);
+			String ball = (firstDivergence[i] < 0) ? "-" : String.valueOf(divergedBall[i]);
+			String distance = (firstDivergence[i] < 0) ? "-" :
+				(Double.isInfinite(divergence[i]) ? "sunk" : String.format("%.4f", divergence[i]));
+			
+			System.out.println(String.format("%-24s %7d %7d %10s %5s %10s %10s", corpus.get(i).getName(), steps[0][i], steps[1][i],
+					diverged, ball, distance, Double.isInfinite(finalDivergence[i]) ? "sunk" : String.format("%.4f", finalDivergence[i])));
+		}
+		
+		System.out.println(String.format("%d of %d shots diverged beyond %s px", getDivergedCount(), corpus.size(), threshold));
+		
+		if (stepsPerSecond[0] > 0) {
+			for (int p = 0; p < names.length; p++) {
+				System.out.println(String.format("Processor %s (%s): %.0f steps/s", (p == 0 ? "A" : "B"), names[p], stepsPerSecond[p]));
+			}
+			System.out.println(String.format("B/A throughput: %.3f", stepsPerSecond[1] / stepsPerSecond[0]));
+		}
+	}
+	
+	/**
+	 * Compare two processors from the command line
+	 * @param args [processor A] [processor B] [corpus] [threshold] [rounds]
+	 */
+	public static void main(String[] args) throws IOException {
+		String nameA = args.length > 0 ? args[0] : "basic";
+		String nameB = args.length > 1 ? args[1] : "regions";
+		ShotCorpus corpus = ShotCorpus.load(Paths.get(args.length > 2 ? args[2] : ShotRegression.DEFAULT_CORPUS));
+		double threshold = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_THRESHOLD;
+		int rounds = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_ROUNDS;
+		
+		ProcessorDiff diff = new ProcessorDiff(TableLayout.loadDefault(), corpus,
+				nameA, ProcessorFactory.forName(nameA), nameB, ProcessorFactory.forName(nameB), threshold);
+		System.out.println(String.format("A: %s vs B: %s, %d shots", nameA, nameB, corpus.size()));
+		
+		diff.compare();
+		if (rounds > 0) {
+			diff.measureThroughput(rounds);
+		}
+		diff.printReport();
+	}
+	
+	/*
+	 * Play every shot to rest, returns the number of updates
+	 */
+	private long playCorpus(Table table) {
+		long total = 0;
+		for (ShotCorpus.Shot shot : corpus.getShots()) {
+			table.setUp(shot);
+			
+			int step = 0;
+			boolean moving = true;
+			while (moving && step < TableSimulation.DEFAULT_MAX_STEPS) {
+				moving = table.step();
+				step++;
+			}
+			total += step;
+		}
+		
+		return total;
+	}
+	
+	/*
+	 * Table driven only through the CanvasProcessor interface
+	 */
+	private class Table {
+		private CanvasObjectRegistry objects;
+		private CanvasProcessor processor;
+		private List<Pocket> pockets;
+		private BilliardBall[] balls;
+		private PocketCaptureListener pocketListener;
+		
+		Table(ProcessorFactory factory) {
+			objects = new CanvasObjectRegistry();
+			pocketListener = new PocketCaptureListener();
+			processor = factory.create(layout, pocketListener);
+			pockets = layout.createPockets();
+			
+			List<BilliardBall> rack = TablePhysics.rackBalls(layout);
+			balls = rack.toArray(new BilliardBall[rack.size()]);
+		}
+		
+		/*
+		 * Place the balls for a shot and strike the cue ball, registering objects in the same order every time
+		 */
+		void setUp(ShotCorpus.Shot shot) {
+			objects.clear();
+			for (Pocket p : pockets) {
+				objects.add(p);
+			}
+			
+			for (int number = 0; number < balls.length; number++) {
+				if (shot.isOnTable(number)) {
+					BilliardBall b = balls[number];
+					Rectangle2D bounds = b.getBounds();
+					b.setLocation(new Point2D.Double(shot.getStartX(number) - (bounds.getWidth() / 2),
+													 shot.getStartY(number) - (bounds.getHeight() / 2)));
+					b.setMovementVector(new Vector2d(0, 0));
+					b.setSuspended(false);
+					objects.add(b);
+				}
+			}
+			
+			balls[0].setMovementVector(new Vector2d(shot.getVelocityX(), shot.getVelocityY()));
+			pocketListener.clear();
+		}
+		
+		/*
+		 * One update, returns true while balls are moving
+		 */
+		boolean step() {
+			return processor.update(objects);
+		}
+		
+		/*
+		 * Distance between a ball's centers on two tables, infinite if sunk on only one, 0 if not in play
+		 */
+		double getDistance(Table other, int number) {
+			BilliardBall b = balls[number];
+			BilliardBall o = other.balls[number];
+			if (!objects.contains(b)) {
+				return 0;
+			}
+			
+			if (b.getSuspended() != o.getSuspended()) {
+				return Double.POSITIVE_INFINITY;
+			}
+			
+			Rectangle2D bounds = b.getBounds();
+			Rectangle2D otherBounds = o.getBounds();
+			return Math.hypot(bounds.getCenterX() - otherBounds.getCenterX(), bounds.getCenterY() - otherBounds.getCenterY());
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package eightball.sim;
+
+import java.util.concurrent.ForkJoinPool;
+
+import canvas.CanvasProcessor;
+import canvas.physics.BasicPhysicsCanvasProcessor;
+import canvas.physics.CustomCollisionListener;
+import eightball.TableLayout;
+import eightball.TablePhysics;
+
+/**
+ * Creates CanvasProcessors for a billiards table, so tools can run any implementation
+ * Implementations named by class must have a public no argument constructor.
+ */
+public interface ProcessorFactory {
+	/**
+	 * Create an initialized processor
+	 * @param layout Table geometry, the processor bounces balls off its cushions
+	 * @param pocketListener Must be called for every ball<-->pocket collision, to sink balls
+	 * @return CanvasProcessor
+	 */
+	public CanvasProcessor create(TableLayout layout, CustomCollisionListener pocketListener);
+	
+	/**
+	 * Create a factory by name
+	 * @param spec "basic" (the standard processor), "scalar" (with the scalar integrator),
+	 *             "regions" or "islands" (with the parallel narrowphase for every update),
+	 *             or the class name of a ProcessorFactory implementation
+	 * @return ProcessorFactory
+	 */
+	public static ProcessorFactory forName(String spec) {
+		switch (spec) {
+			case "basic":
+				return (layout, pocketListener) -> TablePhysics.createProcessor(layout, pocketListener);
+			
+			case "scalar":
+				return (layout, pocketListener) -> {
+					BasicPhysicsCanvasProcessor processor = TablePhysics.createProcessor(layout, pocketListener);
+					processor.setScalarIntegration(true);
+					return processor;
+				};
+			
+			case "regions":
+			case "islands":
+				return (layout, pocketListener) -> {
+					BasicPhysicsCanvasProcessor processor = TablePhysics.createProcessor(layout, pocketListener);
+					processor.setParallelNarrowphase(0, ForkJoinPool.commonPool());
+					processor.setParallelByIslands(spec.equals("islands"));
+					return processor;
+				};
+			
+			default:
+				try {
+					return (ProcessorFactory) Class.forName(spec).getDeclaredConstructor().newInstance();
+				} catch (ReflectiveOperationException | ClassCastException e) {
+					throw new IllegalArgumentException(String.format("Unknown processor: %s", spec), e);
+				}
+		}
+	}
+}
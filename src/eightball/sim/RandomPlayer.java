@@ -0,0 +1,33 @@
+package eightball.sim;
+
+import java.util.Random;
+
+import javax.vecmath.Vector2d;
+
+import eightball.EightBallRules;
+
+/**
+ * Shoots in a random direction at random speed
+ * Baseline opponent for Tournament
+ */
+public class RandomPlayer implements ComputerPlayer {
+	private static final double MIN_SPEED = 5;
+	private static final double MAX_SPEED = 40;
+	
+	/**
+	 * ComputerPlayer implementation
+	 */
+	public String getName() {
+		return "random";
+	}
+	
+	/**
+	 * ComputerPlayer implementation
+	 */
+	public Vector2d chooseShot(TableSimulation table, EightBallRules rules, Random random) {
+		double angle = random.nextDouble() * 2 * Math.PI;
+		double speed = MIN_SPEED + (random.nextDouble() * (MAX_SPEED - MIN_SPEED));
+		
+		return new Vector2d(Math.cos(angle) * speed, Math.sin(angle) * speed);
+	}
+}
@@ -0,0 +1,441 @@
+package eightball.sim;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import eightball.BilliardBall;
+import eightball.Pocket;
+
+/**
+ * Reference shots loaded from a corpus file, each a starting position, a cue ball velocity
+ * and the expected position of every ball once the shot comes to rest
+ *
+ * File format, one entry per line, # for comments:
+ *   shot <name> <vx> <vy>          starts a shot, cue ball velocity
+ *   ball <number> <x> <y>          ball center before the shot, balls not listed are off the table
+ *   final <number> <x> <y>         ball center after the shot
+ *   final <number> <pocket>        ball sunk, pocket position TOP_LEFT ... BOTTOM_RIGHT
+ * Every ball on the table before a shot needs a final entry.
+ */
+public class ShotCorpus {
+	private List<Shot> shots;
+	
+	// error counted for a ball that ends on the table when expected in a pocket, or in the wrong pocket
+	public static final double MISMATCH_ERROR = 200;
+	public static final int BALL_COUNT = 16;
+	
+	/**
+	 * Constructor
+	 */
+	private ShotCorpus() {
+		shots = new ArrayList<Shot>();
+	}
+	
+	/**
+	 * Load a corpus file
+	 * @param path Corpus file
+	 * @return ShotCorpus
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file is not a valid corpus
+	 */
+	public static ShotCorpus load(Path path) throws IOException {
+		ShotCorpus corpus = new ShotCorpus();
+		
+		try (BufferedReader reader = Files.newBufferedReader(path)) {
+			String line;
+			int lineNumber = 0;
+			
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				
+				try {
+					corpus.parse(line.split("\\s+"));
+				} catch (RuntimeException e) {
+					throw new IllegalArgumentException(
+							String.format("%s:%d: invalid corpus entry '%s' (%s)", path, lineNumber, line, e.getMessage()), e);
+				}
+			}
+		}
+		
+		if (corpus.shots.isEmpty()) {
+			throw new IllegalArgumentException(String.format("%s: no shots", path));
+		}
+		
+		for (Shot shot : corpus.shots) {
+			shot.validate(path);
+		}
+		
+		return corpus;
+	}
+	
+	/**
+	 * Write shots to a corpus file
+	 * @param path File to create or replace
+	 * @param shots Shots, e.g. from Shot.withFinalState()
+	 * @throws IOException if writing fails
+	 */
+	public static void save(Path path, List<Shot> shots) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+			for (Shot shot : shots) {
+				writer.write(String.format("shot %s %s %s", shot.name, shot.velocityX, shot.velocityY));
+				writer.newLine();
+				
+				for (int number = 0; number < BALL_COUNT; number++) {
+					if (shot.isOnTable(number)) {
+						writer.write(String.format("ball %d %s %s", number, shot.startX[number], shot.startY[number]));
+						writer.newLine();
+					}
+				}
+				
+				for (int number = 0; number < BALL_COUNT; number++) {
+					if (shot.finalPocket[number] >= 0) {
+						writer.write(String.format("final %d %s", number, Pocket.nameOf(shot.finalPocket[number])));
+						writer.newLine();
+					} else if (shot.isOnTable(number)) {
+						writer.write(String.format("final %d %s %s", number, shot.finalX[number], shot.finalY[number]));
+						writer.newLine();
+					}
+				}
+				
+				writer.newLine();
+			}
+		}
+	}
+	
+	/**
+	 * @return Number of shots
+	 */
+	public int size() {
+		return shots.size();
+	}
+	
+	/**
+	 * @param i Shot index, in file order
+	 * @return Shot
+	 */
+	public Shot get(int i) {
+		return shots.get(i);
+	}
+	
+	/**
+	 * @return Shots, in file order
+	 */
+	public List<Shot> getShots() {
+		return Collections.unmodifiableList(shots);
+	}
+	
+	/**
+	 * @return Number of balls on the table before a shot, over all shots
+	 */
+	public int getBallCount() {
+		int count = 0;
+		for (Shot shot : shots) {
+			for (int number = 0; number < BALL_COUNT; number++) {
+				if (shot.isOnTable(number)) {
+					count++;
+				}
+			}
+		}
+		
+		return count;
+	}
+	
+	/*
+	 * Parse a single corpus entry
+	 */
+	private void parse(String[] tokens) {
+		switch (tokens[0]) {
+			case "shot":
+				checkTokens(tokens, 4);
+				shots.add(new Shot(tokens[1], Double.parseDouble(tokens[2]), Double.parseDouble(tokens[3])));
+				break;
+				
+			case "ball":
+				checkTokens(tokens, 4);
+				getCurrentShot().setStart(parseNumber(tokens[1]), Double.parseDouble(tokens[2]), Double.parseDouble(tokens[3]));
+				break;
+				
+			case "final":
+				if (tokens.length == 3) {
+					getCurrentShot().setFinalPocket(parseNumber(tokens[1]), Pocket.positionOf(tokens[2]));
+				} else {
+					checkTokens(tokens, 4);
+					getCurrentShot().setFinal(parseNumber(tokens[1]), Double.parseDouble(tokens[2]), Double.parseDouble(tokens[3]));
+				}
+				break;
+				
+			default:
+				throw new IllegalArgumentException(String.format("unknown entry type: %s", tokens[0]));
+		}
+	}
+	
+	/*
+	 * Shot being parsed
+	 */
+	private Shot getCurrentShot() {
+		if (shots.isEmpty()) {
+			throw new IllegalArgumentException("entry before first shot");
+		}
+		
+		return shots.get(shots.size() - 1);
+	}
+	
+	/*
+	 * Entries have a fixed number of tokens
+	 */
+	private static void checkTokens(String[] tokens, int count) {
+		if (tokens.length != count) {
+			throw new IllegalArgumentException(String.format("expected %d values but found %d", count - 1, tokens.length - 1));
+		}
+	}
+	
+	/*
+	 * Parse a ball number, 0 for the cue ball
+	 */
+	private static int parseNumber(String token) {
+		int number = Integer.parseInt(token);
+		if (number < 0 || number >= BALL_COUNT) {
+			throw new IllegalArgumentException(String.format("ball number must be 0 to %d, found %d", BALL_COUNT - 1, number));
+		}
+		
+		return number;
+	}
+	
+	/**
+	 * One reference shot
+	 */
+	public static class Shot {
+		private String name;
+		private double velocityX;
+		private double velocityY;
+		private double[] startX;		// ball centers before the shot, NaN if off the table
+		private double[] startY;
+		private double[] finalX;		// ball centers after the shot, NaN if sunk or off the table
+		private double[] finalY;
+		private int[] finalPocket;		// Pocket position which sinks the ball, -1 if none
+		private double[] locationX;		// top left of ball bounds before the shot, for TableSimulation.loadPositions()
+		private double[] locationY;
+		
+		private Shot(String shotName, double vx, double vy) {
+			name = shotName;
+			velocityX = vx;
+			velocityY = vy;
+			startX = new double[BALL_COUNT];
+			startY = new double[BALL_COUNT];
+			finalX = new double[BALL_COUNT];
+			finalY = new double[BALL_COUNT];
+			finalPocket = new int[BALL_COUNT];
+			locationX = new double[BALL_COUNT];
+			locationY = new double[BALL_COUNT];
+			
+			Arrays.fill(startX, Double.NaN);
+			Arrays.fill(startY, Double.NaN);
+			Arrays.fill(finalX, Double.NaN);
+			Arrays.fill(finalY, Double.NaN);
+			Arrays.fill(finalPocket, -1);
+			Arrays.fill(locationX, Double.NaN);
+			Arrays.fill(locationY, Double.NaN);
+		}
+		
+		/**
+		 * @return Shot name
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return Cue ball velocity, x
+		 */
+		public double getVelocityX() {
+			return velocityX;
+		}
+		
+		/**
+		 * @return Cue ball velocity, y
+		 */
+		public double getVelocityY() {
+			return velocityY;
+		}
+		
+		/**
+		 * @param number Ball number
+		 * @return Is the ball on the table before the shot
+		 */
+		public boolean isOnTable(int number) {
+			return !Double.isNaN(startX[number]);
+		}
+		
+		/**
+		 * @param number Ball number
+		 * @return Ball center before the shot, x
+		 */
+		public double getStartX(int number) {
+			return startX[number];
+		}
+		
+		/**
+		 * @param number Ball number
+		 * @return Ball center before the shot, y
+		 */
+		public double getStartY(int number) {
+			return startY[number];
+		}
+		
+		/**
+		 * @param number Ball number
+		 * @return Expected ball center after the shot, x, NaN if sunk
+		 */
+		public double getFinalX(int number) {
+			return finalX[number];
+		}
+		
+		/**
+		 * @param number Ball number
+		 * @return Expected ball center after the shot, y, NaN if sunk
+		 */
+		public double getFinalY(int number) {
+			return finalY[number];
+		}
+		
+		/**
+		 * @param number Ball number
+		 * @return Pocket position expected to sink the ball, -1 if none
+		 */
+		public int getFinalPocket(int number) {
+			return finalPocket[number];
+		}
+		
+		/**
+		 * Set a table up for this shot
+		 * @param table TableSimulation
+		 */
+		public void setUp(TableSimulation table) {
+			table.loadPositions(locationX, locationY);
+		}
+		
+		/**
+		 * Play this shot on a table set up with setUp()
+		 * @param table TableSimulation
+		 * @return ShotResult
+		 */
+		public ShotResult play(TableSimulation table) {
+			return table.shoot(velocityX, velocityY);
+		}
+		
+		/**
+		 * Distance between where a ball ended up on a table and where it was expected
+		 * A ball sunk in the expected pocket has no error; a ball on the table when expected in a pocket,
+		 * in a pocket when expected on the table, or in the wrong pocket counts MISMATCH_ERROR
+		 * @param table TableSimulation after play()
+		 * @param result ShotResult from play()
+		 * @param number Ball number
+		 * @return Error, pixels, 0 for balls which were not on the table
+		 */
+		public double getError(TableSimulation table, ShotResult result, int number) {
+			if (!isOnTable(number)) {
+				return 0;
+			}
+			
+			int pocket = -1;
+			for (int i = 0; i < result.getCapturedCount(); i++) {
+				if (result.getCaptured(i) == number) {
+					pocket = result.getPocket(i);
+				}
+			}
+			
+			if (pocket >= 0 || finalPocket[number] >= 0) {
+				return (pocket == finalPocket[number]) ? 0 : MISMATCH_ERROR;
+			}
+			
+			Rectangle2D bounds = table.getBall(number).getBounds();
+			return Math.hypot(bounds.getCenterX() - finalX[number], bounds.getCenterY() - finalY[number]);
+		}
+		
+		/**
+		 * Copy of this shot expecting the final state it reached on a table
+		 * @param table TableSimulation after play()
+		 * @param result ShotResult from play()
+		 * @return Shot
+		 */
+		public Shot withFinalState(TableSimulation table, ShotResult result) {
+			Shot shot = new Shot(name, velocityX, velocityY);
+			for (int number = 0; number < BALL_COUNT; number++) {
+				if (isOnTable(number)) {
+					shot.setStart(number, startX[number], startY[number]);
+					shot.setFinal(number, Double.NaN, Double.NaN);
+				}
+			}
+			
+			for (int i = 0; i < result.getCapturedCount(); i++) {
+				shot.setFinalPocket(result.getCaptured(i), result.getPocket(i));
+			}
+			
+			for (int number = 0; number < BALL_COUNT; number++) {
+				if (isOnTable(number) && shot.finalPocket[number] < 0) {
+					Rectangle2D bounds = table.getBall(number).getBounds();
+					shot.setFinal(number, bounds.getCenterX(), bounds.getCenterY());
+				}
+			}
+			
+			return shot;
+		}
+		
+		/*
+		 * Place a ball before the shot
+		 */
+		private void setStart(int number, double x, double y) {
+			startX[number] = x;
+			startY[number] = y;
+			locationX[number] = x - (BilliardBall.ballSize.getWidth() / 2);
+			locationY[number] = y - (BilliardBall.ballSize.getHeight() / 2);
+		}
+		
+		/*
+		 * Expected ball position after the shot
+		 */
+		private void setFinal(int number, double x, double y) {
+			finalX[number] = x;
+			finalY[number] = y;
+			finalPocket[number] = -1;
+		}
+		
+		/*
+		 * Expected pocket after the shot
+		 */
+		private void setFinalPocket(int number, int position) {
+			finalX[number] = Double.NaN;
+			finalY[number] = Double.NaN;
+			finalPocket[number] = position;
+		}
+		
+		/*
+		 * Check the cue ball is on the table, and every ball on the table has a final position
+		 */
+		private void validate(Path path) {
+			if (!isOnTable(0)) {
+				throw new IllegalArgumentException(String.format("%s: shot %s has no cue ball", path, name));
+			}
+			
+			for (int number = 0; number < BALL_COUNT; number++) {
+				boolean hasFinal = !Double.isNaN(finalX[number]) || finalPocket[number] >= 0;
+				if (isOnTable(number) != hasFinal) {
+					throw new IllegalArgumentException(String.format("%s: shot %s ball %d needs both a ball and a final entry",
+							path, name, number));
+				}
+			}
+		}
+	}
+}
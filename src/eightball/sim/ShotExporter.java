@@ -0,0 +1,229 @@
+package eightball.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.vecmath.Vector2d;
+
+import eightball.EightBallRules;
+import eightball.TableLayout;
+
+/**
+ * Generates (table state, shot -> outcome) samples by playing computer player games headless,
+ * and streams them to a columnar binary file
+ * 
+ * Simulation threads fill ShotRecordBlocks from a fixed pool; the calling thread writes each full block
+ * with one gathering write, so simulation is never waiting on serialization.
+ * 
+ * File format, little endian:
+ *   magic "EBSHOT01", int column count, then per column: type (b=int8, s=int16, i=int32, f=float32),
+ *   name length (byte), name (ASCII)
+ *   blocks: int record count, then each column's values for those records, in header order
+ *   int 0 after the last block
+ * 
+ * Columns: game, shot, x0..x15 and y0..y15 (ball centers before the shot, NaN once captured), vx, vy,
+ * captured (bitmask by ball number), pocket0..pocket15 (Pocket position which captured the ball, -1 if none),
+ * collisions, steps (updates until at rest), completed (0 if cut off at the step limit)
+ * 
+ * Usage: ShotExporter output [samples] [threads] [player A] [player B] [seed]
+ */
+public class ShotExporter {
+	private TableLayout layout;
+	private ComputerPlayer[] players;
+	private long seed;
+	private long recordsWritten;
+	private long bytesWritten;
+	private double elapsedSeconds;
+	private double writeSeconds;
+	
+	public static final byte[] MAGIC = "EBSHOT01".getBytes(StandardCharsets.US_ASCII);
+	public static final int BLOCK_RECORDS = 32768;
+	
+	/**
+	 * Constructor
+	 * @param tableLayout Table geometry
+	 * @param playerA Player breaking in even numbered games
+	 * @param playerB Player breaking in odd numbered games
+	 * @param exportSeed Seed for all games
+	 */
+	public ShotExporter(TableLayout tableLayout, ComputerPlayer playerA, ComputerPlayer playerB, long exportSeed) {
+		layout = tableLayout;
+		players = new ComputerPlayer[] { playerA, playerB };
+		seed = exportSeed;
+	}
+	
+	/**
+	 * Generate samples and write them to a file
+	 * @param output File to create or replace
+	 * @param samples Number of shots to record
+	 * @param threads Number of simulation threads
+	 * @throws IOException if writing fails
+	 * @throws InterruptedException if interrupted while waiting for simulation threads
+	 */
+	public void export(Path output, long samples, int threads) throws IOException, InterruptedException {
+		// blocks cycle: free -> simulation thread -> full -> writer -> free
+		BlockingQueue<ShotRecordBlock> free = new ArrayBlockingQueue<ShotRecordBlock>(threads + 2);
+		BlockingQueue<ShotRecordBlock> full = new ArrayBlockingQueue<ShotRecordBlock>(threads + 2);
+		for (int i = 0; i < threads + 2; i++) {
+			free.add(new ShotRecordBlock(BLOCK_RECORDS));
+		}
+		
+		AtomicLong remaining = new AtomicLong(samples);
+		AtomicInteger nextGame = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		
+		long start = System.nanoTime();
+		long writeNanos = 0;
+		recordsWritten = 0;
+		
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer magic = ByteBuffer.wrap(MAGIC);
+			ByteBuffer columnHeader = ShotRecordBlock.getColumnHeader();
+			while (columnHeader.hasRemaining()) {
+				channel.write(new ByteBuffer[] { magic, columnHeader });
+			}
+			
+			for (int i = 0; i < threads; i++) {
+				workers.add(pool.submit(() -> {
+					generate(free, full, remaining, nextGame);
+					return null;
+				}));
+			}
+			
+			// write blocks until every worker has handed over its last one
+			int finished = 0;
+			while (finished < threads) {
+				ShotRecordBlock block = full.take();
+				recordsWritten += block.size();
+				
+				long writeStart = System.nanoTime();
+				if (block.size() > 0) {
+					block.writeTo(channel);
+				}
+				writeNanos += System.nanoTime() - writeStart;
+				
+				if (block.isLast()) {
+					finished++;
+				}
+				block.setLast(false);
+				free.put(block);
+			}
+			
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+			
+			ByteBuffer end = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0);
+			end.flip();
+			channel.write(end);
+			bytesWritten = channel.size();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Shot generation failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		
+		elapsedSeconds = (System.nanoTime() - start) / 1e9;
+		writeSeconds = writeNanos / 1e9;
+	}
+	
+	/**
+	 * Print summary of last export() to stdout
+	 */
+	public void printReport() {
+		System.out.println(String.format("Samples: %d in %.2fs (%.0f samples/s), %.1f MB", 
+				recordsWritten, elapsedSeconds, recordsWritten / elapsedSeconds, bytesWritten / 1e6));
+		System.out.println(String.format("Writer busy %.1f%% of the time", 100 * writeSeconds / elapsedSeconds));
+	}
+	
+	/**
+	 * Export from the command line
+	 * @param args output [samples] [threads] [player A] [player B] [seed]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.out.println("Usage: ShotExporter output [samples] [threads] [player A] [player B] [seed]");
+			return;
+		}
+		
+		Path output = Paths.get(args[0]);
+		long samples = args.length > 1 ? Long.parseLong(args[1]) : 100000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		ComputerPlayer playerA = ComputerPlayer.forName(args.length > 3 ? args[3] : "greedy:0.05");
+		ComputerPlayer playerB = ComputerPlayer.forName(args.length > 4 ? args[4] : "random");
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+		
+		ShotExporter exporter = new ShotExporter(TableLayout.loadDefault(), playerA, playerB, seed);
+		exporter.export(output, samples, threads);
+		exporter.printReport();
+	}
+	
+	/*
+	 * Simulation thread: play games, recording every shot, until the sample budget is used up
+	 */
+	private void generate(BlockingQueue<ShotRecordBlock> free, BlockingQueue<ShotRecordBlock> full, 
+			AtomicLong remaining, AtomicInteger nextGame) throws InterruptedException {
+		TableSimulation table = new TableSimulation(layout);
+		EightBallRules rules = new EightBallRules();
+		ShotRecordBlock block = free.take();
+		
+		try {
+			while (remaining.get() > 0) {
+				int game = nextGame.getAndIncrement();
+				Random random = new Random(seed * 0x9E3779B97F4A7C15L + game);
+				int breaker = game % 2;
+				
+				table.reset();
+				rules.reset();
+				boolean placeCueBall = false;
+				
+				for (int shot = 0; !rules.isGameOver() && shot < Tournament.DEFAULT_MAX_SHOTS; shot++) {
+					if (remaining.getAndDecrement() <= 0) {
+						return;
+					}
+					
+					if (placeCueBall) {
+						table.placeCueBallBehindLine(random);
+					}
+					
+					int shooter = rules.isFirstPlayersTurn() ? breaker : 1 - breaker;
+					Vector2d v = players[shooter].chooseShot(table, rules, random);
+					
+					block.addShot(game, shot, table, v.x, v.y);
+					ShotResult result = table.shoot(v.x, v.y);
+					block.addOutcome(result);
+					
+					if (block.isFull()) {
+						full.put(block);
+						block = free.take();
+					}
+					
+					rules.endTurn(result.getCapturedGroupBalls(), result.isScratch(), result.isEightballCaptured());
+					placeCueBall = result.isScratch();
+				}
+			}
+		} finally {
+			block.setLast(true);
+			full.put(block);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package eightball.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import eightball.EightBallRules;
+import eightball.TableLayout;
+import eightball.enums.TurnResult;
+
+/**
+ * Background search for a good shot, used for hints while a player aims
+ * Each request() snapshots the table and starts a time-budgeted search over shot angles and powers on a pool of
+ * daemon threads, simulating each candidate on a per-thread TableSimulation. Angles are visited coarse to fine,
+ * so the best hint so far is useful early. A new request or cancel() bumps the state version: workers stop
+ * at their next candidate, and hints from an older version are never returned.
+ * request() and getBest() never block.
+ */
+public class ShotHintSearch {
+	private TableLayout layout;
+	private ExecutorService pool;
+	private int threads;
+	private long budgetMillis;
+	private ThreadLocal<TableSimulation> tables;
+	private AtomicLong version;
+	private AtomicReference<Hint> best;
+	private List<Future<?>> running;
+	private Runnable listener;
+	
+	public static final long DEFAULT_BUDGET_MILLIS = 2000;
+	
+	// candidate shots: ANGLES directions (a power of two, see getAngle()) at each power
+	private static final int ANGLES = 512;
+	private static final double[] POWERS = { 12, 20, 30, 45 };
+	
+	// scoring, see score()
+	private static final double WIN_SCORE = 1000;
+	private static final double CAPTURE_SCORE = 10;
+	private static final double SCRATCH_SCORE = -10;
+	
+	/**
+	 * Constructor
+	 * @param tableLayout Table geometry
+	 * @param threadCount Number of search threads
+	 * @param budget Time limit per search, ms
+	 */
+	public ShotHintSearch(TableLayout tableLayout, int threadCount, long budget) {
+		layout = tableLayout;
+		threads = threadCount;
+		budgetMillis = budget;
+		version = new AtomicLong();
+		best = new AtomicReference<Hint>();
+		running = new ArrayList<Future<?>>();
+		tables = ThreadLocal.withInitial(() -> new TableSimulation(layout));
+		
+		AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "shot-hint-" + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		};
+		pool = Executors.newFixedThreadPool(threads, factory);
+	}
+	
+	/**
+	 * Start searching from a new table state, abandoning any search in progress
+	 * @param x Ball location (top left of bounds) per ball number, NaN if captured
+	 * @param y Ball location per ball number
+	 * @param rules Game state for scoring, copied; null to score captured balls only (single player)
+	 * @return Version of this search
+	 * @throws IllegalArgumentException if the game is over, so no shot can be scored
+	 */
+	public synchronized long request(double[] x, double[] y, EightBallRules rules) {
+		if (rules != null && rules.isGameOver()) {
+			cancel();
+			throw new IllegalArgumentException("Cannot search for a hint, the game is over");
+		}
+		
+		long searchVersion = cancel();
+		double[] searchX = x.clone();
+		double[] searchY = y.clone();
+		EightBallRules searchRules = (rules == null) ? null : new EightBallRules(rules);
+		long deadline = System.nanoTime() + (budgetMillis * 1000000);
+		AtomicInteger nextCandidate = new AtomicInteger();
+		
+		for (int i = 0; i < threads; i++) {
+			running.add(pool.submit(() -> search(searchVersion, searchX, searchY, searchRules, deadline, nextCandidate)));
+		}
+		
+		return searchVersion;
+	}
+	
+	/**
+	 * Abandon the current search, e.g. when a shot begins
+	 * @return New state version
+	 */
+	public synchronized long cancel() {
+		long newVersion = version.incrementAndGet();
+		for (Future<?> f : running) {
+			f.cancel(false);
+		}
+		running.clear();
+		
+		return newVersion;
+	}
+	
+	/**
+	 * @return Best hint found for the current table state, or null if none yet
+	 */
+	public Hint getBest() {
+		Hint hint = best.get();
+		return (hint != null && hint.version == version.get()) ? hint : null;
+	}
+	
+	/**
+	 * @param onImproved Called, from a search thread, when a better hint is found
+	 */
+	public void setListener(Runnable onImproved) {
+		listener = onImproved;
+	}
+	
+	/**
+	 * Stop all search threads
+	 */
+	public void shutdown() {
+		cancel();
+		pool.shutdownNow();
+	}
+	
+	/*
+	 * Search thread: evaluate candidates until the version changes, time runs out or all are done
+	 */
+	private void search(long searchVersion, double[] x, double[] y, EightBallRules rules, long deadline, AtomicInteger nextCandidate) {
+		TableSimulation table = tables.get();
+		int candidate;
+		
+		while (version.get() == searchVersion && System.nanoTime() < deadline && 
+				(candidate = nextCandidate.getAndIncrement()) < ANGLES * POWERS.length) {
+			double angle = getAngle(candidate / POWERS.length);
+			double power = POWERS[candidate % POWERS.length];
+			double vx = Math.cos(angle) * power;
+			double vy = Math.sin(angle) * power;
+			
+			table.loadPositions(x, y);
+			double score = score(table.shoot(vx, vy), rules);
+			if (score > 0) {
+				offer(new Hint(searchVersion, vx, vy, score));
+			}
+		}
+	}
+	
+	/*
+	 * Keep hint if it is for the current version and better than the best so far
+	 * Never replaces a hint from a newer version, so a worker finishing an abandoned search cannot wipe out the current best
+	 */
+	private void offer(Hint hint) {
+		Hint current;
+		do {
+			if (hint.version != version.get()) {
+				return;
+			}
+			
+			current = best.get();
+			if (current != null && (current.version > hint.version ||
+					(current.version == hint.version && current.score >= hint.score))) {
+				return;
+			}
+		} while (!best.compareAndSet(current, hint));
+		
+		Runnable onImproved = listener;
+		if (onImproved != null && hint.version == version.get()) {
+			onImproved.run();
+		}
+	}
+	
+	/*
+	 * Score a shot outcome for the shooter: winning beats continuing, which beats passing the turn;
+	 * scratching or sinking the eightball early is penalized
+	 */
+	private double score(ShotResult result, EightBallRules rules) {
+		int captured = result.getCapturedGroupBalls().size();
+		
+		if (rules == null) {
+			return (captured * CAPTURE_SCORE) + (result.isScratch() ? SCRATCH_SCORE : 0);
+		}
+		
+		EightBallRules outcome = new EightBallRules(rules);
+		TurnResult turn = outcome.endTurn(result.getCapturedGroupBalls(), result.isScratch(), result.isEightballCaptured());
+		
+		switch (turn) {
+			case WIN:
+				return WIN_SCORE;
+				
+			case EIGHTBALL_EARLY:
+				return -WIN_SCORE;
+				
+			case CONTINUE:
+				return captured * CAPTURE_SCORE;
+				
+			default:
+				return result.isScratch() ? SCRATCH_SCORE : 0;
+		}
+	}
+	
+	/*
+	 * Angle for the nth direction tried: bit-reversed index, so early directions are spread around the circle
+	 */
+	private static double getAngle(int n) {
+		int index = Integer.reverse(n) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(ANGLES));
+		return (2 * Math.PI * index) / ANGLES;
+	}
+	
+	/**
+	 * A suggested shot
+	 */
+	public static final class Hint {
+		private final long version;
+		private final double vx;
+		private final double vy;
+		private final double score;
+		
+		private Hint(long stateVersion, double x, double y, double hintScore) {
+			version = stateVersion;
+			vx = x;
+			vy = y;
+			score = hintScore;
+		}
+		
+		/**
+		 * @return Shot vector, x
+		 */
+		public double getX() {
+			return vx;
+		}
+		
+		/**
+		 * @return Shot vector, y
+		 */
+		public double getY() {
+			return vy;
+		}
+		
+		/**
+		 * @return Score of the simulated outcome
+		 */
+		public double getScore() {
+			return score;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package eightball.sim;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import eightball.BilliardBall;
+
+/**
+ * Bounded LRU cache of simulated shot outcomes
+ * Keyed on the physics model (FrozenPhysicsModel.getFingerprint()) and on ball positions, shot angle and
+ * shot power, each quantized, so nearly identical shots from nearly the same position share an entry, while
+ * outcomes simulated with one model are never returned after switching to another. Stores the ShotResult and where each ball came to rest, as numbers only.
+ * Thread safe, and may be shared by several TableSimulations (see TableSimulation.setOutcomeCache()).
+ */
+public class ShotOutcomeCache {
+	private LinkedHashMap<Key, Outcome> entries;
+	private int maxEntries;
+	private double positionQuantum;
+	private double angleQuantum;
+	private double powerQuantum;
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	public static final double DEFAULT_POSITION_QUANTUM = 0.5; // pixels
+	public static final double DEFAULT_ANGLE_QUANTUM = 0.0005; // radians
+	public static final double DEFAULT_POWER_QUANTUM = 0.05; // pixels per update
+	
+	private static final int CAPTURED = Integer.MIN_VALUE;
+	
+	/**
+	 * Constructor, default quantization
+	 * @param size Maximum number of entries
+	 */
+	public ShotOutcomeCache(int size) {
+		this(size, DEFAULT_POSITION_QUANTUM, DEFAULT_ANGLE_QUANTUM, DEFAULT_POWER_QUANTUM);
+	}
+	
+	/**
+	 * Constructor
+	 * @param size Maximum number of entries
+	 * @param position Ball position quantum, pixels
+	 * @param angle Shot angle quantum, radians
+	 * @param power Shot power quantum, pixels per update
+	 */
+	public ShotOutcomeCache(int size, double position, double angle, double power) {
+		if (size < 1) {
+			throw new IllegalArgumentException(String.format("Invalid cache size: %d", size));
+		}
+		
+		maxEntries = size;
+		positionQuantum = position;
+		angleQuantum = angle;
+		powerQuantum = power;
+		entries = new LinkedHashMap<Key, Outcome>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Outcome> eldest) {
+				if (size() > maxEntries) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Build the key for a shot from the current table and its physics model
+	 * @param table Table before the shot
+	 * @param vx Shot vector, x
+	 * @param vy Shot vector, y
+	 * @return Key
+	 */
+	public Key createKey(TableSimulation table, double vx, double vy) {
+		int[] values = new int[(2 * TableStateStore.BALLS) + 4];
+		
+		for (int number = 0; number < TableStateStore.BALLS; number++) {
+			BilliardBall b = table.getBall(number);
+			if (b == null) {
+				values[2 * number] = CAPTURED;
+				values[(2 * number) + 1] = CAPTURED;
+			} else {
+				Rectangle2D bounds = b.getBounds();
+				values[2 * number] = (int)Math.round(bounds.getX() / positionQuantum);
+				values[(2 * number) + 1] = (int)Math.round(bounds.getY() / positionQuantum);
+			}
+		}
+		
+		long model = table.getPhysicsModel().getFingerprint();
+		values[values.length - 4] = (int)(model >>> 32);
+		values[values.length - 3] = (int)model;
+		values[values.length - 2] = (int)Math.round(Math.atan2(vy, vx) / angleQuantum);
+		values[values.length - 1] = (int)Math.round(Math.hypot(vx, vy) / powerQuantum);
+		return new Key(values);
+	}
+	
+	/**
+	 * Look up a shot, counting a hit or miss
+	 * @param key Key from createKey()
+	 * @return Outcome, or null if not cached
+	 */
+	public synchronized Outcome get(Key key) {
+		Outcome outcome = entries.get(key);
+		if (outcome == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		
+		return outcome;
+	}
+	
+	/**
+	 * Store the outcome of a shot, evicting the least recently used entry if full
+	 * @param key Key from createKey(), built before the shot
+	 * @param table Table after the shot, at rest
+	 * @param result ShotResult
+	 */
+	public void put(Key key, TableSimulation table, ShotResult result) {
+		Outcome outcome = new Outcome(table, result);
+		synchronized (this) {
+			entries.put(key, outcome);
+		}
+	}
+	
+	/**
+	 * @return Number of lookups that found an entry
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return Number of lookups that did not find an entry
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * @return Number of entries evicted to stay within the size limit
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * @return Number of entries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Remove all entries and reset metrics
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+	
+	/**
+	 * toString() override, metrics summary
+	 */
+	@Override
+	public synchronized String toString() {
+		long lookups = hits + misses;
+		return String.format("ShotOutcomeCache(%d/%d entries, %d hits, %d misses, %.1f%% hit rate, %d evictions)", 
+				entries.size(), maxEntries, hits, misses, lookups == 0 ? 0 : 100.0 * hits / lookups, evictions);
+	}
+	
+	/**
+	 * Physics model, quantized table state and shot
+	 */
+	public static final class Key {
+		private final int[] values;
+		private final int hash;
+		
+		private Key(int[] quantized) {
+			values = quantized;
+			hash = Arrays.hashCode(values);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && ((Key) o).hash == hash && Arrays.equals(((Key) o).values, values);
+		}
+	}
+	
+	/**
+	 * Cached outcome: the ShotResult and resting location of each ball
+	 */
+	public static final class Outcome {
+		private final ShotResult result;
+		private final float[] x;		// location per ball number, NaN if off the table
+		private final float[] y;
+		private final boolean cueSuspended;
+		
+		private Outcome(TableSimulation table, ShotResult shotResult) {
+			result = shotResult;
+			x = new float[TableStateStore.BALLS];
+			y = new float[TableStateStore.BALLS];
+			cueSuspended = table.getCueBall().getSuspended();
+			
+			for (int number = 0; number < TableStateStore.BALLS; number++) {
+				BilliardBall b = table.getBall(number);
+				x[number] = (b == null) ? Float.NaN : (float)b.getBounds().getX();
+				y[number] = (b == null) ? Float.NaN : (float)b.getBounds().getY();
+			}
+		}
+		
+		/**
+		 * @return ShotResult
+		 */
+		public ShotResult getResult() {
+			return result;
+		}
+		
+		/**
+		 * @param number Ball number
+		 * @return Resting location, x, or NaN if captured
+		 */
+		public float getX(int number) {
+			return x[number];
+		}
+		
+		/**
+		 * @param number Ball number
+		 * @return Resting location, y, or NaN if captured
+		 */
+		public float getY(int number) {
+			return y[number];
+		}
+		
+		/**
+		 * @return Cue ball left in a pocket (scratch)
+		 */
+		public boolean isCueSuspended() {
+			return cueSuspended;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package eightball.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import eightball.BilliardBall;
+
+/**
+ * A block of shot records stored column by column in direct buffers
+ * Filled by one simulation thread, then written with a single gathering write (see ShotExporter)
+ */
+class ShotRecordBlock {
+	private ByteBuffer header;
+	private ByteBuffer[] columns;
+	private int capacity;
+	private int count;
+	private boolean last;
+	
+	public static final int BALLS = 16;
+	
+	// column types, stored in the file header
+	public static final byte TYPE_INT8 = 'b';
+	public static final byte TYPE_INT16 = 's';
+	public static final byte TYPE_INT32 = 'i';
+	public static final byte TYPE_FLOAT32 = 'f';
+	
+	// column indexes
+	private static final int GAME = 0;
+	private static final int SHOT = 1;
+	private static final int BALL_X = 2;
+	private static final int BALL_Y = BALL_X + BALLS;
+	private static final int SHOT_VX = BALL_Y + BALLS;
+	private static final int SHOT_VY = SHOT_VX + 1;
+	private static final int CAPTURED = SHOT_VY + 1;
+	private static final int POCKET = CAPTURED + 1;
+	private static final int COLLISIONS = POCKET + BALLS;
+	private static final int STEPS = COLLISIONS + 1;
+	private static final int COMPLETED = STEPS + 1;
+	private static final int COLUMN_COUNT = COMPLETED + 1;
+	
+	private static final String[] COLUMN_NAMES = new String[COLUMN_COUNT];
+	private static final byte[] COLUMN_TYPES = new byte[COLUMN_COUNT];
+	
+	static {
+		defineColumn(GAME, "game", TYPE_INT32);
+		defineColumn(SHOT, "shot", TYPE_INT16);
+		for (int i = 0; i < BALLS; i++) {
+			defineColumn(BALL_X + i, "x" + i, TYPE_FLOAT32);
+			defineColumn(BALL_Y + i, "y" + i, TYPE_FLOAT32);
+			defineColumn(POCKET + i, "pocket" + i, TYPE_INT8);
+		}
+		defineColumn(SHOT_VX, "vx", TYPE_FLOAT32);
+		defineColumn(SHOT_VY, "vy", TYPE_FLOAT32);
+		defineColumn(CAPTURED, "captured", TYPE_INT16);
+		defineColumn(COLLISIONS, "collisions", TYPE_INT32);
+		defineColumn(STEPS, "steps", TYPE_INT32);
+		defineColumn(COMPLETED, "completed", TYPE_INT8);
+	}
+	
+	/**
+	 * Constructor
+	 * @param records Number of records per block
+	 */
+	public ShotRecordBlock(int records) {
+		capacity = records;
+		header = ByteBuffer.allocateDirect(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		columns = new ByteBuffer[COLUMN_COUNT];
+		for (int i = 0; i < COLUMN_COUNT; i++) {
+			columns[i] = ByteBuffer.allocateDirect(records * getWidth(COLUMN_TYPES[i])).order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+	
+	/**
+	 * Record the table state before a shot
+	 * Must be followed by addOutcome() for the same record
+	 * @param game Game index
+	 * @param shot Shot number within the game
+	 * @param table Table, cue ball in place
+	 * @param vx Shot vector, x
+	 * @param vy Shot vector, y
+	 */
+	public void addShot(int game, int shot, TableSimulation table, double vx, double vy) {
+		columns[GAME].putInt(count * Integer.BYTES, game);
+		columns[SHOT].putShort(count * Short.BYTES, (short)shot);
+		
+		for (int i = 0; i < BALLS; i++) {
+			BilliardBall b = table.getBall(i);
+			float x = (b == null) ? Float.NaN : (float)b.getBounds().getCenterX();
+			float y = (b == null) ? Float.NaN : (float)b.getBounds().getCenterY();
+			columns[BALL_X + i].putFloat(count * Float.BYTES, x);
+			columns[BALL_Y + i].putFloat(count * Float.BYTES, y);
+		}
+		
+		columns[SHOT_VX].putFloat(count * Float.BYTES, (float)vx);
+		columns[SHOT_VY].putFloat(count * Float.BYTES, (float)vy);
+	}
+	
+	/**
+	 * Record the outcome of the shot passed to addShot(), completing the record
+	 * @param result ShotResult
+	 */
+	public void addOutcome(ShotResult result) {
+		int captured = 0;
+		for (int i = 0; i < BALLS; i++) {
+			columns[POCKET + i].put(count, (byte)-1);
+		}
+		
+		for (int i = 0; i < result.getCapturedCount(); i++) {
+			captured |= 1 << result.getCaptured(i);
+			columns[POCKET + result.getCaptured(i)].put(count, (byte)result.getPocket(i));
+		}
+		
+		columns[CAPTURED].putShort(count * Short.BYTES, (short)captured);
+		columns[COLLISIONS].putInt(count * Integer.BYTES, (int)Math.min(result.getCollisions(), Integer.MAX_VALUE));
+		columns[STEPS].putInt(count * Integer.BYTES, result.getSteps());
+		columns[COMPLETED].put(count, (byte)(result.isCompleted() ? 1 : 0));
+		count++;
+	}
+	
+	/**
+	 * Write block (record count, then each column) and empty it
+	 * @param channel Output channel
+	 * @return Bytes written
+	 * @throws IOException if the write fails
+	 */
+	public long writeTo(FileChannel channel) throws IOException {
+		ByteBuffer[] buffers = new ByteBuffer[COLUMN_COUNT + 1];
+		header.clear();
+		header.putInt(0, count);
+		buffers[0] = header;
+		
+		for (int i = 0; i < COLUMN_COUNT; i++) {
+			columns[i].clear();
+			columns[i].limit(count * getWidth(COLUMN_TYPES[i]));
+			buffers[i + 1] = columns[i];
+		}
+		
+		long written = 0;
+		while (buffers[COLUMN_COUNT].hasRemaining()) {
+			written += channel.write(buffers);
+		}
+		
+		count = 0;
+		return written;
+	}
+	
+	/**
+	 * @return Is there room for another record
+	 */
+	public boolean isFull() {
+		return count == capacity;
+	}
+	
+	/**
+	 * @return Number of records
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * @return Is this the final block from its worker
+	 */
+	public boolean isLast() {
+		return last;
+	}
+	
+	/**
+	 * @param value Is this the final block from its worker
+	 */
+	public void setLast(boolean value) {
+		last = value;
+	}
+	
+	/**
+	 * File header describing the columns: column count, then type and name of each column
+	 * @return ByteBuffer, ready to write
+	 */
+	public static ByteBuffer getColumnHeader() {
+		ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(COLUMN_COUNT);
+		
+		for (int i = 0; i < COLUMN_COUNT; i++) {
+			byte[] name = COLUMN_NAMES[i].getBytes(StandardCharsets.US_ASCII);
+			buffer.put(COLUMN_TYPES[i]);
+			buffer.put((byte)name.length);
+			buffer.put(name);
+		}
+		
+		buffer.flip();
+		return buffer;
+	}
+	
+	/*
+	 * Width of a column type in bytes
+	 */
+	private static int getWidth(byte type) {
+		switch (type) {
+			case TYPE_INT8:
+				return Byte.BYTES;
+				
+			case TYPE_INT16:
+				return Short.BYTES;
+				
+			case TYPE_INT32:
+				return Integer.BYTES;
+				
+			case TYPE_FLOAT32:
+				return Float.BYTES;
+				
+			default:
+				throw new IllegalArgumentException(String.format("Unknown column type: %c", type));
+		}
+	}
+	
+	/*
+	 * Set name and type of a column
+	 */
+	private static void defineColumn(int index, String name, byte type) {
+		COLUMN_NAMES[index] = name;
+		COLUMN_TYPES[index] = type;
+	}
+}
@@ -0,0 +1,348 @@
+package eightball.sim;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eightball.TableLayout;
+
+/**
+ * Regression gate over a corpus of canonical shots (see ShotCorpus and resources/shots/canonical.shots)
+ * Replays each shot with the current physics, and flags shots whose balls end up further than a tolerance
+ * from the corpus, shots whose time per physics step is slower than a stored baseline by more than
+ * an allowed factor, and shots whose physics steps allocate more than their baseline.
+ *
+ * Step time is the median over REPETITIONS rounds of the whole corpus, after replaying it for WARMUP_MILLIS
+ * so the physics is compiled; rounds interleave the shots so a pause or burst of load is spread across them.
+ * Allocation is measured around each physics update of a shot stepped with TableSimulation.advance(), so the
+ * fixed cost of setting up and scoring a shot is left out; it is the fewest bytes over ALLOCATION_ROUNDS rounds.
+ * Physics steps allocate nothing unless balls overlap, so shots without overlaps have a baseline of 0 and
+ * must allocate exactly 0 bytes per step. Resolving overlaps builds Areas, whose allocation varies a little
+ * between runs, so other shots are allowed a fractional slack.
+ * Baselines depend on the machine, so record them with the baseline command where the gate runs.
+ *
+ * Usage: ShotRegression check [corpus] [baselines] [tolerance] [max slowdown]
+ *        ShotRegression baseline [corpus] [baselines]
+ *        ShotRegression expect [corpus] [output]
+ * check exits with status 1 if any shot fails; expect writes the corpus with the final states reached
+ * with the current physics, for review when a gameplay change is intended.
+ */
+public class ShotRegression {
+	private TableSimulation table;
+	private ShotCorpus corpus;
+	private double[] maxError;			// per shot, furthest any ball ended from the corpus, pixels
+	private int[] steps;				// per shot, physics updates
+	private double[] nanosPerStep;		// per shot, median time per physics update
+	private long[] stepBytes;			// per shot, fewest bytes allocated by its physics updates, -1 if not measured
+	
+	public static final String DEFAULT_CORPUS = "resources/shots/canonical.shots";
+	public static final String DEFAULT_BASELINES = "resources/shots/canonical.baseline";
+	public static final double DEFAULT_TOLERANCE = 0.5;		// pixels
+	public static final double DEFAULT_MAX_SLOWDOWN = 1.3;	// step time relative to baseline
+	public static final long ALLOCATION_SLACK = 64;				// bytes per shot allowed above a baseline of more than 0,
+	public static final double ALLOCATION_SLACK_FRACTION = 0.1;	// or this fraction of it if more
+	
+	private static final long WARMUP_MILLIS = 3000;
+	private static final int REPETITIONS = 41;
+	private static final int ALLOCATION_ROUNDS = 5;
+	
+	/**
+	 * Constructor
+	 * @param tableLayout Table geometry
+	 * @param shotCorpus Canonical shots
+	 */
+	public ShotRegression(TableLayout tableLayout, ShotCorpus shotCorpus) {
+		table = new TableSimulation(tableLayout);
+		corpus = shotCorpus;
+		maxError = new double[corpus.size()];
+		steps = new int[corpus.size()];
+		nanosPerStep = new double[corpus.size()];
+		stepBytes = new long[corpus.size()];
+	}
+	
+	/**
+	 * Replay every shot, measuring divergence, step time and allocation
+	 */
+	public void run() {
+		long warmupEnd = System.nanoTime() + (WARMUP_MILLIS * 1000000);
+		while (System.nanoTime() < warmupEnd) {
+			for (ShotCorpus.Shot shot : corpus.getShots()) {
+				shot.setUp(table);
+				shot.play(table);
+			}
+		}
+		
+		long[][] times = new long[corpus.size()][REPETITIONS];
+		for (int r = 0; r < REPETITIONS; r++) {
+			for (int i = 0; i < corpus.size(); i++) {
+				ShotCorpus.Shot shot = corpus.get(i);
+				shot.setUp(table);
+				long start = System.nanoTime();
+				ShotResult result = shot.play(table);
+				times[i][r] = System.nanoTime() - start;
+				
+				if (r == 0) {
+					steps[i] = result.getSteps();
+					maxError[i] = 0;
+					for (int number = 0; number < ShotCorpus.BALL_COUNT; number++) {
+						maxError[i] = Math.max(maxError[i], shot.getError(table, result, number));
+					}
+				}
+			}
+		}
+		
+		for (int i = 0; i < corpus.size(); i++) {
+			Arrays.sort(times[i]);
+			nanosPerStep[i] = (double)times[i][REPETITIONS / 2] / Math.max(steps[i], 1);
+		}
+		
+		measureAllocation();
+	}
+	
+	/**
+	 * Print each shot's divergence, step time and allocation against the baselines to stdout
+	 * @param baselines Baseline per shot name, see loadBaselines(); shots without one are not timed
+	 * @param tolerance Furthest a ball may end from the corpus, pixels
+	 * @param maxSlowdown Step time allowed relative to the baseline
+	 * @return True if every shot passed
+	 */
+	public boolean check(Map<String, Baseline> baselines, double tolerance, double maxSlowdown) {
+		boolean passed = true;
+		System.out.println(String.format("%-24s %10s %6s %12s %12s %10s %10s  %s", 
+				"shot", "max error", "steps", "ns/step", "baseline", "bytes", "baseline", "result"));
+		
+		for (int i = 0; i < corpus.size(); i++) {
+			String name = corpus.get(i).getName();
+			Baseline baseline = baselines.get(name);
+			boolean allocationChecked = baseline != null && baseline.stepBytes >= 0 && stepBytes[i] >= 0;
+			
+			List<String> failures = new ArrayList<String>();
+			if (maxError[i] > tolerance) {
+				failures.add("diverged");
+			}
+			if (baseline != null && nanosPerStep[i] > baseline.nanosPerStep * maxSlowdown) {
+				failures.add(String.format("%.0f%% slower", 100 * ((nanosPerStep[i] / baseline.nanosPerStep) - 1)));
+			}
+			if (allocationChecked && baseline.stepBytes == 0 && stepBytes[i] > 0) {
+				failures.add(String.format("steps allocate %d bytes", stepBytes[i]));
+			} else if (allocationChecked && stepBytes[i] > baseline.stepBytes + 
+					Math.max(ALLOCATION_SLACK, (long)(baseline.stepBytes * ALLOCATION_SLACK_FRACTION))) {
+				failures.add(String.format("%d more bytes", stepBytes[i] - baseline.stepBytes));
+			}
+			
+			passed &= failures.isEmpty();
+			System.out.println(String.format("%-24s %10.3f %6d %12.0f %12s %10s %10s  %s", name, maxError[i], steps[i], nanosPerStep[i],
+					(baseline == null) ? "-" : String.format("%.0f", baseline.nanosPerStep), 
+					(stepBytes[i] < 0) ? "-" : String.valueOf(stepBytes[i]),
+					allocationChecked ? String.valueOf(baseline.stepBytes) : "-", 
+					failures.isEmpty() ? "ok" : String.join(", ", failures)));
+		}
+		
+		System.out.println(passed ? "All shots passed" : "Regression detected");
+		return passed;
+	}
+	
+	/**
+	 * Corpus with the final states reached in the last run()
+	 * @return Shots
+	 */
+	public List<ShotCorpus.Shot> getPlayedShots() {
+		List<ShotCorpus.Shot> played = new ArrayList<ShotCorpus.Shot>();
+		for (ShotCorpus.Shot shot : corpus.getShots()) {
+			shot.setUp(table);
+			ShotResult result = shot.play(table);
+			played.add(shot.withFinalState(table, result));
+		}
+		
+		return played;
+	}
+	
+	/**
+	 * Load baselines
+	 * @param path Baseline file, lines of shot name, nanoseconds per step and optionally bytes allocated by its steps, # for comments
+	 * @return Baseline per shot name, empty if the file does not exist
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file is not valid
+	 */
+	public static Map<String, Baseline> loadBaselines(Path path) throws IOException {
+		Map<String, Baseline> baselines = new HashMap<String, Baseline>();
+		if (!Files.exists(path)) {
+			return baselines;
+		}
+		
+		try (BufferedReader reader = Files.newBufferedReader(path)) {
+			String line;
+			int lineNumber = 0;
+			
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				
+				String[] tokens = line.split("\\s+");
+				try {
+					if (tokens.length != 2 && tokens.length != 3) {
+						throw new IllegalArgumentException("expected shot name, nanoseconds per step and bytes allocated by steps");
+					}
+					baselines.put(tokens[0], new Baseline(Double.parseDouble(tokens[1]), 
+							(tokens.length == 3) ? Long.parseLong(tokens[2]) : -1));
+				} catch (RuntimeException e) {
+					throw new IllegalArgumentException(
+							String.format("%s:%d: invalid baseline '%s' (%s)", path, lineNumber, line, e.getMessage()), e);
+				}
+			}
+		}
+		
+		return baselines;
+	}
+	
+	/**
+	 * Write the step times and allocation of the last run() as baselines
+	 * @param path File to create or replace
+	 * @throws IOException if writing fails
+	 */
+	public void saveBaselines(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+			writer.write("# Baselines for ShotRegression: nanoseconds per physics update, bytes allocated by the physics updates of the shot");
+			writer.newLine();
+			writer.write(String.format("# Recorded with %s %s on %s %s", System.getProperty("java.vm.name"),
+					System.getProperty("java.version"), System.getProperty("os.name"), System.getProperty("os.arch")));
+			writer.newLine();
+			
+			for (int i = 0; i < corpus.size(); i++) {
+				writer.write((stepBytes[i] < 0) ? String.format("%s %.0f", corpus.get(i).getName(), nanosPerStep[i]) :
+						String.format("%s %.0f %d", corpus.get(i).getName(), nanosPerStep[i], stepBytes[i]));
+				writer.newLine();
+			}
+		}
+	}
+	
+	/**
+	 * Run the gate from the command line
+	 * @param args check|baseline|expect [corpus] [baselines or output] [tolerance] [max slowdown]
+	 */
+	public static void main(String[] args) throws IOException {
+		String command = args.length > 0 ? args[0] : "check";
+		Path corpusPath = Paths.get(args.length > 1 ? args[1] : DEFAULT_CORPUS);
+		Path second = Paths.get(args.length > 2 ? args[2] : DEFAULT_BASELINES);
+		double tolerance = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_TOLERANCE;
+		double maxSlowdown = args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_MAX_SLOWDOWN;
+		
+		ShotRegression regression = new ShotRegression(TableLayout.loadDefault(), ShotCorpus.load(corpusPath));
+		
+		switch (command) {
+			case "check":
+				Map<String, Baseline> baselines = loadBaselines(second);
+				regression.run();
+				if (!regression.check(baselines, tolerance, maxSlowdown)) {
+					System.exit(1);
+				}
+				break;
+				
+			case "baseline":
+				regression.run();
+				regression.saveBaselines(second);
+				System.out.println(String.format("Baselines written to %s", second));
+				break;
+				
+			case "expect":
+				if (args.length < 3) {
+					throw new IllegalArgumentException("expect needs an output file");
+				}
+				ShotCorpus.save(second, regression.getPlayedShots());
+				System.out.println(String.format("Corpus with current final states written to %s", second));
+				break;
+				
+			default:
+				System.out.println("Usage: ShotRegression check|baseline|expect [corpus] [baselines or output] [tolerance] [max slowdown]");
+				break;
+		}
+	}
+	
+	/*
+	 * Step through every shot, counting only the bytes allocated during physics updates
+	 * Leaves stepBytes at -1 if per-thread allocation cannot be measured
+	 */
+	private void measureAllocation() {
+		com.sun.management.ThreadMXBean threads = getThreadBean();
+		if (threads == null) {
+			Arrays.fill(stepBytes, -1);
+			return;
+		}
+		
+		long threadId = Thread.currentThread().getId();
+		Arrays.fill(stepBytes, Long.MAX_VALUE);
+		
+		for (int r = 0; r < ALLOCATION_ROUNDS; r++) {
+			for (int i = 0; i < corpus.size(); i++) {
+				ShotCorpus.Shot shot = corpus.get(i);
+				shot.setUp(table);
+				table.strike(shot.getVelocityX(), shot.getVelocityY());
+				
+				long bytes = 0;
+				boolean moving = true;
+				for (int step = 0; moving && step < TableSimulation.DEFAULT_MAX_STEPS; step++) {
+					long startBytes = threads.getThreadAllocatedBytes(threadId);
+					moving = table.advance(1);
+					bytes += threads.getThreadAllocatedBytes(threadId) - startBytes;
+				}
+				
+				stepBytes[i] = Math.min(stepBytes[i], bytes);
+			}
+		}
+	}
+	
+	/*
+	 * HotSpot's ThreadMXBean, for per-thread allocation, or null if unavailable
+	 */
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+			if (threads.isThreadAllocatedMemorySupported()) {
+				threads.setThreadAllocatedMemoryEnabled(true);
+				return threads;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Stored step time and allocation of a shot
+	 */
+	public static class Baseline {
+		private double nanosPerStep;
+		private long stepBytes;			// -1 if not recorded
+		
+		private Baseline(double nanos, long bytes) {
+			nanosPerStep = nanos;
+			stepBytes = bytes;
+		}
+		
+		/**
+		 * @return Median time per physics update, nanoseconds
+		 */
+		public double getNanosPerStep() {
+			return nanosPerStep;
+		}
+		
+		/**
+		 * @return Bytes allocated by the physics updates of the shot, 0 if they allocate nothing, -1 if not recorded
+		 */
+		public long getStepBytes() {
+			return stepBytes;
+		}
+	}
+}
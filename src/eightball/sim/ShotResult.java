@@ -0,0 +1,116 @@
+package eightball.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import eightball.enums.BallDefinition;
+import eightball.enums.BallType;
+
+/**
+ * Outcome of a simulated shot
+ */
+public class ShotResult {
+	private int[] captured;			// ball numbers, in capture order
+	private int[] pockets;			// pocket position for each captured ball
+	private int steps;
+	private long collisions;
+	private boolean scratch;
+	private boolean eightballCaptured;
+	private boolean completed;
+	
+	/**
+	 * Constructor
+	 * @param capturedNumbers Captured ball numbers, in capture order
+	 * @param pocketPositions Pocket position (Pocket.getPosition()) for each captured ball
+	 * @param stepCount Number of physics updates until the balls came to rest
+	 * @param collisionCount Number of ball and rail collisions
+	 * @param finished False if the shot was cut off at the step limit
+	 */
+	public ShotResult(int[] capturedNumbers, int[] pocketPositions, int stepCount, long collisionCount, boolean finished) {
+		captured = capturedNumbers;
+		pockets = pocketPositions;
+		steps = stepCount;
+		collisions = collisionCount;
+		completed = finished;
+		
+		for (int number : captured) {
+			BallType type = BallDefinition.valueOf(number).getType();
+			scratch |= (type == BallType.CUE);
+			eightballCaptured |= (type == BallType.EIGHTBALL);
+		}
+	}
+	
+	/**
+	 * @return Number of balls captured, including the cue ball
+	 */
+	public int getCapturedCount() {
+		return captured.length;
+	}
+	
+	/**
+	 * @param i Capture index
+	 * @return Ball number
+	 */
+	public int getCaptured(int i) {
+		return captured[i];
+	}
+	
+	/**
+	 * @param i Capture index
+	 * @return Pocket position which captured the ball
+	 */
+	public int getPocket(int i) {
+		return pockets[i];
+	}
+	
+	/**
+	 * Solids and stripes captured, in order, as passed to EightBallRules.endTurn()
+	 * @return List of BallDefinition
+	 */
+	public List<BallDefinition> getCapturedGroupBalls() {
+		List<BallDefinition> result = new ArrayList<BallDefinition>();
+		for (int number : captured) {
+			BallDefinition def = BallDefinition.valueOf(number);
+			if (def.getType() == BallType.SOLID || def.getType() == BallType.STRIPE) {
+				result.add(def);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return Number of physics updates
+	 */
+	public int getSteps() {
+		return steps;
+	}
+	
+	/**
+	 * @return Number of ball and rail collisions
+	 */
+	public long getCollisions() {
+		return collisions;
+	}
+	
+	/**
+	 * @return Was the cue ball captured
+	 */
+	public boolean isScratch() {
+		return scratch;
+	}
+	
+	/**
+	 * @return Was the eightball captured
+	 */
+	public boolean isEightballCaptured() {
+		return eightballCaptured;
+	}
+	
+	/**
+	 * @return Did all balls come to rest within the step limit
+	 */
+	public boolean isCompleted() {
+		return completed;
+	}
+}
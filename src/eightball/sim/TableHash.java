@@ -0,0 +1,158 @@
+package eightball.sim;
+
+import java.awt.Rectangle;
+
+import eightball.EightBallRules;
+import eightball.enums.BallType;
+
+/**
+ * Incremental 64-bit Zobrist hash of a table state, for transposition tables
+ * Covers which balls remain, the grid cell of each ball's center, whose turn it is and the group assignment.
+ * Each (ball, cell), turn and group has a pseudo-random key, derived on demand by mixing its index with a fixed seed
+ * rather than stored, and the hash is the XOR of the keys that apply; a change XORs out the old key and XORs in the new.
+ * Hashes only match for tables with the same canvas bounds and cell size.
+ */
+public class TableHash {
+	private int originX;
+	private int originY;
+	private double cellSize;
+	private int columns;
+	private int rows;
+	private int[] cells;				// current cell per ball number
+	private boolean firstPlayersTurn;
+	private BallType playerOneType;
+	private long value;
+	
+	public static final double DEFAULT_CELL_SIZE = 2; // pixels
+	
+	private static final int BALLS = 16;
+	private static final long SEED = 0x5DEECE66DL;
+	private static final long TURN_KEY = mix(SEED ^ 0x7FFFFFFFFFFFFFFFL);
+	
+	/**
+	 * Constructor
+	 * Starts with no balls on the table, player one to shoot and groups open
+	 * @param canvasBounds Playing surface, see TableLayout.getCanvasBounds()
+	 * @param size Cell size, pixels
+	 */
+	public TableHash(Rectangle canvasBounds, double size) {
+		originX = canvasBounds.x;
+		originY = canvasBounds.y;
+		cellSize = size;
+		columns = Math.max(1, (int)Math.ceil(canvasBounds.width / cellSize));
+		rows = Math.max(1, (int)Math.ceil(canvasBounds.height / cellSize));
+		cells = new int[BALLS];
+		firstPlayersTurn = true;
+		playerOneType = BallType.NONE;
+		
+		for (int number = 0; number < BALLS; number++) {
+			cells[number] = getCapturedCell();
+			value ^= getBallKey(number, cells[number]);
+		}
+		value ^= getGroupKey(playerOneType);
+	}
+	
+	/**
+	 * Place or move a ball
+	 * @param number Ball number
+	 * @param x Center of ball, x
+	 * @param y Center of ball, y
+	 */
+	public void moveBall(int number, double x, double y) {
+		int column = Math.max(0, Math.min(columns - 1, (int)Math.floor((x - originX) / cellSize)));
+		int row = Math.max(0, Math.min(rows - 1, (int)Math.floor((y - originY) / cellSize)));
+		setCell(number, (row * columns) + column);
+	}
+	
+	/**
+	 * Take a ball off the table
+	 * @param number Ball number
+	 */
+	public void captureBall(int number) {
+		setCell(number, getCapturedCell());
+	}
+	
+	/**
+	 * @param firstPlayer Is it player one's turn
+	 */
+	public void setTurn(boolean firstPlayer) {
+		if (firstPlayer != firstPlayersTurn) {
+			value ^= TURN_KEY;
+			firstPlayersTurn = firstPlayer;
+		}
+	}
+	
+	/**
+	 * @param type Player one's group, NONE while open (player two's follows from it)
+	 */
+	public void setGroups(BallType type) {
+		if (type != playerOneType) {
+			value ^= getGroupKey(playerOneType) ^ getGroupKey(type);
+			playerOneType = type;
+		}
+	}
+	
+	/**
+	 * Take turn and group assignment from the rules
+	 * @param rules EightBallRules
+	 */
+	public void setRules(EightBallRules rules) {
+		setTurn(rules.isFirstPlayersTurn());
+		setGroups(rules.getPlayerOneType());
+	}
+	
+	/**
+	 * @param number Ball number
+	 * @return Cell of ball (row * columns + column), or getCapturedCell()
+	 */
+	public int getCell(int number) {
+		return cells[number];
+	}
+	
+	/**
+	 * @return Cell value of a ball that is off the table
+	 */
+	public int getCapturedCell() {
+		return rows * columns;
+	}
+	
+	/**
+	 * @return Current hash
+	 */
+	public long getValue() {
+		return value;
+	}
+	
+	/*
+	 * Move ball to a cell, updating hash if it changed
+	 */
+	private void setCell(int number, int cell) {
+		if (cells[number] != cell) {
+			value ^= getBallKey(number, cells[number]) ^ getBallKey(number, cell);
+			cells[number] = cell;
+		}
+	}
+	
+	/*
+	 * Key for a ball in a cell
+	 */
+	private static long getBallKey(int number, int cell) {
+		return mix(SEED ^ (((long)number << 32) | cell));
+	}
+	
+	/*
+	 * Key for player one's group
+	 */
+	private static long getGroupKey(BallType type) {
+		return mix(SEED ^ (0x7FFFFFFEL << 32) ^ type.ordinal());
+	}
+	
+	/*
+	 * SplitMix64 finalizer
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,490 @@
+package eightball.sim;
+
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import javax.vecmath.Vector2d;
+
+import canvas.CanvasObjectRegistry;
+import canvas.physics.BasicPhysicsCanvasProcessor;
+import canvas.physics.FrozenPhysicsModel;
+import canvas.replay.ReplayWriter;
+import eightball.BilliardBall;
+import eightball.EightBallRules;
+import eightball.Pocket;
+import eightball.PocketCaptureListener;
+import eightball.TableLayout;
+import eightball.TablePhysics;
+
+/**
+ * Headless billiards table
+ * Runs shots to completion with the same physics as BilliardsTable, without rendering or timers.
+ * Not thread safe, use one instance per thread.
+ */
+public class TableSimulation {
+	private TableLayout layout;
+	private CanvasObjectRegistry objects;
+	private PocketCaptureListener pocketListener;
+	private BasicPhysicsCanvasProcessor processor;
+	private List<Pocket> pockets;
+	private BilliardBall[] balls;		// indexed by ball number, null once captured
+	private BilliardBall[] rack;		// all balls, indexed by ball number, reused by loadState()
+	private int maxSteps;
+	private ReplayWriter replayWriter;
+	private ShotOutcomeCache outcomeCache;
+	private TableHash hash;
+	
+	// a shot is cut off after this many updates if the balls haven't come to rest
+	public static final int DEFAULT_MAX_STEPS = 5000;
+	
+	// attempts at a random free spot behind the scratch line before giving up on a placement
+	private static final int MAX_PLACEMENT_ATTEMPTS = 100;
+	
+	/**
+	 * Constructor
+	 * @param tableLayout Table geometry
+	 */
+	public TableSimulation(TableLayout tableLayout) {
+		layout = tableLayout;
+		objects = new CanvasObjectRegistry();
+		pocketListener = new PocketCaptureListener();
+		processor = TablePhysics.createProcessor(layout, pocketListener);
+		maxSteps = DEFAULT_MAX_STEPS;
+		hash = new TableHash(layout.getCanvasBounds(), TableHash.DEFAULT_CELL_SIZE);
+		
+		pockets = layout.createPockets();
+		
+		reset();
+	}
+	
+	/**
+	 * Rack the balls for a new game
+	 */
+	public void reset() {
+		// re-register everything so ids, and with them the order collisions are processed in,
+		// are the same for every game regardless of what happened in the previous one
+		objects.clear();
+		for (Pocket p : pockets) {
+			objects.add(p);
+		}
+		
+		List<BilliardBall> racked = TablePhysics.rackBalls(layout);
+		rack = racked.toArray(new BilliardBall[racked.size()]);
+		balls = rack.clone();
+		for (BilliardBall b : balls) {
+			objects.add(b);
+		}
+		
+		pocketListener.clear();
+		updateHash();
+	}
+	
+	/**
+	 * Move the cue ball, e.g. after a scratch
+	 * @param x X coordinate of ball center
+	 * @param y Y coordinate of ball center
+	 * @return False if the ball would be off the playing surface or overlap another ball
+	 */
+	public boolean placeCueBall(double x, double y) {
+		BilliardBall cue = balls[0];
+		double width = cue.getSize().getWidth();
+		double height = cue.getSize().getHeight();
+		Rectangle2D target = new Rectangle2D.Double(x - (width / 2), y - (height / 2), width, height);
+		
+		Rectangle bounds = layout.getCanvasBounds();
+		if (!bounds.contains(target)) {
+			return false;
+		}
+		
+		for (int i = 1; i < balls.length; i++) {
+			if (balls[i] != null) {
+				Rectangle2D b = balls[i].getBounds();
+				double dx = b.getCenterX() - x;
+				double dy = b.getCenterY() - y;
+				double minDistance = (b.getWidth() + width) / 2;
+				
+				if ((dx * dx) + (dy * dy) < minDistance * minDistance) {
+					return false;
+				}
+			}
+		}
+		
+		cue.setLocation(new Point2D.Double(target.getX(), target.getY()));
+		hash.moveBall(0, x, y);
+		return true;
+	}
+	
+	/**
+	 * Place the cue ball after a scratch
+	 * Uses its starting spot if free, otherwise a random free spot behind the scratch line
+	 * @param random Source of randomness
+	 * @throws IllegalStateException if no free spot is found
+	 */
+	public void placeCueBallBehindLine(Random random) {
+		if (placeCueBall(layout.getCueLocation().x, layout.getCueLocation().y)) {
+			return;
+		}
+		
+		Rectangle bounds = layout.getCanvasBounds();
+		double radius = balls[0].getSize().getWidth() / 2;
+		double minX = bounds.x + radius;
+		double maxX = bounds.x + EightBallRules.MAX_SCRATCH_X_COORD - radius;
+		double minY = bounds.y + radius;
+		double maxY = bounds.y + bounds.height - radius;
+		
+		for (int attempt = 0; attempt < MAX_PLACEMENT_ATTEMPTS; attempt++) {
+			double x = minX + (random.nextDouble() * (maxX - minX));
+			double y = minY + (random.nextDouble() * (maxY - minY));
+			
+			if (placeCueBall(x, y)) {
+				return;
+			}
+		}
+		
+		throw new IllegalStateException("Unable to place cue ball");
+	}
+	
+	/**
+	 * Strike the cue ball and run until all balls come to rest
+	 * Captured balls are removed from the table, except the cue ball, which stays at the pocket
+	 * until placed again with placeCueBall()
+	 * @param vx Initial cue ball velocity, x
+	 * @param vy Initial cue ball velocity, y
+	 * @return ShotResult
+	 */
+	public ShotResult shoot(double vx, double vy) {
+		if (outcomeCache == null || replayWriter != null) {
+			return simulate(vx, vy);
+		}
+		
+		ShotOutcomeCache.Key key = outcomeCache.createKey(this, vx, vy);
+		ShotOutcomeCache.Outcome cached = outcomeCache.get(key);
+		if (cached != null) {
+			applyOutcome(cached);
+			return cached.getResult();
+		}
+		
+		ShotResult result = simulate(vx, vy);
+		outcomeCache.put(key, this, result);
+		return result;
+	}
+	
+	/**
+	 * Strike the cue ball without running any physics updates, e.g. to step through a shot with advance()
+	 * @param vx Initial cue ball velocity, x
+	 * @param vy Initial cue ball velocity, y
+	 */
+	public void strike(double vx, double vy) {
+		BilliardBall cue = balls[0];
+		cue.setSuspended(false);
+		cue.setMovementVector(new Vector2d(vx, vy));
+	}
+	
+	/**
+	 * Use a cache of shot outcomes in shoot()
+	 * Outcomes are shared between shots which quantize the same, so results are approximate;
+	 * the cache is bypassed while recording a replay
+	 * @param cache ShotOutcomeCache, or null to always simulate
+	 */
+	public void setOutcomeCache(ShotOutcomeCache cache) {
+		outcomeCache = cache;
+	}
+	
+	/**
+	 * Run physics updates without striking the cue ball, e.g. to continue a shot loaded with loadState()
+	 * Once the balls come to rest, captured balls are removed as at the end of shoot()
+	 * @param maxUpdates Maximum number of updates
+	 * @return True if balls are still moving
+	 */
+	public boolean advance(int maxUpdates) {
+		boolean moving = true;
+		for (int i = 0; moving && i < maxUpdates; i++) {
+			moving = processor.update(objects);
+			recordReplayFrame();
+		}
+		
+		if (!moving) {
+			removeCaptured();
+			pocketListener.clear();
+		}
+		
+		updateHash();
+		return moving;
+	}
+	
+	/**
+	 * Replace the table state with a stored record
+	 * Objects are re-registered in the same order as reset(), so a record always steps the same way
+	 * @param store TableStateStore
+	 * @param index Record index
+	 */
+	public void loadState(TableStateStore store, long index) {
+		objects.clear();
+		for (Pocket p : pockets) {
+			objects.add(p);
+		}
+		
+		for (int number = 0; number < rack.length; number++) {
+			if (store.isCaptured(index, number)) {
+				balls[number] = null;
+				continue;
+			}
+			
+			BilliardBall b = rack[number];
+			b.setLocation(new Point2D.Double(store.getX(index, number), store.getY(index, number)));
+			b.setMovementVector(new Vector2d(store.getVelocityX(index, number), store.getVelocityY(index, number)));
+			b.setSuspended(store.isSuspended(index, number));
+			objects.add(b);
+			balls[number] = b;
+		}
+		
+		pocketListener.clear();
+		updateHash();
+	}
+	
+	/**
+	 * Replace the table state with balls at rest
+	 * Objects are re-registered in the same order as reset()
+	 * @param x Location (top left of bounds) per ball number, NaN if captured
+	 * @param y Location per ball number
+	 */
+	public void loadPositions(double[] x, double[] y) {
+		objects.clear();
+		for (Pocket p : pockets) {
+			objects.add(p);
+		}
+		
+		for (int number = 0; number < rack.length; number++) {
+			if (Double.isNaN(x[number])) {
+				balls[number] = null;
+				continue;
+			}
+			
+			BilliardBall b = rack[number];
+			b.setLocation(new Point2D.Double(x[number], y[number]));
+			b.setMovementVector(new Vector2d(0, 0));
+			b.setSuspended(false);
+			objects.add(b);
+			balls[number] = b;
+		}
+		
+		pocketListener.clear();
+		updateHash();
+	}
+	
+	/**
+	 * Write the table state to a record
+	 * @param store TableStateStore
+	 * @param index Record index
+	 */
+	public void storeState(TableStateStore store, long index) {
+		for (int number = 0; number < balls.length; number++) {
+			BilliardBall b = balls[number];
+			if (b == null) {
+				store.setCaptured(index, number);
+			} else {
+				Rectangle2D bounds = b.getBounds();
+				Vector2d mv = b.getMovementVector();
+				store.setBall(index, number, bounds.getX(), bounds.getY(), mv.x, mv.y, b.getSuspended());
+			}
+		}
+	}
+	
+	/**
+	 * @param number Ball number
+	 * @return BilliardBall, or null if captured
+	 */
+	public BilliardBall getBall(int number) {
+		return balls[number];
+	}
+	
+	/**
+	 * @return Cue ball
+	 */
+	public BilliardBall getCueBall() {
+		return balls[0];
+	}
+	
+	/**
+	 * Zobrist hash of the table, kept up to date as balls are placed, come to rest or are captured
+	 * Turn and group assignment are not known to the table, set them with TableHash.setRules()
+	 * @return TableHash
+	 */
+	public TableHash getHash() {
+		return hash;
+	}
+	
+	/**
+	 * @return Pockets, in layout order
+	 */
+	public List<Pocket> getPockets() {
+		return pockets;
+	}
+	
+	/**
+	 * @return Table geometry
+	 */
+	public TableLayout getLayout() {
+		return layout;
+	}
+	
+	/**
+	 * Load a physics model file for this table
+	 * Custom collisions are bound to this table's pockets, so the model is only for use with it
+	 * @param path Model file, see BasicPhysicsModel for the format
+	 * @return FrozenPhysicsModel, see setPhysicsModel()
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file is not a valid model
+	 */
+	public FrozenPhysicsModel loadPhysicsModel(Path path) throws IOException {
+		return TablePhysics.loadModel(path, pocketListener).freeze();
+	}
+	
+	/**
+	 * Play the following shots with another physics model
+	 * @param model Model from loadPhysicsModel(), or derived from one
+	 */
+	public void setPhysicsModel(FrozenPhysicsModel model) {
+		processor.replaceModel(model);
+	}
+	
+	/**
+	 * @return Physics model in use
+	 */
+	public FrozenPhysicsModel getPhysicsModel() {
+		return processor.getModel();
+	}
+	
+	/**
+	 * Record every shot to a replay
+	 * @param writer ReplayWriter, or null to stop recording
+	 */
+	public void setReplayWriter(ReplayWriter writer) {
+		replayWriter = writer;
+	}
+	
+	/**
+	 * @param steps Maximum physics updates per shot
+	 */
+	public void setMaxSteps(int steps) {
+		maxSteps = steps;
+	}
+	
+	/*
+	 * Append the current ball positions to the replay, if recording
+	 */
+	private void recordReplayFrame() {
+		if (replayWriter != null) {
+			try {
+				replayWriter.record(objects);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to record replay", e);
+			}
+		}
+	}
+	
+	/*
+	 * Strike the cue ball and run until all balls come to rest
+	 */
+	private ShotResult simulate(double vx, double vy) {
+		strike(vx, vy);
+		
+		long collisions = processor.getCollisionCount();
+		int steps = 0;
+		boolean moving = true;
+		if (replayWriter != null) {
+			replayWriter.beginShot();
+			recordReplayFrame();
+		}
+		
+		while (moving && steps < maxSteps) {
+			moving = processor.update(objects);
+			steps++;
+			recordReplayFrame();
+		}
+		
+		// cut off: bring everything to rest so the next shot starts cleanly
+		if (moving) {
+			for (BilliardBall b : balls) {
+				if (b != null) {
+					b.setMovementVector(new Vector2d(0, 0));
+				}
+			}
+		}
+		
+		List<BilliardBall> captured = pocketListener.getCaptured();
+		int[] numbers = new int[captured.size()];
+		int[] positions = new int[captured.size()];
+		
+		for (int i = 0; i < captured.size(); i++) {
+			numbers[i] = captured.get(i).getDefinition().getNumber();
+			positions[i] = pocketListener.getCapturedBy(i).getPosition();
+		}
+		
+		removeCaptured();
+		updateHash();
+		
+		pocketListener.clear();
+		return new ShotResult(numbers, positions, steps, processor.getCollisionCount() - collisions, !moving);
+	}
+	
+	/*
+	 * Bring hash in line with ball positions, only balls which changed cell alter it
+	 */
+	private void updateHash() {
+		for (int number = 0; number < balls.length; number++) {
+			BilliardBall b = balls[number];
+			if (b == null) {
+				hash.captureBall(number);
+			} else {
+				Rectangle2D bounds = b.getBounds();
+				hash.moveBall(number, bounds.getCenterX(), bounds.getCenterY());
+			}
+		}
+	}
+	
+	/*
+	 * Take balls sunk during the shot off the table, except the cue ball which waits to be placed
+	 */
+	private void removeCaptured() {
+		for (int number = 0; number < balls.length; number++) {
+			BilliardBall b = balls[number];
+			if (b != null && b.getSuspended()) {
+				b.getMovementVector().set(0, 0);
+				if (number != 0) {
+					objects.remove(b);
+					balls[number] = null;
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Move balls to where a cached shot left them
+	 */
+	private void applyOutcome(ShotOutcomeCache.Outcome outcome) {
+		for (int number = 0; number < balls.length; number++) {
+			BilliardBall b = balls[number];
+			if (b == null) {
+				continue;
+			}
+			
+			b.setMovementVector(new Vector2d(0, 0));
+			if (Float.isNaN(outcome.getX(number))) {
+				objects.remove(b);
+				balls[number] = null;
+			} else {
+				b.setLocation(new Point2D.Double(outcome.getX(number), outcome.getY(number)));
+				b.setSuspended(number == 0 && outcome.isCueSuspended());
+			}
+		}
+		
+		updateHash();
+	}
+}
@@ -0,0 +1,241 @@
+package eightball.sim;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-size table state records in off-heap memory
+ * Each record holds, per ball (indexed by ball number), location and movement vector as floats,
+ * plus captured and suspended bits and a free int for the caller (e.g. whose turn it is in a search).
+ * Records are 264 bytes, against several KB for a racked TableSimulation on the heap, so tens of millions
+ * of states fit in memory (allocate with a matching -XX:MaxDirectMemorySize).
+ * 
+ * Records are stepped in place through a TableSimulation used as a flyweight: loadState(), then shoot() or advance(),
+ * then storeState(). Locations and movement vectors are stored at float precision, so storing a state rounds it;
+ * stepping a stored state is deterministic.
+ * 
+ * Not thread safe for writes to the same record; different records may be used from different threads.
+ */
+public class TableStateStore {
+	private ByteBuffer[] chunks;
+	private long capacity;
+	private int recordsPerChunk;
+	
+	public static final int BALLS = 16;
+	public static final int RECORD_SIZE = 264;
+	
+	// record layout
+	private static final int BALL_SIZE = 4 * Float.BYTES;		// x, y, vx, vy
+	private static final int CAPTURED_OFFSET = BALLS * BALL_SIZE;
+	private static final int SUSPENDED_OFFSET = CAPTURED_OFFSET + Short.BYTES;
+	private static final int TAG_OFFSET = SUSPENDED_OFFSET + Short.BYTES;
+	
+	// direct buffers are int indexed, so records are spread over chunks of at most 1GB
+	private static final int MAX_CHUNK_SIZE = 1 << 30;
+	
+	/**
+	 * Constructor
+	 * Allocates all records up front, cleared (every ball captured, i.e. an empty table)
+	 * @param records Number of records
+	 */
+	public TableStateStore(long records) {
+		if (records < 0) {
+			throw new IllegalArgumentException(String.format("Invalid record count: %d", records));
+		}
+		
+		capacity = records;
+		recordsPerChunk = MAX_CHUNK_SIZE / RECORD_SIZE;
+		
+		int chunkCount = (int)((records + recordsPerChunk - 1) / recordsPerChunk);
+		chunks = new ByteBuffer[chunkCount];
+		for (int i = 0; i < chunkCount; i++) {
+			long count = Math.min(recordsPerChunk, records - ((long)i * recordsPerChunk));
+			chunks[i] = ByteBuffer.allocateDirect((int)count * RECORD_SIZE).order(ByteOrder.nativeOrder());
+		}
+		
+		for (long i = 0; i < records; i++) {
+			clear(i);
+		}
+	}
+	
+	/**
+	 * @return Number of records
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Empty a record: every ball captured, zero tag
+	 * @param index Record index
+	 */
+	public void clear(long index) {
+		ByteBuffer chunk = getChunk(index);
+		int p = getOffset(index);
+		
+		for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+			chunk.putLong(p + i, 0);
+		}
+		chunk.putShort(p + CAPTURED_OFFSET, (short)0xFFFF);
+	}
+	
+	/**
+	 * Copy a record
+	 * @param from Source record index
+	 * @param to Destination record index
+	 */
+	public void copy(long from, long to) {
+		ByteBuffer src = getChunk(from);
+		ByteBuffer dst = getChunk(to);
+		int p = getOffset(from);
+		int q = getOffset(to);
+		
+		for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+			dst.putLong(q + i, src.getLong(p + i));
+		}
+	}
+	
+	/**
+	 * Set one ball
+	 * @param index Record index
+	 * @param ball Ball number
+	 * @param x Location (top left of bounds), x
+	 * @param y Location, y
+	 * @param vx Movement vector, x
+	 * @param vy Movement vector, y
+	 * @param suspended Captured during the current shot, i.e. resting in a pocket
+	 */
+	public void setBall(long index, int ball, double x, double y, double vx, double vy, boolean suspended) {
+		ByteBuffer chunk = getChunk(index);
+		int p = getOffset(index);
+		int b = p + (ball * BALL_SIZE);
+		
+		chunk.putFloat(b, (float)x);
+		chunk.putFloat(b + Float.BYTES, (float)y);
+		chunk.putFloat(b + (2 * Float.BYTES), (float)vx);
+		chunk.putFloat(b + (3 * Float.BYTES), (float)vy);
+		setBit(chunk, p + CAPTURED_OFFSET, ball, false);
+		setBit(chunk, p + SUSPENDED_OFFSET, ball, suspended);
+	}
+	
+	/**
+	 * Mark a ball as captured, i.e. off the table
+	 * @param index Record index
+	 * @param ball Ball number
+	 */
+	public void setCaptured(long index, int ball) {
+		ByteBuffer chunk = getChunk(index);
+		int p = getOffset(index);
+		
+		for (int i = 0; i < BALL_SIZE; i += Float.BYTES) {
+			chunk.putFloat(p + (ball * BALL_SIZE) + i, 0);
+		}
+		setBit(chunk, p + CAPTURED_OFFSET, ball, true);
+		setBit(chunk, p + SUSPENDED_OFFSET, ball, false);
+	}
+	
+	/**
+	 * @param index Record index
+	 * @param ball Ball number
+	 * @return Location (top left of bounds), x
+	 */
+	public float getX(long index, int ball) {
+		return getChunk(index).getFloat(getOffset(index) + (ball * BALL_SIZE));
+	}
+	
+	/**
+	 * @param index Record index
+	 * @param ball Ball number
+	 * @return Location (top left of bounds), y
+	 */
+	public float getY(long index, int ball) {
+		return getChunk(index).getFloat(getOffset(index) + (ball * BALL_SIZE) + Float.BYTES);
+	}
+	
+	/**
+	 * @param index Record index
+	 * @param ball Ball number
+	 * @return Movement vector, x
+	 */
+	public float getVelocityX(long index, int ball) {
+		return getChunk(index).getFloat(getOffset(index) + (ball * BALL_SIZE) + (2 * Float.BYTES));
+	}
+	
+	/**
+	 * @param index Record index
+	 * @param ball Ball number
+	 * @return Movement vector, y
+	 */
+	public float getVelocityY(long index, int ball) {
+		return getChunk(index).getFloat(getOffset(index) + (ball * BALL_SIZE) + (3 * Float.BYTES));
+	}
+	
+	/**
+	 * @param index Record index
+	 * @param ball Ball number
+	 * @return Is the ball off the table
+	 */
+	public boolean isCaptured(long index, int ball) {
+		return (getCapturedMask(index) & (1 << ball)) != 0;
+	}
+	
+	/**
+	 * @param index Record index
+	 * @param ball Ball number
+	 * @return Is the ball resting in a pocket, captured during the current shot
+	 */
+	public boolean isSuspended(long index, int ball) {
+		return (getChunk(index).getShort(getOffset(index) + SUSPENDED_OFFSET) & (1 << ball)) != 0;
+	}
+	
+	/**
+	 * @param index Record index
+	 * @return Captured balls, bit per ball number
+	 */
+	public int getCapturedMask(long index) {
+		return getChunk(index).getShort(getOffset(index) + CAPTURED_OFFSET) & 0xFFFF;
+	}
+	
+	/**
+	 * @param index Record index
+	 * @return Caller defined value
+	 */
+	public int getTag(long index) {
+		return getChunk(index).getInt(getOffset(index) + TAG_OFFSET);
+	}
+	
+	/**
+	 * @param index Record index
+	 * @param value Caller defined value
+	 */
+	public void setTag(long index, int value) {
+		getChunk(index).putInt(getOffset(index) + TAG_OFFSET, value);
+	}
+	
+	/*
+	 * Chunk holding a record
+	 */
+	private ByteBuffer getChunk(long index) {
+		if (index < 0 || index >= capacity) {
+			throw new IndexOutOfBoundsException(String.format("Record %d of %d", index, capacity));
+		}
+		
+		return chunks[(int)(index / recordsPerChunk)];
+	}
+	
+	/*
+	 * Byte offset of a record within its chunk
+	 */
+	private int getOffset(long index) {
+		return (int)(index % recordsPerChunk) * RECORD_SIZE;
+	}
+	
+	/*
+	 * Set or clear one bit of a 16 bit mask
+	 */
+	private static void setBit(ByteBuffer chunk, int offset, int bit, boolean value) {
+		int mask = chunk.getShort(offset) & 0xFFFF;
+		mask = value ? (mask | (1 << bit)) : (mask & ~(1 << bit));
+		chunk.putShort(offset, (short)mask);
+	}
+}
@@ -0,0 +1,267 @@
+package eightball.sim;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.vecmath.Vector2d;
+
+import eightball.EightBallRules;
+import eightball.TableLayout;
+
+/**
+ * Plays complete two player games between computer players, spread over a thread pool
+ * Each worker thread reuses one TableSimulation and takes the next game from a shared counter.
+ * Every game is seeded from the tournament seed and its index, so results do not depend on the number of threads.
+ * Players alternate breaking; games still undecided after the shot limit are draws.
+ * 
+ * Usage: Tournament [games] [threads] [player A] [player B] [seed] [max shots per game] [outcome cache entries]
+ * Players are named as for ComputerPlayer.forName(), e.g. greedy, greedy:0.05, random.
+ * With an outcome cache (shared by all threads), results are approximate and depend on scheduling.
+ */
+public class Tournament {
+	private TableLayout layout;
+	private ComputerPlayer[] players;
+	private int games;
+	private long seed;
+	private int maxShots;
+	private ShotOutcomeCache outcomeCache;
+	
+	// per game results, indexed by game
+	private int[] winners;			// player index, or DRAW
+	private int[] shots;
+	private long[] steps;
+	private double elapsedSeconds;
+	
+	public static final int DRAW = -1;
+	public static final int DEFAULT_MAX_SHOTS = 200;
+	
+	/**
+	 * Constructor
+	 * @param tableLayout Table geometry
+	 * @param playerA First player, breaks in even numbered games
+	 * @param playerB Second player, breaks in odd numbered games
+	 * @param gameCount Number of games to play
+	 * @param tournamentSeed Seed for all games
+	 * @param shotLimit Shots after which a game is a draw
+	 */
+	public Tournament(TableLayout tableLayout, ComputerPlayer playerA, ComputerPlayer playerB, int gameCount, long tournamentSeed, int shotLimit) {
+		layout = tableLayout;
+		players = new ComputerPlayer[] { playerA, playerB };
+		games = gameCount;
+		seed = tournamentSeed;
+		maxShots = shotLimit;
+		winners = new int[games];
+		shots = new int[games];
+		steps = new long[games];
+	}
+	
+	/**
+	 * Share a shot outcome cache between all tables
+	 * @param cache ShotOutcomeCache, or null to always simulate
+	 */
+	public void setOutcomeCache(ShotOutcomeCache cache) {
+		outcomeCache = cache;
+	}
+	
+	/**
+	 * Play all games
+	 * @param threads Number of worker threads
+	 * @throws InterruptedException if interrupted while waiting for workers
+	 */
+	public void run(int threads) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		AtomicInteger nextGame = new AtomicInteger();
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < threads; i++) {
+				workers.add(pool.submit(() -> {
+					TableSimulation table = new TableSimulation(layout);
+					table.setOutcomeCache(outcomeCache);
+					EightBallRules rules = new EightBallRules();
+					
+					int game;
+					while ((game = nextGame.getAndIncrement()) < games) {
+						playGame(game, table, rules);
+					}
+				}));
+			}
+			
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Tournament game failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		
+		elapsedSeconds = (System.nanoTime() - start) / 1e9;
+	}
+	
+	/**
+	 * @param player Player index (0 or 1)
+	 * @return Number of games won
+	 */
+	public int getWins(int player) {
+		int count = 0;
+		for (int winner : winners) {
+			if (winner == player) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * @return Number of games won by the breaking player
+	 */
+	public int getBreakerWins() {
+		int count = 0;
+		for (int game = 0; game < games; game++) {
+			if (winners[game] == getBreaker(game)) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * @return Total shots over all games
+	 */
+	public long getTotalShots() {
+		long total = 0;
+		for (int count : shots) {
+			total += count;
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * @return Total physics updates over all games
+	 */
+	public long getTotalSteps() {
+		long total = 0;
+		for (long count : steps) {
+			total += count;
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * @return Wall clock time of last run(), seconds
+	 */
+	public double getElapsedSeconds() {
+		return elapsedSeconds;
+	}
+	
+	/**
+	 * Print summary to stdout
+	 */
+	public void printReport() {
+		int draws = games - getWins(0) - getWins(1);
+		long totalShots = getTotalShots();
+		
+		System.out.println(String.format("Games: %d in %.2fs (%.1f games/s, %.0f shots/s, %.0f steps/s)", 
+				games, elapsedSeconds, games / elapsedSeconds, totalShots / elapsedSeconds, getTotalSteps() / elapsedSeconds));
+		System.out.println(String.format("Shots per game: %.1f, steps per shot: %.1f", 
+				(double)totalShots / games, (double)getTotalSteps() / Math.max(totalShots, 1)));
+		
+		for (int player = 0; player < players.length; player++) {
+			System.out.println(String.format("Player %s (%s): %d wins (%.1f%%)", 
+					(player == 0 ? "A" : "B"), players[player].getName(), getWins(player), 100.0 * getWins(player) / games));
+		}
+		
+		System.out.println(String.format("Draws: %d (%.1f%%), breaker won: %.1f%% of decided games", 
+				draws, 100.0 * draws / games, 100.0 * getBreakerWins() / Math.max(games - draws, 1)));
+		
+		if (outcomeCache != null) {
+			System.out.println(outcomeCache);
+		}
+	}
+	
+	/**
+	 * Run a tournament from the command line
+	 * @param args [games] [threads] [player A] [player B] [seed] [max shots per game] [outcome cache entries]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		ComputerPlayer playerA = ComputerPlayer.forName(args.length > 2 ? args[2] : "greedy");
+		ComputerPlayer playerB = ComputerPlayer.forName(args.length > 3 ? args[3] : "random");
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+		int maxShots = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_MAX_SHOTS;
+		
+		int cacheEntries = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+		
+		Tournament tournament = new Tournament(TableLayout.loadDefault(), playerA, playerB, games, seed, maxShots);
+		if (cacheEntries > 0) {
+			tournament.setOutcomeCache(new ShotOutcomeCache(cacheEntries));
+		}
+		System.out.println(String.format("%s vs %s, %d games on %d threads, seed %d", 
+				playerA.getName(), playerB.getName(), games, threads, seed));
+		
+		tournament.run(threads);
+		tournament.printReport();
+	}
+	
+	/*
+	 * Play one game to completion, recording its result
+	 */
+	private void playGame(int game, TableSimulation table, EightBallRules rules) {
+		Random random = new Random(seed * 0x9E3779B97F4A7C15L + game);
+		int breaker = getBreaker(game);
+		
+		table.reset();
+		rules.reset();
+		
+		int shotCount = 0;
+		long stepCount = 0;
+		boolean placeCueBall = false;
+		
+		while (!rules.isGameOver() && shotCount < maxShots) {
+			// rules track player one and two, player one always breaks
+			int shooter = rules.isFirstPlayersTurn() ? breaker : 1 - breaker;
+			
+			if (placeCueBall) {
+				table.placeCueBallBehindLine(random);
+			}
+			
+			Vector2d shot = players[shooter].chooseShot(table, rules, random);
+			ShotResult result = table.shoot(shot.x, shot.y);
+			shotCount++;
+			stepCount += result.getSteps();
+			
+			rules.endTurn(result.getCapturedGroupBalls(), result.isScratch(), result.isEightballCaptured());
+			placeCueBall = result.isScratch();
+		}
+		
+		if (rules.isGameOver()) {
+			winners[game] = rules.didPlayerOneWin() ? breaker : 1 - breaker;
+		} else {
+			winners[game] = DRAW;
+		}
+		
+		shots[game] = shotCount;
+		steps[game] = stepCount;
+	}
+	
+	/*
+	 * Player who breaks in a game
+	 */
+	private int getBreaker(int game) {
+		return game % 2;
+	}
+}